@@ -0,0 +1,122 @@
+package bench;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Compares two JMH JSON results (-rf json), e.g. the baseline of the last release and the current build, 
+ * and exits with status 1 if a benchmark got slower, or allocates more per call, than the tolerance: 
+ * <pre>
+ * java bench.BenchmarkComparison jmh-baseline.json target/jmh-result.json [tolerance percent, default 10]
+ * </pre>
+ * The allocation (gc.alloc.rate.norm) is only compared if both results were run with "-prof gc". 
+ */
+public class BenchmarkComparison {
+
+	/** Default tolerance, in percent. */ 
+	public static final double DEFAULT_TOLERANCE = 10; 
+	/** Allocation differences under this (bytes per call) are noise. */ 
+	private static final double ALLOCATION_SLACK_BYTES = 16; 
+	private static final String ALLOCATION = "gc.alloc.rate.norm"; 
+	
+	public static void main(String[] args) throws IOException, JSONException {
+		if (args.length < 2) {
+			System.out.println("Usage: BenchmarkComparison baseline.json current.json [tolerance percent]"); 
+			System.exit(2); 
+		}
+		double tolerance = (args.length > 2) ? Double.parseDouble(args[2]) : DEFAULT_TOLERANCE; 
+		List<String> regressions = compare(read(new File(args[0])), read(new File(args[1])), tolerance); 
+		for (String regression : regressions) {
+			System.out.println("REGRESSION " + regression); 
+		}
+		System.out.println(regressions.isEmpty() ? "No regression (tolerance " + tolerance + "%)" 
+				: regressions.size() + " regression(s) (tolerance " + tolerance + "%)"); 
+		System.exit(regressions.isEmpty() ? 0 : 1); 
+	}
+	
+	/**
+	 * Returns the regressions of the current results: one line per benchmark slower (score) 
+	 * or allocating more than the baseline plus the tolerance.  New and removed benchmarks are ignored. 
+	 * The scores are times per call (Mode.AverageTime). 
+	 */ 
+	public static List<String> compare(Map<String, double[]> baseline, Map<String, double[]> current, double tolerance) {
+		List<String> regressions = new ArrayList<String>(); 
+		for (Map.Entry<String, double[]> entry : current.entrySet()) {
+			double[] before = baseline.get(entry.getKey()); 
+			if (before == null) {
+				continue; 
+			}
+			double[] after = entry.getValue(); 
+			if (after[0] > before[0] * (1 + tolerance / 100)) {
+				regressions.add(String.format(Locale.ROOT, "%s: %.3f -> %.3f (+%.0f%%)", 
+						entry.getKey(), before[0], after[0], (after[0] / before[0] - 1) * 100)); 
+			}
+			if (!Double.isNaN(before[1]) && !Double.isNaN(after[1]) 
+					&& after[1] > before[1] * (1 + tolerance / 100) + ALLOCATION_SLACK_BYTES) {
+				regressions.add(String.format(Locale.ROOT, "%s: allocates %.0f -> %.0f bytes per call", 
+						entry.getKey(), before[1], after[1])); 
+			}
+		}
+		return regressions; 
+	}
+	
+	/** 
+	 * Reads a JMH JSON result file.  
+	 * Returns benchmark (with its parameters, e.g. "bench.WaitToolBenchmark.waitForElement latencyMicros=0") 
+	 * -> {score, allocation per call (NaN if it was not profiled)}. 
+	 */ 
+	public static Map<String, double[]> read(File file) throws IOException, JSONException {
+		JSONArray results; 
+		try (InputStream in = new FileInputStream(file)) {
+			byte[] bytes = new byte[(int) file.length()]; 
+			int read = 0; 
+			while (read < bytes.length) {
+				int n = in.read(bytes, read, bytes.length - read); 
+				if (n < 0) break; 
+				read += n; 
+			}
+			results = new JSONArray(new String(bytes, 0, read, "UTF-8")); 
+		}
+		Map<String, double[]> scores = new LinkedHashMap<String, double[]>(); 
+		for (int i = 0; i < results.length(); i++) {
+			JSONObject result = results.getJSONObject(i); 
+			StringBuilder name = new StringBuilder(result.getString("benchmark")); 
+			JSONObject params = result.optJSONObject("params"); 
+			if (params != null) {
+				Map<String, String> sorted = new TreeMap<String, String>(); 
+				for (Iterator<?> keys = params.keys(); keys.hasNext(); ) {
+					String key = (String) keys.next(); 
+					sorted.put(key, params.getString(key)); 
+				}
+				for (Map.Entry<String, String> param : sorted.entrySet()) {
+					name.append(' ').append(param.getKey()).append('=').append(param.getValue()); 
+				}
+			}
+			double allocation = Double.NaN; 
+			JSONObject secondary = result.optJSONObject("secondaryMetrics"); 
+			if (secondary != null) {
+				for (Iterator<?> keys = secondary.keys(); keys.hasNext(); ) {
+					String key = (String) keys.next(); 
+					if (key.endsWith(ALLOCATION)) { //"gc.alloc.rate.norm", or "·gc.alloc.rate.norm" (older JMH) 
+						allocation = secondary.getJSONObject(key).getDouble("score"); 
+					}
+				}
+			}
+			scores.put(name.toString(), new double[] {result.getJSONObject("primaryMetric").getDouble("score"), allocation}); 
+		}
+		return scores; 
+	}
+}
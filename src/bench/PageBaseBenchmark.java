@@ -0,0 +1,98 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.FindBy;
+
+import wtbox.pages.PageBase;
+import wtbox.test.StubDriver;
+
+/**
+ * JMH benchmarks of the PageBase element lookups, against a StubDriver (no browser): 
+ * uncached and cached getWebElement(), the &#64;FindBy binding of a new page object, and the presence probe. 
+ * See WaitToolBenchmark to build and run them. 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PageBaseBenchmark {
+
+	private static final By FIELD = By.name("q"); 
+	private static final By BUTTON = By.id("go"); 
+	
+	/** Latency of each driver command, in microseconds. */ 
+	@Param({"0", "200"})
+	public int latencyMicros; 
+	
+	private StubDriver driver; 
+	private PageBase page; 
+	private PageBase cachedPage; 
+	private BenchPage boundPage; 
+	
+	/** A page object with two &#64;FindBy fields. */ 
+	public static class BenchPage extends PageBase {
+		@FindBy(name = "q")
+		WebElement searchField; 
+		@FindBy(id = "go")
+		WebElement goButton; 
+		
+		public BenchPage(WebDriver driver) {
+			super(driver, "Bench"); 
+		}
+	}
+	
+	@Setup
+	public void setup() {
+		driver = new StubDriver().setCommandLatency(latencyMicros, TimeUnit.MICROSECONDS); 
+		driver.addElement(FIELD, ""); 
+		driver.addElement(BUTTON, "Go"); 
+		page = new PageBase(driver, "Bench"); //no @FindBy fields: the lookups are not mixed with the binding 
+		cachedPage = new PageBase(driver, "Bench"); 
+		cachedPage.setElementCacheEnabled(true); 
+		boundPage = new BenchPage(driver); 
+	}
+	
+	@Benchmark
+	public WebElement getWebElement() {
+		return page.getWebElement(BUTTON); 
+	}
+	
+	@Benchmark
+	public WebElement getWebElementCached() {
+		return cachedPage.getWebElement(BUTTON); 
+	}
+	
+	/** A new page object: its &#64;FindBy fields are bound, but no element is found yet. */ 
+	@Benchmark
+	public BenchPage newPage() {
+		return new BenchPage(driver); 
+	}
+	
+	/** A lazy &#64;FindBy element, found once (it keeps the element) and then used. */ 
+	@Benchmark
+	public String lazyElementText() {
+		return boundPage.goButton.getText(); 
+	}
+	
+	@Benchmark
+	public boolean isElementPresent() {
+		return page.isElementPresent(FIELD); 
+	}
+}
@@ -0,0 +1,111 @@
+package bench;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.ui.ExpectedConditions;
+import org.openqa.selenium.support.ui.WebDriverWait;
+
+import wtbox.test.StubDriver;
+import wtbox.util.ImplicitWaitSuspension;
+import wtbox.util.WaitTool;
+
+/**
+ * JMH benchmarks of the WaitTool waits, against a StubDriver (no browser): 
+ * the wtbox overhead of a wait which succeeds on its first poll, with 0 and 200 microseconds per driver command. 
+ * 
+ * Build and run (jmh-core and jmh-generator-annprocess on the class path, the annotation processor 
+ * generates the benchmark list): 
+ * <pre>
+ * javac -cp "lib/*:jmh/*" -d target/bench $(find src/wtbox src/bench -name '*.java' -not -path '*processor*') 
+ * java -cp "target/bench:lib/*:jmh/*" org.openjdk.jmh.Main -prof gc -rf json -rff target/jmh-result.json 
+ * java -cp "target/bench:lib/*:jmh/*" bench.BenchmarkComparison jmh-baseline.json target/jmh-result.json 
+ * </pre>
+ * "-prof gc" adds the allocation per call (gc.alloc.rate.norm, in bytes), 
+ * and BenchmarkComparison fails if a benchmark got slower (or allocates more) than the baseline of the last release. 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WaitToolBenchmark {
+
+	private static final By PRESENT = By.id("present"); 
+	private static final By OTHER = By.cssSelector("#other"); 
+	private static final By ABSENT = By.id("absent"); 
+	
+	/** Latency of each driver command, in microseconds. */ 
+	@Param({"0", "200"})
+	public int latencyMicros; 
+	
+	private StubDriver driver; 
+	
+	@Setup
+	public void setup() {
+		driver = new StubDriver().setCommandLatency(latencyMicros, TimeUnit.MICROSECONDS); 
+		driver.addElement(PRESENT, "hello world"); 
+		driver.addElement(OTHER, "other"); 
+		WaitTool.setImplicitWait(driver, WaitTool.DEFAULT_WAIT_4_PAGE); 
+	}
+	
+	/** The note at the end of WaitTool: a new WebDriverWait per wait is cheap. */ 
+	@Benchmark
+	public WebDriverWait newWebDriverWait() {
+		return new WebDriverWait(driver, WaitTool.DEFAULT_WAIT_4_ELEMENT); 
+	}
+	
+	/** Condition evaluation only: one findElement() and isDisplayed(). */ 
+	@Benchmark
+	public WebElement visibilityCondition() {
+		return ExpectedConditions.visibilityOfElementLocated(PRESENT).apply(driver); 
+	}
+	
+	/** Nullify the implicitlyWait, and reset it. */ 
+	@Benchmark
+	public void suspendImplicitWait() {
+		try (ImplicitWaitSuspension suspension = WaitTool.suspendImplicitWait(driver)) {
+			//nothing: the cost of the suspension itself 
+		}
+	}
+	
+	@Benchmark
+	public WebElement waitForElement() {
+		return WaitTool.waitForElement(driver, PRESENT, WaitTool.DEFAULT_WAIT_4_ELEMENT); 
+	}
+	
+	@Benchmark
+	public WebElement waitForElementPresent() {
+		return WaitTool.waitForElementPresent(driver, PRESENT, WaitTool.DEFAULT_WAIT_4_ELEMENT); 
+	}
+	
+	@Benchmark
+	public boolean waitForTextPresent() {
+		return WaitTool.waitForTextPresent(driver, PRESENT, "world", WaitTool.DEFAULT_WAIT_4_ELEMENT); 
+	}
+	
+	@Benchmark
+	public Map<By, WebElement> waitForAll() {
+		return WaitTool.waitForAll(driver, WaitTool.DEFAULT_WAIT_4_ELEMENT, PRESENT, OTHER); 
+	}
+	
+	/** An absent element is reported without waiting for the implicitlyWait. */ 
+	@Benchmark
+	public boolean isElementPresentAbsent() {
+		return WaitTool.isElementPresent(driver, ABSENT); 
+	}
+}
@@ -0,0 +1,94 @@
+package test.locator_example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+
+import wtbox.util.LocatorAnalyzer;
+import wtbox.util.LocatorAnalyzer.Locator;
+import wtbox.util.LocatorAnalyzer.Result;
+
+
+/**
+ * This test shows how to measure the locators of the example tests with LocatorAnalyzer. 
+ * 
+ * The locators are run against a local page snapshot (snapshot.html) with HtmlUnit, 
+ * so it needs no network.  The report shows the slow and fragile locators, 
+ * and a CSS selector for each XPath which can be translated, 
+ * e.g. "//div[@id='statistics']/img[3]" of AJAX_wait. 
+ * 
+ * Run it from the project directory. 
+ * @author Chon Chung
+ */
+public class LocatorAnalyzerTest {
+
+	private static WebDriver driver;
+
+	@BeforeClass
+	public static void beforeClass(){
+		driver = new HtmlUnitDriver(true); 
+		driver.get(new File("src/test/locator_example/snapshot.html").toURI().toString()); 
+	}
+
+	/** Analyze all the locators of the example tests, print the report, and check the XPath of AJAX_wait. */ 
+	@Test
+	public void testExampleLocators() throws Exception {
+		List<Locator> locators = LocatorAnalyzer.scan(new File("src/test")); 
+		assertFalse("The example tests have locators", locators.isEmpty()); 
+		
+		List<Result> results = LocatorAnalyzer.analyze(driver, locators, LocatorAnalyzer.DEFAULT_REPEATS); 
+		System.out.print(LocatorAnalyzer.report(results)); 
+		
+		assertEquals(locators.size(), results.size()); 
+		for (Result result : results) {
+			assertTrue("Measured: " + result.locator, result.meanMicros > 0); 
+		}
+		Result statistics = resultOf(results, "xpath", "//div[@id='statistics']/img[3]"); 
+		assertNotNull("The XPath of AJAX_wait is found", statistics); 
+		assertEquals(1, statistics.matches); 
+		assertTrue("Flagged position based: " + statistics.notes, hasNote(statistics, "position based")); 
+		assertEquals("div#statistics > img:nth-of-type(3)", statistics.suggestion); 
+		assertTrue(!statistics.suggestionVerified || statistics.suggestionMicros > 0); //HtmlUnit has no :nth-of-type() 
+	}
+	
+	private static Result resultOf(List<Result> results, String type, String value){
+		for (Result result : results) {
+			if (result.locator.type.equals(type) && result.locator.value.equals(value)) {
+				return result; 
+			}
+		}
+		return null; 
+	}
+	
+	private static boolean hasNote(Result result, String note){
+		for (String n : result.notes) {
+			if (n.startsWith(note)) {
+				return true; 
+			}
+		}
+		return false; 
+	}
+
+	/** The XPath of AJAX_wait has a CSS equivalent. */ 
+	@Test
+	public void testXPathToCss(){
+		assertEquals("div#statistics > img:nth-of-type(3)", LocatorAnalyzer.toCss("//div[@id='statistics']/img[3]")); 
+		assertEquals("#menu > li:nth-of-type(1) > a", LocatorAnalyzer.toCss("//*[@id='menu']/li[1]/a")); 
+		assertEquals(null, LocatorAnalyzer.toCss("//a[contains(text(), 'Me')]")); 
+	}
+
+	@AfterClass
+	public static void afterClass(){
+		driver.quit(); 
+	}
+}
@@ -0,0 +1,191 @@
+package test.metrics_example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.WebDriver;
+
+import wtbox.test.StubDriver;
+import wtbox.util.CommandMetrics;
+import wtbox.util.InstrumentedDriver;
+import wtbox.util.LatencyHistogram;
+import wtbox.util.WaitTool;
+
+
+/**
+ * This test shows what CommandMetrics records for the commands of an instrumented driver,
+ * and what it exports, without a browser.
+ *
+ * Each StubDriver command takes 2 ms, so the latencies are known:
+ * the percentiles are checked against them, and the JSON/CSV export against the histograms.
+ *
+ * @author Chon Chung
+ */
+public class CommandMetricsTest {
+
+	private static final long LATENCY_MICROS = 2000;
+
+	private StubDriver stub;
+	private WebDriver driver;
+
+	@Before
+	public void setup() {
+		CommandMetrics.reset();
+		CommandMetrics.setEnabled(true);
+		stub = new StubDriver().setCommandLatency(LATENCY_MICROS, TimeUnit.MICROSECONDS);
+		stub.setTitle("Stub Search");
+		stub.getBody().appendChild("input").setAttribute("id", "q").setAttribute("type", "text");
+		driver = InstrumentedDriver.wrap(stub);
+	}
+
+	@After
+	public void tearDown() {
+		CommandMetrics.setEnabled(false);
+		CommandMetrics.reset();
+		stub.quit();
+	}
+
+	/** Each command is counted under its name, and the failed ones are counted as errors. */
+	@Test
+	public void testCommandCounts(){
+		runCommands();
+
+		LatencyHistogram find = CommandMetrics.getHistogram("findElement");
+		assertEquals(11, find.getCount());
+		assertEquals(5, CommandMetrics.getHistogram("getTitle").getCount());
+		assertEquals(10, CommandMetrics.getHistogram("click").getCount());
+		assertEquals(1, CommandMetrics.getHistogram("timeouts.implicitlyWait").getCount());
+		assertNull(CommandMetrics.getHistogram("getPageSource"));
+
+		//every command took the stub latency: the percentiles are in order, and not under it
+		assertTrue(find.getMinMicros() >= LATENCY_MICROS);
+		assertTrue(find.getPercentileMicros(0.5) >= find.getMinMicros());
+		assertTrue(find.getPercentileMicros(0.9) >= find.getPercentileMicros(0.5));
+		assertTrue(find.getPercentileMicros(0.99) >= find.getPercentileMicros(0.9));
+		assertTrue(find.getMaxMicros() >= find.getPercentileMicros(0.99));
+		assertTrue("p50 " + find.getPercentileMicros(0.5), find.getPercentileMicros(0.5) < 10 * LATENCY_MICROS);
+		assertEquals(11, bucketCount(find));
+	}
+
+	/** Known times: the percentiles are within one bucket (25%) of the exact values. */
+	@Test
+	public void testHistogramPercentiles(){
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int millis = 1; millis <= 100; millis++) {
+			histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+		}
+
+		assertEquals(100, histogram.getCount());
+		assertEquals(1000, histogram.getMinMicros());
+		assertEquals(100000, histogram.getMaxMicros());
+		assertEquals(50500, histogram.getMeanMicros());
+		assertEquals(5050000, histogram.getTotalMicros());
+		assertWithinBucket(50000, histogram.getPercentileMicros(0.5));
+		assertWithinBucket(90000, histogram.getPercentileMicros(0.9));
+		assertWithinBucket(99000, histogram.getPercentileMicros(0.99));
+		assertEquals("Never above the maximum", 100000, histogram.getPercentileMicros(1));
+		assertEquals(100, bucketCount(histogram));
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getPercentileMicros(0.5));
+	}
+
+	/** The waits are recorded with their polls, and a timeout is an error. */
+	@Test
+	public void testWaitMetrics(){
+		stub.addElementAfter(300, By.id("results"), "10 results");
+		assertNotNull(WaitTool.waitForElement(driver, By.id("results"), 5));
+		assertNull(WaitTool.waitForElement(driver, By.id("missing"), 1));
+
+		String csv = CommandMetrics.toCsv();
+		assertTrue(csv, csv.contains("\nwait.polling,2,1,"));
+		assertTrue(CommandMetrics.getHistogram(CommandMetrics.WAIT_POLLING).getMaxMicros() >= 1000000);
+	}
+
+	/** The JSON and CSV exports hold the same counts and times as the histograms. */
+	@Test
+	public void testExport(){
+		runCommands();
+		LatencyHistogram find = CommandMetrics.getHistogram("findElement");
+		LatencyHistogram title = CommandMetrics.getHistogram("getTitle");
+
+		String json = CommandMetrics.toJson();
+		assertTrue(json, json.startsWith("{\"commands\": ["));
+		assertTrue(json, json.contains("{\"name\": \"findElement\", \"count\": 11, \"errors\": 1, \"polls\": 0, \"totalMs\": "
+				+ millis(find.getTotalMicros()) + ", \"meanMs\": " + millis(find.getMeanMicros())
+				+ ", \"minMs\": " + millis(find.getMinMicros()) + ", \"p50Ms\": " + millis(find.getPercentileMicros(0.5))
+				+ ", \"p90Ms\": " + millis(find.getPercentileMicros(0.9)) + ", \"p99Ms\": " + millis(find.getPercentileMicros(0.99))
+				+ ", \"maxMs\": " + millis(find.getMaxMicros()) + ", \"buckets\": ["));
+		assertTrue(json, json.contains("{\"name\": \"getTitle\", \"count\": 5, \"errors\": 0, \"polls\": 0"));
+		assertTrue("Sorted by name", json.indexOf("\"findElement\"") < json.indexOf("\"getTitle\""));
+
+		String[] lines = CommandMetrics.toCsv().split("\n");
+		assertEquals("name,count,errors,polls,total_ms,mean_ms,min_ms,p50_ms,p90_ms,p99_ms,max_ms", lines[0]);
+		assertEquals(csvLine("findElement", 11, 1, find), lineOf(lines, "findElement,"));
+		assertEquals(csvLine("getTitle", 5, 0, title), lineOf(lines, "getTitle,"));
+		for (String line : lines) {
+			assertEquals(line, 11, line.split(",").length);
+		}
+	}
+
+
+	/** 10 findElement() and click(), one findElement() which fails, 5 getTitle(), and one implicitlyWait(). */
+	private void runCommands() {
+		for (int i = 0; i < 10; i++) {
+			driver.findElement(By.id("q")).click();
+		}
+		try {
+			driver.findElement(By.id("missing"));
+			assertTrue("The element is not on the page", false);
+		} catch (NoSuchElementException e) {
+			//expected: counted as an error
+		}
+		for (int i = 0; i < 5; i++) {
+			assertEquals("Stub Search", driver.getTitle());
+		}
+		driver.manage().timeouts().implicitlyWait(0, TimeUnit.SECONDS);
+	}
+
+	private static void assertWithinBucket(long exact, long percentile) {
+		assertTrue(exact + " -> " + percentile, percentile >= exact && percentile <= exact * 5 / 4);
+	}
+
+	private static long bucketCount(LatencyHistogram histogram) {
+		long count = 0;
+		for (long[] bucket : histogram.getBuckets()) {
+			count += bucket[1];
+		}
+		return count;
+	}
+
+	private static String csvLine(String name, long count, long errors, LatencyHistogram h) {
+		return name + "," + count + "," + errors + ",0," + millis(h.getTotalMicros()) + "," + millis(h.getMeanMicros())
+				+ "," + millis(h.getMinMicros()) + "," + millis(h.getPercentileMicros(0.5))
+				+ "," + millis(h.getPercentileMicros(0.9)) + "," + millis(h.getPercentileMicros(0.99))
+				+ "," + millis(h.getMaxMicros());
+	}
+
+	private static String lineOf(String[] lines, String prefix) {
+		for (String line : lines) {
+			if (line.startsWith(prefix)) {
+				return line;
+			}
+		}
+		return null;
+	}
+
+	private static String millis(long micros) {
+		return String.format(Locale.ROOT, "%.3f", micros / 1000.0);
+	}
+}
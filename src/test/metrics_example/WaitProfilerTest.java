@@ -0,0 +1,87 @@
+package test.metrics_example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+
+import wtbox.test.StubDriver;
+import wtbox.util.WaitProfiler;
+import wtbox.util.WaitProfiler.WaitStats;
+import wtbox.util.WaitTool;
+
+
+/**
+ * This test shows the WaitProfiler report of a run, without a browser.
+ *
+ * One element appears after 300 ms (a slow wait), the other one is already on the page (an instant wait):
+ * the report ranks the first one as the slowest, and lists only the second one as always instant.
+ *
+ * @author Chon Chung
+ */
+public class WaitProfilerTest {
+
+	private static final By LATE = By.id("results");
+	private static final By PRESENT = By.id("q");
+
+	private StubDriver driver;
+
+	@Before
+	public void setup() {
+		WaitProfiler.reset();
+		WaitProfiler.setEnabled(true);
+		driver = new StubDriver();
+		driver.getBody().appendChild("input").setAttribute("id", "q").setAttribute("type", "text");
+	}
+
+	@After
+	public void tearDown() {
+		WaitProfiler.setEnabled(false);
+		WaitProfiler.reset();
+		driver.quit();
+	}
+
+	@Test
+	public void testReportSections(){
+		driver.addElementAfter(300, LATE, "10 results");
+		assertNotNull(WaitTool.waitForElement(driver, LATE, 5));
+		for (int i = 0; i < 3; i++) {
+			assertNotNull(WaitTool.waitForElement(driver, PRESENT, 5));
+		}
+
+		List<WaitStats> waits = WaitProfiler.getWaits();
+		assertEquals(2, waits.size());
+		WaitStats late = waits.get(0);
+		WaitStats present = waits.get(1);
+		assertEquals(LATE.toString(), late.getKey());
+		assertEquals(PRESENT.toString(), present.getKey());
+		assertTrue(late.getCallSite(), late.getCallSite().startsWith(WaitProfilerTest.class.getName() + ".testReportSections("));
+		assertEquals(1, late.getCount());
+		assertEquals(3, present.getCount());
+		assertTrue("Waited " + late.getTotalMillis() + " ms", late.getTotalMillis() >= 290);
+		assertFalse(late.isAlwaysInstant());
+		assertTrue(present.isAlwaysInstant());
+		assertTrue(late.getSuggestedTimeoutSeconds() < 5);
+
+		String report = WaitProfiler.getReport();
+		int instantSection = report.indexOf("Waits that always succeed instantly");
+		assertTrue(report, report.startsWith("Slowest waits (total time)\n"));
+		assertTrue(report, instantSection > 0);
+		String slowest = report.substring(0, instantSection);
+		String instant = report.substring(instantSection);
+
+		//the late element heads the slowest waits, and is not an instant one
+		assertTrue(report, slowest.contains(LATE.toString() + " (" + late.getSuggestedTimeoutSeconds() + " s)"));
+		assertTrue(report, slowest.indexOf(LATE.toString()) < slowest.indexOf(PRESENT.toString()));
+		assertFalse(report, instant.contains(LATE.toString()));
+		//the present element is always instant
+		assertTrue(report, instant.contains(PRESENT.toString() + " (1 s)"));
+	}
+}
@@ -1,6 +1,7 @@
 package test.pageobject_example;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.util.concurrent.TimeUnit;
@@ -75,16 +76,14 @@ public class VimeoSignupTest_withPageObject {
 		//go to page
 		joinPage.open(); 
 		
-		//enter data
-		joinPage.enterFirst_and_LastName(first_and_LastName); 
-		joinPage.enterEmail(email); 
-		joinPage.enterPassword(password); 
-		joinPage.clickAcceptTOS(); 
+		//enter data (all the fields at once)
+		joinPage.enterSignUpForm(first_and_LastName, email, password); 
 
 		//submit form
 		VimeoSignupPage signupPage = joinPage.submitForm(); 
 		
-		//Verify signup success: signup page title should be equal
+		//Verify signup success: the form was submitted, and signup page title should be equal
+		assertNotNull("The form was submitted", signupPage); 
 		assertTrue("Sign up successful" , signupPage.isPageLoad()); 
 		
 		//Go to the profile page and get the profile name
@@ -121,7 +120,7 @@ public class VimeoSignupTest_withPageObject {
 		joinPage.clickAcceptTOS(); 
 
 		//submit form
-		joinPage.submitForm(); 
+		joinPage.submitFormWithErrors(); 
 				
 		//Verify: the Valid Email error message displayed
 		assertTrue("Verify: the Valid Email error message displayed.", 
@@ -151,7 +150,7 @@ public class VimeoSignupTest_withPageObject {
 		joinPage.clickAcceptTOS(); 
 
 		//submit form
-		joinPage.submitForm(); 
+		joinPage.submitFormWithErrors(); 
 
 		//Verify the require password message displayed
 		assertTrue("Verify the require password message displayed.", 
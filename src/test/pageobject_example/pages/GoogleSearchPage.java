@@ -3,9 +3,9 @@ package test.pageobject_example.pages;
 
 import java.util.List;
 
-import org.openqa.selenium.By;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.FindBy;
 
 import wtbox.pages.PageBase;
 import wtbox.util.WaitTool;
@@ -19,7 +19,9 @@ public class GoogleSearchPage  extends PageBase{
 	
 	private final static String pageTitle = "Google"; 
 	
-	private final static String SEARCH_FIELD_NAME = "q"; 
+	/** Search form field: found the first time it is used (package-private for GoogleSearchPage_Elements). */ 
+	@FindBy(name = "q")
+	WebElement searchField; 
 
 	/** Constructor */ 
 	public GoogleSearchPage(WebDriver driver){
@@ -36,13 +38,14 @@ public class GoogleSearchPage  extends PageBase{
 	
 	/** Enter the Search Text in the Search form field */
 	public void enterSearchForm(String searchText){
-		driver.findElement(By.name(SEARCH_FIELD_NAME)).sendKeys(searchText); 		
+		searchField.sendKeys(searchText); 		
 	}
 	
 	/** Submit the form and return the next page object.  
 	 *  Seperate function should be in a seperate method. */
 	public GoogleSearchResultPage submitForm(){
-		driver.findElement(By.name(SEARCH_FIELD_NAME)).submit();   
+		searchField.submit();   
+		invalidateElementCache(); //the browser left this page 
 		return new GoogleSearchResultPage(driver); 
 	}
 	
@@ -1,11 +1,15 @@
 package test.pageobject_example.pages;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import wtbox.pages.PageBase;
 import wtbox.util.WaitTool;
 
 import org.openqa.selenium.By;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.FindBy;
 
 /**
  * Vimeo.com Sign up page Object.  It extends PageBase class. 
@@ -19,6 +23,25 @@ public class VimeoJoinPage extends PageBase{
 	private static final String INPUT_TYPE_SUBMIT = "input[type=submit][value=Join]";	
 	private final static String pageTitle = "Join Vimeo"; 
 	
+	// ids of the sign up form fields (used by @FindBy, and by enterSignUpForm()) 
+	private static final String NAME_ID = "name"; 
+	private static final String EMAIL_ID = "email"; 
+	private static final String PASSWORD_ID = "password"; 
+	private static final String TOS_ID = "tos"; 
+	
+	// sign up form fields: each one is found the first time it is used 
+	// (package-private, so VimeoJoinPage_Elements can bind them) 
+	@FindBy(id = NAME_ID)
+	WebElement nameField; 
+	@FindBy(id = EMAIL_ID)
+	WebElement emailField; 
+	@FindBy(id = PASSWORD_ID)
+	WebElement passwordField; 
+	@FindBy(id = TOS_ID)
+	WebElement acceptTOSCheckBox; 
+	@FindBy(css = INPUT_TYPE_SUBMIT)
+	WebElement joinButton; 
+	
 
 	/** constructor: initialized and load this page properties. */ 
 	public VimeoJoinPage(WebDriver driver){
@@ -30,22 +53,35 @@ public class VimeoJoinPage extends PageBase{
 		
 	/** Enter the sing up First_and_LastName. */
 	public void enterFirst_and_LastName(String first_and_LastName){		
-		driver.findElement(By.id("name")).sendKeys(first_and_LastName);
+		nameField.sendKeys(first_and_LastName);
 	}
 
 	/** Enter the sing up Email. */
 	public void enterEmail(String email){
-		driver.findElement(By.id("email")).sendKeys(email);		
+		emailField.sendKeys(email);		
 	}
 	
 	/** Enter the sing up Password. */
 	public void enterPassword(String password){
-		driver.findElement(By.id("password")).sendKeys(password);	
+		passwordField.sendKeys(password);	
+	}
+	
+	/** 
+	 * Enter the whole sing up form (Name, Email, Password, and "I accept Term Of Services"), 
+	 * with one JavaScript call instead of one call for each field. 
+	 */
+	public void enterSignUpForm(String first_and_LastName, String email, String password){
+		Map<By, String> fields = new LinkedHashMap<By, String>(); 
+		fields.put(By.id(NAME_ID), first_and_LastName); 
+		fields.put(By.id(EMAIL_ID), email); 
+		fields.put(By.id(PASSWORD_ID), password); 
+		fields.put(By.id(TOS_ID), "true"); 
+		fillForm(fields, FillMode.FAST); 
 	}
 	
 	/** Click "I accept Term Of Services" check box. */ 
 	public void clickAcceptTOS(){
-		driver.findElement(By.id("tos")).click(); //"I accept" check box 		
+		acceptTOSCheckBox.click(); //"I accept" check box 		
 	}
 	
 	/** 
@@ -55,10 +91,28 @@ public class VimeoJoinPage extends PageBase{
 	 * Operation that would cause the browser to point to another page 
 	 * -- for example, clicking a link or submitting a form -- 
 	 * then it's the responsibility of the operation to return the next page object. 
-	 * [http://stackoverflow.com/questions/10315894/selenium-webdriver-page-object] */
+	 * [http://stackoverflow.com/questions/10315894/selenium-webdriver-page-object] 
+	 * 
+	 * @return the sign up page, or null if the browser stays on this page (see submitFormWithErrors()) */
 	public VimeoSignupPage submitForm(){
-		driver.findElement(By.cssSelector(INPUT_TYPE_SUBMIT)).click();   
-		return new VimeoSignupPage(driver); 
+		WebElement document = driver.findElement(By.tagName("html")); //this page's document, replaced by the next page 
+		joinButton.click();   
+		if (!WaitTool.waitForStaleness(driver, document, WaitTool.DEFAULT_WAIT_4_PAGE)) {
+			return null; //not submitted: the form has errors 
+		}
+		invalidateElementCache(); //the browser left this page 
+		VimeoSignupPage signupPage = new VimeoSignupPage(driver); 
+		signupPage.waitUntilLoaded(); //wait for the sign up page, instead of the implicit wait 
+		return signupPage; 
+	}
+	
+	/** 
+	 * Submit a form which has errors: the browser stays on this page, and shows the error messages. 
+	 * It does not wait for another page (the verifyErrorMessage...() methods wait for the messages). 
+	 */
+	public VimeoJoinPage submitFormWithErrors(){
+		joinButton.click(); 
+		return this; 
 	}
 
 
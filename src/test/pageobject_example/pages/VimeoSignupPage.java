@@ -12,6 +12,12 @@ public class VimeoSignupPage extends PageBase{
 	public VimeoSignupPage(WebDriver driver){
 		super(driver, pageTitle); 
 	}
+	
+	/** The page is ready when the menu (with the profile link) is there. */ 
+	@Override
+	protected String getReadinessScript(){
+		return "return document.getElementById('menu') != null;"; 
+	}
 
 	/**
 	 * Clicking the profile page link ("Me"). 
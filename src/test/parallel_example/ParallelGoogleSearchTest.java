@@ -0,0 +1,90 @@
+package test.parallel_example;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+
+import test.pageobject_example.pages.GoogleSearchPage;
+import test.pageobject_example.pages.GoogleSearchResultPage;
+import wtbox.test.DriverFactory;
+import wtbox.test.DriverPool;
+import wtbox.test.ParallelRunner;
+import wtbox.test.TestBase;
+
+/**
+ * This test shows how to run test methods in parallel with ParallelRunner and DriverPool. 
+ * 
+ * Each test method leases its own driver from the pool in setup(), 
+ * and returns it in tearDown(), so the next test (of any test class) reuses the browser. 
+ * It uses HtmlUnitDriver, so it runs without a browser installed; 
+ * change the DriverFactory to use FirefoxDriver. 
+ * 
+ * Compare with "GoogleSearch_withPageObject.java" class, which runs one search after the other. 
+ */
+@RunWith(ParallelRunner.class)
+@ParallelRunner.Threads(3)
+public class ParallelGoogleSearchTest extends TestBase {
+
+	/** Create the shared driver pool, and start the browsers before the tests need them. */ 
+	@BeforeClass
+	public static void beforeClass(){
+		DriverPool pool = new DriverPool(new DriverFactory() {
+			@Override
+			public WebDriver createDriver() {
+				return new HtmlUnitDriver(); 
+			}
+		}, 3); 
+		pool.warmUp(3); 
+		setDriverPool(pool); 
+	}
+	
+	/** Lease a driver for this test (one per thread). */
+	@Before
+	public void setup() {
+		leaseDriver(); 
+	}
+	
+	@Test
+	public void testSearchCheese(){
+		searchAndVerify("Cheese!"); 
+	}
+
+	@Test
+	public void testSearchSelenium(){
+		searchAndVerify("Selenium WebDriver"); 
+	}
+
+	@Test
+	public void testSearchPageObject(){
+		searchAndVerify("Page Object"); 
+	}
+	
+	/** Return the driver to the pool for the next test. */
+	@After
+	public void tearDown() {
+		releaseDriver(); 
+	}
+
+	@AfterClass
+	public static void afterClass(){
+		shutdownDriverPool(); 
+	}
+	
+	private void searchAndVerify(String searchText){
+		GoogleSearchPage googleSearchPage = new GoogleSearchPage(driver); 
+		googleSearchPage.open(); 
+		googleSearchPage.enterSearchForm(searchText); 
+		GoogleSearchResultPage googleSearchResultPage = googleSearchPage.submitForm(); 
+		
+		String pageTitle = driver.getTitle(); 
+		System.out.println(Thread.currentThread().getName() + " - Page title is: " + pageTitle);
+		assertTrue("Got title: " + pageTitle, pageTitle.contains(searchText)); 
+	}
+}
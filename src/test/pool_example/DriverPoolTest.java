@@ -0,0 +1,200 @@
+package test.pool_example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.openqa.selenium.WebDriver;
+
+import wtbox.test.DriverFactory;
+import wtbox.test.DriverPool;
+import wtbox.test.ParallelRunner;
+import wtbox.test.StubDriver;
+import wtbox.test.TestBase;
+import wtbox.util.InstrumentedDriver;
+
+
+/**
+ * This test shows how DriverPool keeps the browsers for the next tests, with StubDriver (no browser, no network): 
+ * at most maxDrivers are open, a released driver is leased again (by the next test class too), 
+ * and a dead one is replaced. 
+ * 
+ * @author Chon Chung
+ */
+public class DriverPoolTest {
+
+	/** The drivers the factory started. */
+	private final List<StubDriver> started = new CopyOnWriteArrayList<StubDriver>();
+	private DriverPool pool;
+
+	@Before
+	public void setup() {
+		pool = new DriverPool(new DriverFactory() {
+			@Override
+			public WebDriver createDriver() {
+				StubDriver driver = new StubDriver();
+				started.add(driver);
+				return driver;
+			}
+		}, 2);
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	/** A released driver is reset and leased again: one browser for all the tests. */
+	@Test
+	public void testReleasedDriverIsReused() {
+		WebDriver first = pool.lease(1);
+		pool.release(first);
+		for (int i = 0; i < 5; i++) {
+			WebDriver driver = pool.lease(1);
+			assertSame(first, driver);
+			pool.release(driver);
+		}
+		assertEquals(1, started.size());
+		assertEquals(1, pool.size());
+		assertEquals(1, pool.idleCount());
+	}
+
+	/** At maxDrivers leased drivers, lease() waits for a release, and fails after its timeout. */
+	@Test
+	public void testLeaseWaitsAtTheLimit() throws Exception {
+		final WebDriver first = pool.lease(1);
+		pool.lease(1);
+		long start = System.nanoTime();
+		try {
+			pool.lease(1);
+			fail("A third driver was leased");
+		} catch (IllegalStateException e) {
+			assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(900));
+		}
+
+		Thread releaser = new Thread() {
+			@Override
+			public void run() {
+				DriverPoolTest.sleep(300);
+				pool.release(first);
+			}
+		};
+		releaser.start();
+		assertSame(first, pool.lease(5)); //the released driver, not a third one
+		releaser.join();
+		assertEquals(2, started.size());
+	}
+
+	/** warmUp() only starts the drivers there is room for: the idle and the leased ones count. */
+	@Test
+	public void testWarmUpKeepsTheLimit() {
+		pool.warmUp(5);
+		assertEquals(2, pool.size());
+		pool.warmUp(2);
+		WebDriver leased = pool.lease(1);
+		pool.warmUp(2);
+		assertEquals(2, pool.size());
+		assertEquals(2, started.size());
+		pool.release(leased);
+	}
+
+	/** A driver which died while it was idle (e.g. the browser crashed) is replaced by a new one. */
+	@Test
+	public void testDeadDriverIsReplaced() {
+		WebDriver dead = pool.lease(1);
+		pool.release(dead);
+		dead.quit();
+
+		WebDriver driver = pool.lease(1);
+		assertNotSame(dead, driver);
+		assertEquals(2, started.size());
+		assertEquals(1, pool.size());
+	}
+
+	/** Two ParallelRunner classes of 3 tests each, on 2 threads: 6 tests, 2 drivers, used by both classes. */
+	@Test
+	public void testDriversSharedAcrossClasses() {
+		TestBase.setDriverPool(pool);
+		try {
+			Result result = JUnitCore.runClasses(SearchTest.class, CheckoutTest.class);
+			assertTrue(String.valueOf(result.getFailures()), result.wasSuccessful());
+			assertEquals(6, result.getRunCount());
+		} finally {
+			TestBase.setDriverPool(null);
+		}
+		assertTrue("Started " + started.size(), started.size() <= 2);
+		Set<WebDriver> both = new HashSet<WebDriver>(SearchTest.used);
+		both.retainAll(CheckoutTest.used);
+		assertFalse("The second class reused the drivers of the first one", both.isEmpty());
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	/** A test class which leases its drivers from the shared pool (run by testDriversSharedAcrossClasses). */
+	@RunWith(ParallelRunner.class)
+	@ParallelRunner.Threads(2)
+	public static class SearchTest extends TestBase {
+		static final Set<WebDriver> used = Collections.newSetFromMap(new ConcurrentHashMap<WebDriver, Boolean>());
+
+		@Before
+		public void setup() {
+			leaseDriver();
+			used.add(InstrumentedDriver.unwrap(driver));
+		}
+
+		@After
+		public void tearDown() {
+			releaseDriver();
+		}
+
+		@Test public void testOne() { sleep(100); }
+		@Test public void testTwo() { sleep(100); }
+		@Test public void testThree() { sleep(100); }
+	}
+
+	/** The second test class, run after SearchTest. */
+	@RunWith(ParallelRunner.class)
+	@ParallelRunner.Threads(2)
+	public static class CheckoutTest extends TestBase {
+		static final Set<WebDriver> used = Collections.newSetFromMap(new ConcurrentHashMap<WebDriver, Boolean>());
+
+		@Before
+		public void setup() {
+			leaseDriver();
+			used.add(InstrumentedDriver.unwrap(driver));
+		}
+
+		@After
+		public void tearDown() {
+			releaseDriver();
+		}
+
+		@Test public void testOne() { sleep(100); }
+		@Test public void testTwo() { sleep(100); }
+		@Test public void testThree() { sleep(100); }
+	}
+}
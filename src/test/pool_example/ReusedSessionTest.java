@@ -0,0 +1,114 @@
+package test.pool_example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.WebDriver;
+
+import wtbox.test.DriverFactory;
+import wtbox.test.StubDriver;
+import wtbox.test.TestBase;
+import wtbox.util.InstrumentedDriver;
+
+
+/**
+ * This test shows the session-reuse mode of TestBase (initializeReusedSession()), with StubDriver: 
+ * the test classes share one browser session, which is reset between the tests, 
+ * and the browser is restarted only when the reset fails (here: the browser crashed). 
+ * 
+ * @author Chon Chung
+ */
+public class ReusedSessionTest {
+
+	/** The browsers the factory started. */
+	static final List<StubDriver> started = new CopyOnWriteArrayList<StubDriver>();
+	/** The driver of each test, in the order the tests ran. */
+	static final List<WebDriver> used = new CopyOnWriteArrayList<WebDriver>();
+
+	static final DriverFactory FACTORY = new DriverFactory() {
+		@Override
+		public WebDriver createDriver() {
+			StubDriver driver = new StubDriver();
+			started.add(driver);
+			return driver;
+		}
+	};
+
+	@Before
+	public void setup() {
+		started.clear();
+		used.clear();
+	}
+
+	@After
+	public void tearDown() {
+		TestBase.shutdownReusedSession();
+	}
+
+	/** Two test classes, two tests each: one browser, and each test starts with a reset session (no cookie). */
+	@Test
+	public void testSessionSharedAcrossClasses() {
+		Result result = JUnitCore.runClasses(LoginTest.class, ProfileTest.class);
+		assertTrue(String.valueOf(result.getFailures()), result.wasSuccessful());
+		assertEquals(4, used.size());
+		assertEquals(1, started.size());
+		for (WebDriver driver : used) {
+			assertSame(started.get(0), driver);
+		}
+	}
+
+	/** The browser crashes in a test: its reset fails, so the next test class gets a new browser. */
+	@Test
+	public void testRestartAfterFailedReset() {
+		Result result = JUnitCore.runClasses(LoginTest.class, CrashTest.class, ProfileTest.class);
+		assertTrue(String.valueOf(result.getFailures()), result.wasSuccessful());
+		assertEquals(2, started.size());
+		assertSame(started.get(0), used.get(0));
+		assertSame(started.get(0), used.get(2)); //the crash test had the first browser
+		assertNotSame(used.get(2), used.get(3));
+		assertSame(started.get(1), used.get(4));
+	}
+
+
+	/** Base of the example test classes: the reused session, and a cookie set by each test. */
+	public abstract static class ReusedSessionBase extends TestBase {
+		@Before
+		public void setupSession() {
+			initializeReusedSession(FACTORY);
+			used.add(InstrumentedDriver.unwrap(driver));
+			assertEquals("The session was reset", 0, driver.manage().getCookies().size());
+			driver.manage().addCookie(new Cookie("session", getClass().getSimpleName()));
+		}
+
+		@After
+		public void tearDownSession() {
+			releaseDriver();
+		}
+	}
+
+	public static class LoginTest extends ReusedSessionBase {
+		@Test public void testLogin() { driver.get("http://localhost/login"); }
+		@Test public void testLogout() { driver.get("http://localhost/logout"); }
+	}
+
+	public static class ProfileTest extends ReusedSessionBase {
+		@Test public void testProfile() { driver.get("http://localhost/profile"); }
+		@Test public void testSettings() { driver.get("http://localhost/settings"); }
+	}
+
+	/** One test, whose browser dies. */
+	public static class CrashTest extends ReusedSessionBase {
+		@Test public void testCrash() { driver.quit(); }
+	}
+}
@@ -0,0 +1,77 @@
+package test.replay_example;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+
+import test.pageobject_example.pages.GoogleSearchPage;
+import test.pageobject_example.pages.GoogleSearchResultPage;
+import wtbox.pages.PageBase;
+import wtbox.replay.ReplayServer;
+
+/**
+ * This test shows how to run the Google search test against a local copy of Google, with ReplayServer.
+ *
+ * The first run records the pages (it needs the network) in replay/google;
+ * the next runs replay them, with 200 ms latency per request, without the network.
+ * Delete the directory to record again.  ReplayServerTest shows the same without the network.
+ *
+ * The page objects do not change: PageBase.open() loads the local copy of the redirected origin.
+ * Compare with "GoogleSearch_withPageObject.java" class, which searches the live site.
+ */
+public class ReplayGoogleSearchTest {
+
+	private static final File RECORDING = new File("replay/google");
+	private static ReplayServer server;
+	private WebDriver driver;
+
+	/** Record (first run) or replay Google, and open its pages on the local server. */
+	@BeforeClass
+	public static void beforeClass() throws IOException {
+		if (new File(RECORDING, "index.txt").exists()) {
+			server = ReplayServer.replay(RECORDING).setLatency(200).start();
+		} else {
+			server = ReplayServer.record("http://www.google.com", RECORDING).start();
+		}
+		PageBase.redirectOrigin(server.getOrigin(), server.getBaseUrl());
+	}
+
+	@Before
+	public void setup() {
+		driver = new HtmlUnitDriver();
+	}
+
+	@Test
+	public void testSearchCheese(){
+		GoogleSearchPage googleSearchPage = new GoogleSearchPage(driver);
+		googleSearchPage.open();
+		googleSearchPage.enterSearchForm("Cheese!");
+		GoogleSearchResultPage googleSearchResultPage = googleSearchPage.submitForm();
+
+		String pageTitle = driver.getTitle(); //the result page's title, e.g. "Cheese! - Google Search"
+		System.out.println("Page title is: " + pageTitle + " (" + driver.getCurrentUrl() + ")");
+		assertTrue("Got title: " + pageTitle, googleSearchResultPage.isPageLoad() && pageTitle.contains("Cheese!"));
+	}
+
+	@After
+	public void tearDown() {
+		driver.quit();
+	}
+
+	@AfterClass
+	public static void afterClass(){
+		System.out.println((server.isRecording() ? "Recorded " : "Replayed ") + server.getRequestCount()
+				+ " requests, not recorded: " + server.getMisses());
+		server.stop();
+		PageBase.clearRedirects();
+	}
+}
@@ -0,0 +1,117 @@
+package test.replay_example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+
+import wtbox.replay.ReplayServer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+
+/**
+ * This test shows ReplayServer without the network: a local web site (an HttpServer in the test) is recorded,
+ * the site is stopped, and the recording is replayed with latency.
+ *
+ * @author Chon Chung
+ */
+public class ReplayServerTest {
+
+	private static final long LATENCY_MILLIS = 300;
+
+	private HttpServer site;
+	private String siteOrigin;
+	private File recording;
+	private WebDriver driver;
+
+	/** Start the web site: a search page, and a result page for each query. */
+	@Before
+	public void setup() throws IOException {
+		site = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 0);
+		siteOrigin = "http://127.0.0.1:" + site.getAddress().getPort();
+		site.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				String query = exchange.getRequestURI().getQuery();
+				String html = (query == null)
+						? "<html><head><title>Search</title></head><body>"
+							+ "<form action='" + siteOrigin + "/search'><input name='q'/><input type='submit' id='go'/></form>"
+							+ "</body></html>"
+						: "<html><head><title>" + query.substring(query.indexOf('=') + 1) + " - Search</title></head>"
+							+ "<body><div id='results'>1 result</div></body></html>";
+				byte[] body = html.getBytes("UTF-8");
+				exchange.getResponseHeaders().add("Content-Type", "text/html; charset=UTF-8");
+				exchange.sendResponseHeaders(200, body.length);
+				try (OutputStream out = exchange.getResponseBody()) {
+					out.write(body);
+				}
+			}
+		});
+		site.start();
+		recording = Files.createTempDirectory("wtbox-replay").toFile();
+		driver = new HtmlUnitDriver();
+	}
+
+	@Test
+	public void testRecordAndReplay() throws IOException {
+		ReplayServer recorder = ReplayServer.record(siteOrigin, recording).start();
+		try {
+			search(recorder);
+		} finally {
+			recorder.stop();
+		}
+		assertEquals(2, recorder.getRecordedCount());
+		site.stop(0); //the network is off: only the recording is left
+
+		ReplayServer replayer = ReplayServer.replay(recording).setLatency(LATENCY_MILLIS).start();
+		try {
+			long start = System.nanoTime();
+			search(replayer);
+			long millis = (System.nanoTime() - start) / 1000000;
+			System.out.println("Replayed " + replayer.getRequestCount() + " requests in " + millis + " ms");
+
+			assertEquals("No request was missed: " + replayer.getMisses(), 0, replayer.getMisses().size());
+			assertEquals(2, replayer.getRequestCount());
+			assertTrue("The latency is applied to each request: " + millis + " ms", millis >= 2 * LATENCY_MILLIS);
+		} finally {
+			replayer.stop();
+		}
+	}
+
+	/** Search on the server: the form's absolute URL of the site is rewritten to the server. */
+	private void search(ReplayServer server) {
+		driver.get(server.localUrl(siteOrigin + "/"));
+		driver.findElement(By.name("q")).sendKeys("cheese");
+		driver.findElement(By.id("go")).click();
+		assertEquals("cheese - Search", driver.getTitle());
+		assertTrue(driver.getCurrentUrl().startsWith(server.getBaseUrl()));
+	}
+
+	@After
+	public void tearDown() {
+		driver.quit();
+		site.stop(0);
+		File[] files = recording.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		recording.delete();
+	}
+}
@@ -0,0 +1,108 @@
+package test.shard_example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import wtbox.test.ShardCoordinator;
+import wtbox.test.ShardCoordinator.ShardResult;
+import wtbox.test.ShardPlanner;
+import wtbox.util.TimingStore;
+
+/**
+ * This test shows how to split test classes across worker JVMs with ShardCoordinator.
+ *
+ * The sample classes below only sleep (Slow 1.2 s, Medium 0.8 s, the others 0.4 s), and one fails.
+ * With their durations in the history, the 2 shards are planned to take about the same time.
+ */
+public class ShardingTest {
+
+	private static final List<String> CLASSES = Arrays.asList(
+			Slow.class.getName(), Medium.class.getName(), Quick.class.getName(), Quick2.class.getName(), Failing.class.getName());
+
+	/** Longest processing time first: {6, 5, 4, 3, 3, 3} in 2 shards is 12 + 12, not 15 + 9 (in the given order). */
+	@Test
+	public void testPlanIsBalanced(){
+		Map<String, Long> durations = new HashMap<String, Long>();
+		durations.put("A", 3L);
+		durations.put("B", 3L);
+		durations.put("C", 3L);
+		durations.put("D", 4L);
+		durations.put("E", 5L);
+		durations.put("F", 6L);
+
+		List<ShardPlanner.Shard> plan = ShardPlanner.plan(Arrays.asList("A", "B", "C", "D", "E", "F"), 2, durations);
+		assertEquals(12, plan.get(0).getEstimatedMillis());
+		assertEquals(12, plan.get(1).getEstimatedMillis());
+		assertEquals(Arrays.asList("F", "A", "B"), plan.get(0).getClassNames()); //6, then 3 at 9 - 9 (the lower index), then 3 at 9 - 12
+
+		//a class without history is estimated as the mean (4), after D (4) by name: F, E, D, G, A, B, C 
+		//F 6 | E 5, D 9 | G 10, A 12 | B 13, C 15 
+		List<ShardPlanner.Shard> withNew = ShardPlanner.plan(Arrays.asList("A", "B", "C", "D", "E", "F", "G"), 2, durations);
+		assertEquals(Arrays.asList("F", "G", "B"), withNew.get(0).getClassNames());
+		assertEquals(Arrays.asList("E", "D", "A", "C"), withNew.get(1).getClassNames());
+		assertEquals(13, withNew.get(0).getEstimatedMillis());
+		assertEquals(15, withNew.get(1).getEstimatedMillis());
+	}
+
+	/** Two worker JVMs run the sample classes; the failure is merged, and the durations are saved. */
+	@Test
+	public void testCoordinator() throws Exception {
+		File workDir = new File("target/shards-example");
+		File historyDir = new File(workDir, "timings");
+		File[] segments = historyDir.listFiles();
+		for (int i = 0; segments != null && i < segments.length; i++) {
+			segments[i].delete();
+		}
+
+		ShardResult result = new ShardCoordinator(2).setWorkDir(workDir).run(CLASSES);
+		System.out.print(result.getSummary());
+
+		assertEquals(6, result.getRunCount());
+		assertEquals(1, result.getFailureCount());
+		assertFalse(result.wasSuccessful());
+		assertTrue(result.getFailures().get(0), result.getFailures().get(0).contains("testFails"));
+		TimingStore history = TimingStore.open(historyDir);
+		assertEquals(CLASSES.size(), history.getKeys(TimingStore.CLASS).size());
+		assertTrue(history.percentile(TimingStore.CLASS + Slow.class.getName(), 0.5, 1) >= 1200000000L);
+
+		//the second run is planned from the recorded durations: {Slow, Quick...} and {Medium, Quick...}
+		ShardResult balanced = new ShardCoordinator(2).setWorkDir(workDir).run(CLASSES);
+		System.out.print(balanced.getSummary());
+		assertTrue("Shards " + balanced.getMinShardMillis() + " - " + balanced.getMaxShardMillis() + " ms",
+				balanced.getMaxShardMillis() - balanced.getMinShardMillis() < 1000);
+	}
+
+
+	public static class Slow {
+		@Test public void testSlow() throws InterruptedException { Thread.sleep(1200); }
+	}
+
+	public static class Medium {
+		@Test public void testMedium() throws InterruptedException { Thread.sleep(800); }
+	}
+
+	public static class Quick {
+		@Test public void testQuick() throws InterruptedException { Thread.sleep(400); }
+		@Test public void testQuickAgain() {}
+	}
+
+	public static class Quick2 {
+		@Test public void testQuick() throws InterruptedException { Thread.sleep(400); }
+	}
+
+	public static class Failing {
+		@Test public void testFails() throws InterruptedException {
+			Thread.sleep(400);
+			assertTrue("expected failure", false);
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package test.stub_example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.FindBy;
+
+import wtbox.pages.PageBase;
+import wtbox.test.StubDriver;
+import wtbox.test.StubElement;
+import wtbox.util.InstrumentedDriver;
+import wtbox.util.Tracer;
+import wtbox.util.WaitTool;
+import wtbox.util.WaitTool.WaitMode;
+
+
+/**
+ * This test shows how to test (and measure) wtbox itself with StubDriver, without a browser.
+ *
+ * The page is built in the test, and its changes are scripted: an element appears after 300 ms,
+ * a text changes, an element is removed.  Each driver command takes 100 microseconds,
+ * so the number of commands shows in the time, like with a real browser driver.
+ *
+ * @author Chon Chung
+ */
+public class StubDriverWaitTest {
+
+	private static final By RESULTS = By.cssSelector("div.results");
+
+	private StubDriver driver;
+
+	@Before
+	public void setup() {
+		driver = new StubDriver().setCommandLatency(100, TimeUnit.MICROSECONDS);
+		driver.setTitle("Stub Search");
+		StubElement form = driver.getBody().appendChild("form").setAttribute("id", "search");
+		form.appendChild("input").setAttribute("name", "q").setAttribute("type", "text");
+		form.appendChild("input").setAttribute("id", "tos").setAttribute("type", "checkbox");
+		driver.getBody().appendChild("a").setAttribute("href", "#next").setText("Next page");
+	}
+
+	@After
+	public void tearDown() {
+		WaitTool.setWaitMode(WaitMode.POLLING);
+		Tracer.setEnabled(false);
+		driver.quit();
+	}
+
+	/** The element appears after 300 ms: the wait returns it, and not much later. */
+	@Test
+	public void testWaitForElement(){
+		waitForLateElement();
+	}
+
+	/** The same wait in the "browser" (the OBSERVE_ELEMENT script, run by StubDriver in Java). */
+	@Test
+	public void testWaitForElementObserver(){
+		WaitTool.setWaitMode(WaitMode.DOM_OBSERVER);
+		waitForLateElement();
+	}
+
+	/** The observer wait extends the script timeout for itself, and restores it when it ends. */
+	@Test
+	public void testScriptTimeoutRestored(){
+		WaitTool.setWaitMode(WaitMode.DOM_OBSERVER);
+		waitForLateElement();
+		assertEquals(0, driver.getScriptTimeoutMillis());
+	}
+
+	private void waitForLateElement() {
+		driver.addElementAfter(300, RESULTS, "10 results");
+		assertFalse(WaitTool.isElementPresent(driver, RESULTS));
+
+		long start = System.currentTimeMillis();
+		WebElement results = WaitTool.waitForElement(driver, RESULTS, 5);
+		long elapsed = System.currentTimeMillis() - start;
+
+		assertNotNull(results);
+		assertEquals("10 results", results.getText());
+		assertTrue("Waited " + elapsed + " ms", elapsed >= 290 && elapsed < 1500);
+	}
+
+	@Test
+	public void testWaitForTextAndAbsent(){
+		StubElement status = driver.addElement(By.id("status"), "Loading");
+		status.setTextAfter(200, "Done");
+		WebElement element = driver.findElement(By.id("status"));
+
+		assertTrue(WaitTool.waitForTextPresent(driver, By.id("status"), "Done", 5));
+		status.removeAfter(200);
+		assertTrue(WaitTool.waitForElementAbsent(driver, By.id("status"), 5));
+		assertTrue(WaitTool.waitForStaleness(driver, element, 1));
+		try {
+			element.getText();
+			assertTrue("The removed element is stale", false);
+		} catch (StaleElementReferenceException e) {
+			//expected
+		}
+	}
+
+	/** The text is counted in the "browser" (COUNT_TEXT): one command, the page source is not sent back. */
+	@Test
+	public void testCountText(){
+		StubElement results = driver.addElement(RESULTS, "cheese  and more cheese");
+		results.appendChild("span").setText("cheese").setDisplayed(false);
+		PageBase page = new PageBase(driver, "Stub Search");
+
+		long commands = driver.getCommandCount();
+		assertEquals(3, page.countText("cheese", RESULTS, false));
+		assertEquals(2, page.countText("cheese", RESULTS, true));
+		assertEquals("One script each", 2, driver.getCommandCount() - commands);
+		assertTrue(page.isTextPresent("cheese and more"));
+		assertFalse(page.isTextPresent("crackers"));
+
+		results.setTextAfter(200, "crackers");
+		WaitTool.setWaitMode(WaitMode.DOM_OBSERVER);
+		assertTrue(page.waitForText("crackers", 5));
+	}
+
+	/** The locators of the page objects: CSS, XPath, name and link text. */
+	@Test
+	public void testLocators(){
+		assertEquals("input", driver.findElement(By.name("q")).getTagName());
+		assertEquals(2, driver.findElements(By.cssSelector("form#search > input")).size());
+		assertEquals(1, driver.findElements(By.cssSelector("input[type='checkbox']")).size());
+		assertEquals(1, driver.findElements(By.xpath("//form[@id='search']/input[@name='q']")).size());
+		assertEquals(1, driver.findElements(By.xpath("//a[contains(text(), 'Next')]")).size());
+		assertEquals("Next page", driver.findElement(By.partialLinkText("Next")).getText());
+		assertEquals(0, driver.findElements(By.id("missing")).size());
+	}
+
+	/** fillForm() sets the values with one FILL_FORM script in FAST mode. */
+	@Test
+	public void testFillForm(){
+		PageBase page = new PageBase(driver, "Stub Search");
+		Map<By, String> fields = new LinkedHashMap<By, String>();
+		fields.put(By.name("q"), "cheese");
+		fields.put(By.id("tos"), "true");
+
+		long commands = driver.getCommandCount();
+		page.fillForm(fields, PageBase.FillMode.FAST);
+		assertEquals("One script", 1, driver.getCommandCount() - commands);
+		assertEquals("cheese", driver.findElement(By.name("q")).getAttribute("value"));
+		assertTrue(driver.findElement(By.id("tos")).isSelected());
+	}
+
+	/** The Tracer timeline of a test: the step, the page-object call, the wait, and the driver commands under them. */
+	@Test
+	public void testTimeline(){
+		Tracer.setEnabled(true);
+		Tracer.startTest("StubDriverWaitTest.testTimeline");
+		PageBase page = new PageBase(driver, "Stub Search");
+		Map<By, String> fields = new LinkedHashMap<By, String>();
+		fields.put(By.name("q"), "cheese");
+
+		try (Tracer.Span step = Tracer.begin(Tracer.STEP, "search")) {
+			page.fillForm(fields, PageBase.FillMode.FAITHFUL);
+			driver.addElementAfter(100, RESULTS, "10 results");
+			assertNotNull(WaitTool.waitForElement(InstrumentedDriver.wrap(driver), RESULTS, 5));
+		}
+		String timeline = Tracer.getTimeline();
+		Tracer.endTest();
+		System.out.println(timeline);
+
+		assertTrue(timeline.startsWith("{\"traceEvents\":["));
+		assertTrue(timeline.contains("\"name\":\"search\",\"cat\":\"step\""));
+		assertTrue(timeline.contains("\"name\":\"fillForm FAITHFUL\",\"cat\":\"page\""));
+		assertTrue(timeline.contains("\"name\":\"sendKeys\",\"cat\":\"driver\""));
+		assertTrue(timeline.contains("\"name\":\"" + RESULTS + "\",\"cat\":\"wait\""));
+		assertEquals(0, Tracer.getDroppedCount());
+	}
+
+	/** A page with a lazy element field. */
+	public static class SearchPage extends PageBase {
+		@FindBy(name = "q")
+		WebElement searchField;
+
+		public SearchPage(StubDriver driver) {
+			super(driver, "Stub Search");
+		}
+	}
+
+	/** A lazy element is found once, and again when it is stale; the page's element cache stays off. */
+	@Test
+	public void testLazyElement(){
+		SearchPage page = new SearchPage(driver);
+		long commands = driver.getCommandCount();
+		page.searchField.sendKeys("cheese");
+		page.searchField.sendKeys("!");
+		assertEquals(3, driver.getCommandCount() - commands); //one findElement, two sendKeys
+		assertEquals(0, page.getCacheMisses());
+
+		driver.removeElements(By.name("q"));
+		driver.getBody().appendChild("input").setAttribute("name", "q");
+		page.searchField.sendKeys("cheese");
+		assertEquals("cheese", page.searchField.getAttribute("value"));
+	}
+
+	/** The page object overhead: 1000 cached lookups make one driver command. */
+	@Test
+	public void testCachedLookups(){
+		PageBase page = new PageBase(driver, "Stub Search");
+		page.setElementCacheEnabled(true);
+
+		long commands = driver.getCommandCount();
+		long start = System.nanoTime();
+		for (int i = 0; i < 1000; i++) {
+			page.getWebElement(By.name("q"));
+		}
+		long micros = (System.nanoTime() - start) / 1000;
+		System.out.println("1000 cached lookups: " + micros + " us, " + (driver.getCommandCount() - commands) + " command(s)");
+
+		assertEquals(1, driver.getCommandCount() - commands);
+		assertEquals(999, page.getCacheHits());
+
+		page.waitUntilLoaded(5); //a page transition: the elements are found again
+		page.getWebElement(By.name("q"));
+		assertEquals(2, page.getCacheMisses());
+	}
+}
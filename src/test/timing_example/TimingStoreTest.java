@@ -0,0 +1,146 @@
+package test.timing_example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import wtbox.util.TimingStore;
+import wtbox.util.Tracer;
+
+/**
+ * This test shows how the timing history is kept across runs, and how a slowdown is caught.
+ *
+ * Each "run" opens the store, records a test and one of its steps, and closes it, like a test JVM does
+ * (TraceRule with -Dwtbox.timings.dir).
+ */
+public class TimingStoreTest {
+
+	private static final String TEST = TimingStore.TEST + "GoogleSearch.testSearch";
+	private static final String STEP = TimingStore.STEP + "GoogleSearch.testSearch > page:open Google";
+
+	private final File dir = new File("target/timings-example");
+
+	@Before
+	public void setup() {
+		File[] segments = dir.listFiles();
+		for (int i = 0; segments != null && i < segments.length; i++) {
+			segments[i].delete();
+		}
+	}
+
+	/** 10 runs of about 2 s: the percentiles, and no regression. */
+	@Test
+	public void testPercentiles() throws Exception {
+		for (int run = 1; run <= 10; run++) {
+			run(2000 + run * 10, 300);
+		}
+		TimingStore store = TimingStore.open(dir);
+		assertEquals(10, store.getCount(TEST));
+		assertEquals(millis(2050), store.percentile(TEST, 0.5, 0));
+		assertEquals(millis(2090), store.percentile(TEST, 0.9, 0));
+		assertEquals(millis(2100), store.percentile(TEST, 1, 0));
+		assertEquals(millis(2080), store.percentile(TEST, 0.5, 5)); //the last 5 runs
+		assertTrue(store.trend(TEST, 10) > 1 && store.trend(TEST, 10) < 1.05);
+		assertTrue(store.findRegressions(TimingStore.DEFAULT_THRESHOLD, TimingStore.DEFAULT_WINDOW, millis(100)).isEmpty());
+		System.out.print(store.getReport("", TimingStore.DEFAULT_WINDOW, TimingStore.DEFAULT_THRESHOLD, millis(100)));
+	}
+
+	/** The page got slow in the last run: the step and the test are flagged, the worst first. */
+	@Test
+	public void testRegression() throws Exception {
+		for (int run = 1; run <= 6; run++) {
+			run(2000, 300);
+		}
+		run(3500, 1800);
+		TimingStore store = TimingStore.open(dir);
+		List<TimingStore.Regression> regressions = store.findRegressions(TimingStore.DEFAULT_THRESHOLD, TimingStore.DEFAULT_WINDOW, millis(100));
+		assertEquals(2, regressions.size());
+		assertEquals(STEP, regressions.get(0).getKey());
+		assertEquals(6.0, regressions.get(0).getRatio(), 0.001);
+		assertEquals(TEST, regressions.get(1).getKey());
+		assertNull(store.findRegression(TEST, 1.0, TimingStore.DEFAULT_WINDOW, millis(100))); //under 100% slower
+		System.out.println(regressions);
+	}
+
+	/** A segment cut by a crash is read up to its last whole record. */
+	@Test
+	public void testCutSegment() throws Exception {
+		run(2000, 300);
+		run(2100, 300);
+		File[] segments = dir.listFiles();
+		assertEquals(2, segments.length);
+		File last = segments[0].getName().compareTo(segments[1].getName()) > 0 ? segments[0] : segments[1];
+		try (RandomAccessFile file = new RandomAccessFile(last, "rw")) {
+			file.setLength(file.length() > 100 ? 100 : file.length() - 5); //in the middle of the records
+		}
+		TimingStore store = TimingStore.open(dir);
+		assertEquals(millis(2000), store.getDurations(TEST, 0)[0]);
+		assertTrue(store.getCount(TEST) + store.getCount(STEP) < 4);
+	}
+
+	/** Every run adds a segment: over MAX_SEGMENTS, open() rewrites them, and compact() keeps the last durations. */
+	@Test
+	public void testCompaction() throws Exception {
+		for (int run = 1; run <= TimingStore.MAX_SEGMENTS + 1; run++) {
+			run(2000 + run, 300);
+		}
+		assertEquals(TimingStore.MAX_SEGMENTS + 1, dir.listFiles().length);
+		TimingStore store = TimingStore.open(dir);
+		assertEquals(1, dir.listFiles().length);
+		assertEquals(TimingStore.MAX_SEGMENTS + 1, store.getCount(TEST));
+		assertEquals(millis(2000 + TimingStore.MAX_SEGMENTS + 1), store.percentile(TEST, 1, 0));
+
+		run(3000, 300);
+		assertEquals(2, TimingStore.compact(dir, 5));
+		store = TimingStore.open(dir);
+		assertEquals(5, store.getCount(TEST));
+		assertEquals(millis(3000), store.getDurations(TEST, 0)[4]);
+		assertEquals(millis(2000 + TimingStore.MAX_SEGMENTS - 2), store.getDurations(TEST, 0)[0]);
+	}
+
+	/** The spans of a step are added up: one duration per step and run, without the span details. */
+	@Test
+	public void testRecordSteps() throws Exception {
+		Tracer.setEnabled(true);
+		try {
+			Tracer.startTest("GoogleSearch.testSearch");
+			long start = System.nanoTime();
+			for (int i = 0; i < 3; i++) {
+				Tracer.record(Tracer.WAIT, "waitForElement", start, start + millis(100));
+			}
+			Tracer.record(Tracer.DRIVER, "findElement", start, start + millis(1));
+			TimingStore store = TimingStore.open(dir);
+			store.recordSteps("GoogleSearch.testSearch");
+			store.close();
+		} finally {
+			Tracer.setEnabled(false);
+		}
+		TimingStore store = TimingStore.open(dir);
+		String wait = TimingStore.STEP + "GoogleSearch.testSearch > wait:waitForElement";
+		assertEquals(Collections.singleton(wait), store.getKeys(TimingStore.STEP));
+		assertEquals(1, store.getCount(wait));
+		assertEquals(millis(300), store.percentile(wait, 1, 0));
+	}
+
+	/** One run: a new store (its own segment), the step and the test durations. */
+	private void run(long testMillis, long stepMillis) throws Exception {
+		TimingStore store = TimingStore.open(dir);
+		store.record(STEP, millis(stepMillis));
+		store.record(TEST, millis(testMillis));
+		store.close();
+		Thread.sleep(2); //one run after the other
+	}
+
+	private static long millis(long millis) {
+		return TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+}
@@ -1,6 +1,7 @@
 package test.wait_example;
 
 
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import junit.framework.Assert;
@@ -17,6 +18,7 @@ import org.openqa.selenium.firefox.FirefoxDriver;
 import static junit.framework.Assert.*;
 
 import wtbox.util.TimeTool;
+import wtbox.util.Tracer;
 import wtbox.util.WaitTool;
 
 /**
@@ -104,7 +106,9 @@ public class AJAX_wait {
 
 	/**
 	 * Testing AJAX Elements wait.  
-	 * I use WaitTool.waitForElement() for waiting AJAX elements. 
+	 * I use WaitTool.waitForAll() for waiting AJAX elements. 
+	 * It waits for both images in one polling loop, so the total wait is 
+	 * the slower image's wait, not the sum of two WaitTool.waitForElement() calls. 
 	 * 
 	 * -----------------------------------------------------------------------
 	 * Note: the original test from: 
@@ -118,13 +122,16 @@ public class AJAX_wait {
 		//Click the ("Image Statistics") button to load an AJAX page
 		driver.findElement(By.cssSelector("a[title=\"Image Statistics\"] > img")).click(); 
 
-		//Wait for an AJAX Element ("Summed Images Impressions by Region") 
-		WebElement summed_img = WaitTool.waitForElement(driver, By.xpath("//div[@id='statistics']/img[3]"), 5); 
-
-		//Wait for an AJAX Element ("Directories Visits") 
-		WebElement directory_img = WaitTool.waitForElement(driver, By.xpath("//div[@id='statistics']/img[5]"),5 ); 
+		//Wait for the AJAX Elements ("Summed Images Impressions by Region", and "Directories Visits") 
+		By summed_img_locator = By.xpath("//div[@id='statistics']/img[3]"); 
+		By directory_img_locator = By.xpath("//div[@id='statistics']/img[5]"); 
+		Map<By, WebElement> images = WaitTool.waitForAll(driver, 5, summed_img_locator, directory_img_locator); 
 		
-		if(summed_img != null && directory_img != null){			
+		if(images != null){			
+			WebElement summed_img = images.get(summed_img_locator); 
+			WebElement directory_img = images.get(directory_img_locator); 
+			
+
 			// compare with expected values with the actual values
 			assertEquals("Image width" , 400, summed_img.getSize().width);  
 			assertEquals("Image height" , 250, summed_img.getSize().height);  
@@ -155,7 +162,7 @@ public class AJAX_wait {
 	 * 1.	Test if the WaitTool method only wait for the given wait time.  
 	 *      and implicitlyWait setting does not effect on WaitTool's wait time. 
 	 *  
-	 * 2.	Test performance: how long does it takes calling driver-implicitlyWait 100 times.
+	 * 2.	Test performance: how long does it takes calling driver-implicitlyWait 50 times.
 	 * 
 	 * 3.   Verify reset implicitlyWait() does actually work:
 	 * 
@@ -163,41 +170,56 @@ public class AJAX_wait {
 	@Test 
 	public void testWaitTool_class(){
 		System.out.println("test WaitTool_class-----------------------------------------");
+		//time each step with Tracer (monotonic nanoseconds), and write the timeline if -Dwtbox.trace.dir is set 
+		boolean tracing = Tracer.isEnabled(); 
+		Tracer.setEnabled(true); 
+		Tracer.startTest("AJAX_wait.testWaitTool_class"); 
+		try {
+			System.out.println("	started at: " + TimeTool.getCurrentTime()); 
 			driver.get("https://www.google.com/"); 
 	
 			//test if the WaitTool method only wait for the given amount wait time.  
 			// and implicitlyWait setting does not effect on WaitTool's wait time. 
 			System.out.println("Test WaitTool.waitForElement: 3 seconds wait time =========");
-			System.out.println("	time before WaitTool.waitForElement: " + TimeTool.getCurrentTime()); 			
+			Tracer.begin(Tracer.STEP, "waitForElement 3 seconds"); 
 				//wait for 3 seconds: 
 				WaitTool.waitForElement(driver, By.cssSelector("div#really_long_id_should_not_in_a_page__blar_blar_blar"), 3); 
-			System.out.println("	time  after WaitTool.waitForElement: " + TimeTool.getCurrentTime()); 
+			System.out.println("	WaitTool.waitForElement took: " + millis(Tracer.end()) + " ms"); 
 			System.out.println(""); 
 			
 			
-			//test performance: how long does it takes calling driver-implicitlyWait 100 times.
-			System.out.println("Test performance: calling driver-implicitlyWait 100 times=========");
-			System.out.println("	time before calling: " + TimeTool.getCurrentTime()); 
+			//test performance: how long does it takes calling driver-implicitlyWait 50 times.
+			System.out.println("Test performance: calling driver-implicitlyWait 50 times=========");
+			Tracer.begin(Tracer.STEP, "implicitlyWait 50 times"); 
 				for (int i = 0; i < 50; i++){
-					//resetImplicitWait call driver-implicitlyWait() 2 times(nullify and set). 
+					//resetImplicitWait calls driver-implicitlyWait() once (DriverState.setImplicitWait, no nullify), and only when the time changes. 
 					WaitTool.resetImplicitWait(driver, i);
 				}
-			System.out.println("	time  after calling: " + TimeTool.getCurrentTime()); 
+			System.out.println("	50 calls took: " + millis(Tracer.end()) + " ms"); 
 			System.out.println("");
 			
 			//Test reset implicitWait
 			WaitTool.resetImplicitWait(driver, 2);
 			System.out.println("Test resetImplicitWait (given wait time = 2 seconds) =========");
-			System.out.println("	time before: " + TimeTool.getCurrentTime()); 
+			Tracer.begin(Tracer.STEP, "implicitlyWait 2 seconds"); 
 				try{
 					//check how long implicitlyWait() do actually wait
 					driver.findElement(By.id("really_long_id_should_not_in_a_page__blar_blar_blar")); 
 				}catch (Exception e){}
-			System.out.println("	time  after: " + TimeTool.getCurrentTime()); 
+			System.out.println("	findElement took: " + millis(Tracer.end()) + " ms"); 
 			System.out.println("");
+		} finally {
+			Tracer.endTest(); 
+			Tracer.setEnabled(tracing); 
+		}
 		System.out.println("test WaitTool_class-----------------------------------------");
 	}
 	
+	/** Nanoseconds as milliseconds, e.g. "3012.345". */ 
+	private static String millis(long nanos){
+		return String.format("%.3f", nanos / 1000000.0); 
+	}
+	
 	@AfterClass
 	public static void tearDown(){
 		driver.quit();   
@@ -0,0 +1,16 @@
+package wtbox.pages;
+
+
+/**
+ * Binds the element fields of a page object (see PageBinder).  
+ * 
+ * wtbox.processor.PageElementsProcessor generates one for each page class at build time 
+ * (e.g. GoogleSearchPage_Elements), so the fields are bound by plain Java code, without reflection. 
+ * 
+ * @param <P> the page class
+ */
+public interface ElementBinder<P extends PageBase> {
+
+	/** Set each element field of the page (e.g. to page.lazyElement(by)). */ 
+	void bind(P page); 
+}
@@ -0,0 +1,107 @@
+package wtbox.pages;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+
+/**
+ * Element lookup cache of a page object (see PageBase.setElementCacheEnabled()). 
+ * 
+ * The first getWebElement(By) finds the element (a miss), and the next ones 
+ * return the same element without a findElement() round-trip (a hit). 
+ * A cached element which became stale (the page changed, or it was re-rendered) 
+ * is found again and the command is retried, so callers never see the 
+ * StaleElementReferenceException (a re-lookup). 
+ * 
+ * It is cleared on navigation (PageBase.open(), waitUntilLoaded(), invalidateElementCache()). 
+ * 
+ * The cache belongs to one page object, so it is used by one test thread. 
+ */
+final class ElementCache {
+
+	private static final AtomicLong totalHits = new AtomicLong(); 
+	private static final AtomicLong totalMisses = new AtomicLong(); 
+	private static final AtomicLong totalRelookups = new AtomicLong(); 
+
+	private final WebDriver driver; 
+	private final Map<By, CachedElement> elements = new HashMap<By, CachedElement>(); 
+	private int hits; 
+	private int misses; 
+	private int relookups; 
+
+	ElementCache(WebDriver driver) {
+		this.driver = driver; 
+	}
+
+	/** Returns the cached element, or finds and caches it. */ 
+	WebElement get(By by) {
+		CachedElement element = elements.get(by); 
+		if (element != null) {
+			hits++; 
+			totalHits.incrementAndGet(); 
+			return element; 
+		}
+		element = new CachedElement(by, driver.findElement(by)); //throws NoSuchElementException as findElement() 
+		misses++; 
+		totalMisses.incrementAndGet(); 
+		elements.put(by, element); 
+		return element; 
+	}
+
+	/** Forget all the cached elements (e.g. after a navigation). */ 
+	void clear() {
+		elements.clear(); 
+	}
+
+	int getHits() {
+		return hits; 
+	}
+
+	int getMisses() {
+		return misses; 
+	}
+
+	int getRelookups() {
+		return relookups; 
+	}
+
+	/** Returns the counters of all the element caches: "hits=..., misses=..., relookups=...". */ 
+	static String getTotalStats() {
+		return "hits=" + totalHits.get() + ", misses=" + totalMisses.get() + ", relookups=" + totalRelookups.get(); 
+	}
+
+
+	/** Cached WebElement: finds the element again when it is stale, and retries the command once. */ 
+	private final class CachedElement extends RelocatingElement {
+
+		private WebElement element; 
+
+		CachedElement(By by, WebElement element) {
+			super(by); 
+			this.element = element; 
+		}
+
+		@Override
+		WebElement element() {
+			return element; 
+		}
+
+		@Override
+		WebElement relookup() {
+			relookups++; 
+			totalRelookups.incrementAndGet(); 
+			element = driver.findElement(by); 
+			return element; 
+		}
+
+		@Override
+		public String toString() {
+			return "cached " + by; 
+		}
+	}
+}
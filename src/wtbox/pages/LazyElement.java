@@ -0,0 +1,50 @@
+package wtbox.pages;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebElement;
+
+
+/**
+ * Lazy WebElement of a page object field (see PageBinder). 
+ * 
+ * It holds only the locator: the element is found the first time it is used, 
+ * and the next calls reuse it.  A stale element is found again and the command is retried once, 
+ * and so is an element found before the page's element cache was invalidated (e.g. open()). 
+ * Creating a page object does not touch the driver. 
+ * 
+ * It does not enable the page's element cache: getWebElement() of the page keeps its own mode. 
+ */
+final class LazyElement extends RelocatingElement {
+
+	private final PageBase page; 
+	/** The element found last, or null. */ 
+	private WebElement element; 
+	/** The page's invalidation count when the element was found. */ 
+	private int generation; 
+
+	LazyElement(PageBase page, By by) {
+		super(by); 
+		this.page = page; 
+	}
+
+	/** The element: found on the first call, and after the page was invalidated. */ 
+	@Override
+	WebElement element() {
+		if (element == null || generation != page.getInvalidations()) {
+			generation = page.getInvalidations(); 
+			element = page.getWebElement(by); 
+		}
+		return element; 
+	}
+
+	@Override
+	WebElement relookup() {
+		element = null; 
+		return element(); 
+	}
+
+	@Override
+	public String toString() {
+		return "lazy " + by; 
+	}
+}
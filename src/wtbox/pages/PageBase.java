@@ -1,19 +1,44 @@
 package wtbox.pages;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 
+import wtbox.util.CommandMetrics;
+import wtbox.util.InstrumentedDriver;
+import wtbox.util.Tracer;
+import wtbox.util.JavaScriptTool;
+import wtbox.util.WaitTool;
+
 
 
 /**
  * Page Object base class.  It provides the base structure 
  * and properties for a page object to extend.  
  * 
+ * WebElement fields annotated with &#64;FindBy are bound to lazy elements by the constructor: 
+ * an element is found the first time it is used, and then reused (see PageBinder). 
+ * 
  * @author Chon Chung
  */
 public class PageBase {
+	  
+	  /** 
+	   * How fillForm() fills the fields. 
+	   * FAST: sets all the values, and fires the input and change events, in one JavaScript call. 
+	   *       No key event is fired, and the field values are replaced. 
+	   * FAITHFUL: finds all the fields in one JavaScript call, then types the keys into each field 
+	   *       (like sendText(), the keys are added to the field value). 
+	   */ 
+	  public enum FillMode {FAST, FAITHFUL}
+	  
 	  /** Default URL */
 	  protected String URL;	
 	  
@@ -24,11 +49,21 @@ public class PageBase {
 	   * to check if page is loaded. */
 	  protected String pageTitle; 
 	  
+	  /** Element lookup cache, or null if it is not enabled. */ 
+	  private ElementCache elementCache; 
 	  
-	  /** Constructor */ 
+	  /** Number of invalidateElementCache() calls: the lazy elements found before are found again. */ 
+	  private int invalidations; 
+	  
+	  /** origin (e.g. "http://www.google.com") -> local server URL, see redirectOrigin() */ 
+	  private static final Map<String, String> redirects = new ConcurrentHashMap<String, String>(); 
+	  
+	  
+	  /** Constructor.  If CommandMetrics (or Tracer) is enabled, the page uses the instrumented driver. */ 
 	  public PageBase(WebDriver driver, String pageTitle) {
-		  this.driver = driver; 
+		  this.driver = (CommandMetrics.isEnabled() || Tracer.isEnabled()) ? InstrumentedDriver.wrap(driver) : driver; 
 		  this.pageTitle = pageTitle; 
+		  PageBinder.bind(this); 
 	  }
 	  
 	  /** 
@@ -40,9 +75,133 @@ public class PageBase {
 	  }
 	  
 	  
-	  /** Open the default page */ 
+	  /** 
+	   * Wait for this page to be loaded, for WaitTool.DEFAULT_WAIT_4_PAGE seconds. 
+	   * @see #waitUntilLoaded(int) 
+	   */ 
+	  public long waitUntilLoaded(){
+		  return waitUntilLoaded(WaitTool.DEFAULT_WAIT_4_PAGE); 
+	  }
+	  
+	  /** 
+	   * Wait for this page to be loaded: document.readyState is "complete", 
+	   * getReadinessScript() returns true, and no AJAX request is in flight. 
+	   * It is checked inside the browser (one async script call), instead of polling isPageLoad(). 
+	   * The element cache is cleared: the elements of the loaded page are found again. 
+	   * 
+	   * @param timeOutInSeconds - The time in seconds to wait until returning a failure
+	   * @return the time the wait took in milliseconds, or -1 (if the timeout is reached)
+	   */ 
+	  public long waitUntilLoaded(int timeOutInSeconds){
+		  try (Tracer.Span span = Tracer.begin(Tracer.PAGE, "waitUntilLoaded", pageTitle)) {
+			  long millis = WaitTool.waitForPageLoaded(driver, getReadinessScript(), timeOutInSeconds); 
+			  invalidateElementCache(); 
+			  return millis; 
+		  }
+	  }
+	  
+	  /** 
+	   * Page-specific readiness check for waitUntilLoaded(): a JavaScript function body 
+	   * returning true when the page is ready, e.g. "return document.getElementById('menu') != null;".  
+	   * Returns null (no check) by default; override it in the page object. 
+	   */ 
+	  protected String getReadinessScript(){
+		  return null; 
+	  }
+	  
+	  
+	  /** Open the default page (on the local server, if its origin is redirected) */ 
 	  public void open(){
-		  driver.get(URL); 
+		  try (Tracer.Span span = Tracer.begin(Tracer.PAGE, "open", pageTitle)) {
+			  driver.get(redirectedURL(URL)); 
+			  invalidateElementCache(); 
+		  }
+	  }
+	  
+	  /** 
+	   * Open the pages of the origin on another server, e.g. a wtbox.replay.ReplayServer: 
+	   * open() loads "http://127.0.0.1:51234/search?q=x" instead of "http://www.google.com/search?q=x". 
+	   * 
+	   * @param origin	scheme, host and port of the web site, e.g. "http://www.google.com" 
+	   * @param baseUrl	the server's URL, e.g. ReplayServer.getBaseUrl() 
+	   */ 
+	  public static void redirectOrigin(String origin, String baseUrl){
+		  redirects.put(origin, baseUrl); 
+	  }
+	  
+	  /** Open all the pages on their own web site again. */ 
+	  public static void clearRedirects(){
+		  redirects.clear(); 
+	  }
+	  
+	  /** Returns the URL on the server of its origin (see redirectOrigin()), or the URL itself. */ 
+	  public static String redirectedURL(String url){
+		  if (url == null) return null; 
+		  for (Map.Entry<String, String> redirect : redirects.entrySet()) {
+			  String origin = redirect.getKey(); 
+			  if (url.startsWith(origin) && (url.length() == origin.length() 
+					  || url.charAt(origin.length()) == '/' || url.charAt(origin.length()) == '?')) {
+				  return redirect.getValue() + url.substring(origin.length()); 
+			  }
+		  }
+		  return url; 
+	  }
+	  
+	  /** 
+	   * Enable (or disable) the element lookup cache of this page.  
+	   * With the cache, getWebElement(By) and sendText() find each element once, 
+	   * and reuse it for the next calls instead of a findElement() round-trip. 
+	   * A cached element which became stale is found again transparently. 
+	   * Use it for a page whose elements are used repeatedly. 
+	   */ 
+	  public void setElementCacheEnabled(boolean enabled){
+		  elementCache = enabled ? new ElementCache(driver) : null; 
+	  }
+	  
+	  /** 
+	   * Returns a lazy element of this page: the element is found the first time it is used, 
+	   * and then reused (a stale one is found again).  The page element binders use it. 
+	   * It does not enable the element cache. 
+	   * @param by 		element locater. 
+	   */ 
+	  public WebElement lazyElement(By by){
+		  return new LazyElement(this, by); 
+	  }
+	  
+	  /** 
+	   * Forget the cached elements, e.g. after an action which navigates to another page 
+	   * (a page transition such as a form submit).  open() and waitUntilLoaded() call it. 
+	   */ 
+	  public void invalidateElementCache(){
+		  invalidations++; 
+		  if (elementCache != null) {
+			  elementCache.clear(); 
+		  }
+	  }
+	  
+	  /** Returns the number of invalidateElementCache() calls, for the lazy elements. */ 
+	  int getInvalidations(){
+		  return invalidations; 
+	  }
+	  
+	  /** Returns the number of getWebElement() calls answered by the cache (no findElement()). */ 
+	  public int getCacheHits(){
+		  return (elementCache == null) ? 0 : elementCache.getHits(); 
+	  }
+	  
+	  /** Returns the number of getWebElement() calls which had to find the element. */ 
+	  public int getCacheMisses(){
+		  return (elementCache == null) ? 0 : elementCache.getMisses(); 
+	  }
+	  
+	  /** Returns the number of cached elements found again because they became stale. */ 
+	  public int getCacheRelookups(){
+		  return (elementCache == null) ? 0 : elementCache.getRelookups(); 
+	  }
+	  
+	  /** Returns the counters of all the pages' element caches: "hits=..., misses=..., relookups=...". */ 
+	  public static String getElementCacheStats(){
+		  return ElementCache.getTotalStats(); 
 	  }
 	  
 	  
@@ -63,61 +222,208 @@ public class PageBase {
 	   * @param text
 	   */
 	  protected void sendText(String cssSelector, String text) {
-			driver.findElement(By.cssSelector(cssSelector)).sendKeys(text);
+			getWebElement(By.cssSelector(cssSelector)).sendKeys(text);
+	  }
+	  
+	  /** 
+	   * Fill a form in the FAITHFUL mode: the fields are found in one call, and the keys are typed. 
+	   * Use a LinkedHashMap to keep the fields in order. 
+	   * @param fields 	element locater and its text, for each field 
+	   */
+	  public void fillForm(Map<By, String> fields) {
+			fillForm(fields, FillMode.FAITHFUL); 
+	  }
+	  
+	  /** 
+	   * Fill a form.  With FAST, one executeScript() fills the whole form, 
+	   * instead of one findElement() and one sendKeys() for each field. 
+	   * A checkbox (or radio button) is checked with the text "true", and unchecked with "false". 
+	   * 
+	   * @param fields 	element locater and its text, for each field (use a LinkedHashMap to keep the order) 
+	   * @param mode 	FAST or FAITHFUL 
+	   * @throws NoSuchElementException if a field is not found 
+	   */
+	  public void fillForm(Map<By, String> fields, FillMode mode) {
+		  try (Tracer.Span span = Tracer.begin(Tracer.PAGE, "fillForm", mode.name())) {
+		  	List<By> locators = new ArrayList<By>(fields.keySet()); 
+		  	if (mode == FillMode.FAST) {
+		  		if (!fillFormInBrowser(locators, fields)) {
+		  			//the browser can not do it (e.g. no XPath support): set each field with the driver 
+		  			List<WebElement> elements = findEach(locators); 
+		  			for (int i = 0; i < locators.size(); i++) {
+		  				setValue(elements.get(i), fields.get(locators.get(i))); 
+		  			}
+		  		}
+		  		return; 
+		  	}
+		  	List<WebElement> elements = findEach(locators); 
+		  	for (int i = 0; i < locators.size(); i++) {
+		  		elements.get(i).sendKeys(fields.get(locators.get(i))); 
+		  	}
+		  }
+	  }
+	  
+	  /** 
+	   * Fill the fields with the FILL_FORM script. 
+	   * @return false if the script can not be used, so nothing or only a part of the form is filled. 
+	   */
+	  private boolean fillFormInBrowser(List<By> locators, Map<By, String> fields) {
+		  	if (!(driver instanceof JavascriptExecutor)) {
+		  		return false; 
+		  	}
+		  	List<String> kinds = new ArrayList<String>(); 
+		  	List<String> values = new ArrayList<String>(); 
+		  	List<String> texts = new ArrayList<String>(); 
+		  	for (By by : locators) {
+		  		String[] locator = JavaScriptTool.locatorOf(by); 
+		  		if (locator == null) {
+		  			return false; 
+		  		}
+		  		kinds.add(locator[0]); 
+		  		values.add(locator[1]); 
+		  		texts.add(String.valueOf(fields.get(by))); 
+		  	}
+		  	Object missing; 
+		  	try {
+		  		missing = ((JavascriptExecutor) driver).executeScript(JavaScriptTool.FILL_FORM, kinds, values, texts); 
+		  	} catch (RuntimeException e) {
+		  		return false; 
+		  	}
+		  	int index = (missing instanceof Number) ? ((Number) missing).intValue() : -1; 
+		  	if (index >= 0) {
+		  		//it may be added to the page later: let the driver find it (with implicitlyWait) 
+		  		getWebElement(locators.get(index)); 
+		  		return false; 
+		  	}
+		  	return true; 
+	  }
+	  
+	  /** Replace the value of the field (or check/uncheck a checkbox), with the driver. */
+	  private void setValue(WebElement element, String text) {
+		  	String type = element.getAttribute("type"); 
+		  	if ("checkbox".equals(type) || "radio".equals(type)) {
+		  		boolean checked = "true".equals(text) || "on".equals(text); 
+		  		if (element.isSelected() != checked) {
+		  			element.click(); 
+		  		}
+		  		return; 
+		  	}
+		  	element.clear(); 
+		  	element.sendKeys(text); 
 	  }
 	  
-	  /** Is the text present in page. */ 
+	  /** 
+	   * Find the first element of each locator, in one JavaScript call.  
+	   * An element the script can not find is found with getWebElement(). 
+	   * @throws NoSuchElementException if an element is not found 
+	   */
+	  private List<WebElement> findEach(List<By> locators) {
+		  	List<?> found = null; 
+		  	if (elementCache == null && driver instanceof JavascriptExecutor) {
+		  		List<String> kinds = new ArrayList<String>(); 
+		  		List<String> values = new ArrayList<String>(); 
+		  		for (By by : locators) {
+		  			String[] locator = JavaScriptTool.locatorOf(by); 
+		  			kinds.add(locator == null ? "" : locator[0]); 
+		  			values.add(locator == null ? "" : locator[1]); 
+		  		}
+		  		try {
+		  			Object result = ((JavascriptExecutor) driver).executeScript(JavaScriptTool.FIND_EACH, kinds, values, JavaScriptTool.PRESENT); 
+		  			if (result instanceof List) {
+		  				found = (List<?>) result; 
+		  			}
+		  		} catch (RuntimeException e) {
+		  			//e.g. no XPath support in the browser: use the driver 
+		  		}
+		  	}
+		  	List<WebElement> elements = new ArrayList<WebElement>(); 
+		  	for (int i = 0; i < locators.size(); i++) {
+		  		Object element = (found != null && i < found.size()) ? found.get(i) : null; 
+		  		elements.add((element instanceof WebElement) ? (WebElement) element : getWebElement(locators.get(i))); 
+		  	}
+		  	return elements; 
+	  }
+	  
+	  /** 
+	   * Is the text present in page.  
+	   * It is searched in the browser (WaitTool.countText()): the page source is not sent back. 
+	   */ 
 	  public boolean isTextPresent(String text){
-		  return driver.getPageSource().contains(text); 
+		  return WaitTool.isTextPresent(driver, text); 
+	  }
+	  
+	  /** 
+	   * Is the text present in the container elements. 
+	   * 
+	   * @param text			the text to look for 
+	   * @param container		elements to search, or null for the whole page 
+	   * @param visibleOnly		true to search the displayed text only 
+	   */ 
+	  public boolean isTextPresent(String text, By container, boolean visibleOnly){
+		  return WaitTool.countText(driver, container, text, visibleOnly) > 0; 
+	  }
+	  
+	  /** Number of occurrences of the text in the container elements (or the whole page, if container is null). */ 
+	  public int countText(String text, By container, boolean visibleOnly){
+		  return WaitTool.countText(driver, container, text, visibleOnly); 
 	  }
 	  
-	  /** Is the Element in page. */
+	  /** Wait for the text to be displayed in the page, for timeOutInSeconds. */ 
+	  public boolean waitForText(String text, int timeOutInSeconds){
+		  return WaitTool.waitForText(driver, null, text, true, timeOutInSeconds); 
+	  }
+	  
+	  /** 
+	   * Is the Element in page.  
+	   * It does not wait for implicitlyWait: an absent element returns false right away. 
+	   */
 	  public boolean isElementPresent(By by) {
-			try {
-				driver.findElement(by);//if it does not find the element throw NoSuchElementException, thus returns false. 
-				return true;
-			} catch (NoSuchElementException e) {
-				return false;
-			}
+			return WaitTool.isElementPresent(driver, by); 
 	  }
 
 	  /** 
-	   * Is the Element present in the DOM. 
+	   * Is the Element present in the DOM.  It does not wait, like isElementPresent(By). 
 	   * 
 	   * @param _cssSelector 		element locater
 	   * @return					WebElement
 	   */
 	  public boolean isElementPresent(String _cssSelector){
-			try {
-				driver.findElement(By.cssSelector(_cssSelector));
-				return true;
-			} catch (NoSuchElementException e) {
-				return false;
-			}
+			return WaitTool.isElementPresent(driver, By.cssSelector(_cssSelector)); 
 	  }
 	  
 
 	  /**
-		* Checks if the elment is in the DOM and displayed. 
+		* Checks if the elment is in the DOM and displayed.  It does not wait, like isElementPresent(By). 
 		* 
 		* @param by - selector to find the element
 		* @return true or false
 		*/
 	  public boolean isElementPresentAndDisplay(By by) {
-			try {			
-				return driver.findElement(by).isDisplayed();
-			} catch (NoSuchElementException e) {
-				return false;
-			}
+			return WaitTool.isElementPresentAndDisplay(driver, by); 
+	  }
+	  
+	  /**
+		* Wait for the element to be removed from the page (e.g. an error message goes away). 
+		* 
+		* @param by - selector to find the element
+		* @param timeOutInSeconds - The time in seconds to wait until returning a failure
+		* @return true if the element is absent, or false (if the timeout is reached)
+		*/
+	  public boolean waitForElementAbsent(By by, int timeOutInSeconds) {
+			return WaitTool.waitForElementAbsent(driver, by, timeOutInSeconds); 
 	  }
 	  
 	  /** 
 	   * Returns the first WebElement using the given method.  	   
 	   * It shortens "driver.findElement(By)". 
+	   * If the element cache is enabled, the element is found once and reused. 
 	   * @param by 		element locater. 
 	   * @return 		the first WebElement
 	   */
 	  public WebElement getWebElement(By by){
+		  	if (elementCache != null) {
+		  		return elementCache.get(by); 
+		  	}
 		  	return driver.findElement(by); 			
 	  }
 }
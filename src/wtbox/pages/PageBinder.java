@@ -0,0 +1,133 @@
+package wtbox.pages;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.FindBy;
+import org.openqa.selenium.support.FindBys;
+import org.openqa.selenium.support.pagefactory.Annotations;
+
+
+/**
+ * Binds the annotated WebElement fields of a page object to lazy elements. 
+ * 
+ *   public class GoogleSearchPage extends PageBase { 
+ *       &#64;FindBy(name = "q") 
+ *       WebElement searchField;     // bound by the PageBase constructor 
+ *   } 
+ * 
+ * Each field gets a LazyElement, which finds the element on first use through the 
+ * page's element cache.  Unlike PageFactory, there is no reflection when an element is used. 
+ * 
+ * The binder of each page class is chosen once (per-class metadata): 
+ *  1. the ElementBinder generated at build time by wtbox.processor.PageElementsProcessor 
+ *     (e.g. GoogleSearchPage_Elements), which sets the fields with plain Java code, 
+ *  2. or else, the fields are read once by reflection, and binding a page object only sets them. 
+ */
+final class PageBinder {
+
+	/** Suffix of the generated binder class name. */ 
+	static final String GENERATED_SUFFIX = "_Elements"; 
+
+	/** Binder of each page class. */ 
+	private static final ConcurrentMap<Class<?>, ElementBinder<PageBase>> binders = 
+			new ConcurrentHashMap<Class<?>, ElementBinder<PageBase>>(); 
+
+	/** Binder of a page class without element fields. */ 
+	private static final ElementBinder<PageBase> NONE = new ElementBinder<PageBase>() {
+		@Override
+		public void bind(PageBase page) {
+		}
+	}; 
+
+	private PageBinder() {
+	}
+
+	/** 
+	 * Set each annotated WebElement field of the page to a lazy element.  
+	 */ 
+	static void bind(PageBase page) {
+		binderOf(page.getClass()).bind(page); 
+	}
+
+	/** Returns the binder of the class (chosen once per class). */ 
+	private static ElementBinder<PageBase> binderOf(Class<?> pageClass) {
+		ElementBinder<PageBase> binder = binders.get(pageClass); 
+		if (binder == null) {
+			binder = generatedBinderOf(pageClass); 
+			if (binder == null) {
+				List<BoundField> fields = fieldsOf(pageClass); 
+				binder = fields.isEmpty() ? NONE : new ReflectionBinder(fields); 
+			}
+			binders.putIfAbsent(pageClass, binder); 
+		}
+		return binder; 
+	}
+
+	/** Returns the generated binder (PageClass_Elements) of the class, or null if there is none. */ 
+	@SuppressWarnings("unchecked")
+	private static ElementBinder<PageBase> generatedBinderOf(Class<?> pageClass) {
+		try {
+			Class<?> generated = Class.forName(pageClass.getName() + GENERATED_SUFFIX, true, pageClass.getClassLoader()); 
+			return (ElementBinder<PageBase>) generated.getDeclaredConstructor().newInstance(); 
+		} catch (ClassNotFoundException e) {
+			return null; //not generated: bind the fields by reflection 
+		} catch (ReflectiveOperationException | ClassCastException e) {
+			e.printStackTrace(); 
+			return null; 
+		}
+	}
+
+	/** Returns the annotated fields of the class and its super classes. */ 
+	private static List<BoundField> fieldsOf(Class<?> pageClass) {
+		List<BoundField> fields = new ArrayList<BoundField>(); 
+		for (Class<?> c = pageClass; c != PageBase.class && c != null; c = c.getSuperclass()) {
+			for (Field field : c.getDeclaredFields()) {
+				if (field.getType() == WebElement.class && !Modifier.isStatic(field.getModifiers()) 
+						&& (field.isAnnotationPresent(FindBy.class) || field.isAnnotationPresent(FindBys.class))) {
+					field.setAccessible(true); 
+					fields.add(new BoundField(field, new Annotations(field).buildBy())); 
+				}
+			}
+		}
+		return fields; 
+	}
+
+
+	/** Binds the fields found by reflection. */ 
+	private static final class ReflectionBinder implements ElementBinder<PageBase> {
+		private final List<BoundField> fields; 
+
+		ReflectionBinder(List<BoundField> fields) {
+			this.fields = fields; 
+		}
+
+		@Override
+		public void bind(PageBase page) {
+			try {
+				for (BoundField field : fields) {
+					field.field.set(page, page.lazyElement(field.by)); 
+				}
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException("Can not bind the elements of " + page.getClass().getName(), e); 
+			}
+		}
+	}
+
+	/** An annotated field and its locator. */ 
+	private static final class BoundField {
+		final Field field; 
+		final By by; 
+
+		BoundField(Field field, By by) {
+			this.field = field; 
+			this.by = by; 
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package wtbox.pages;
+
+import java.util.List;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.interactions.internal.Coordinates;
+import org.openqa.selenium.internal.Locatable;
+import org.openqa.selenium.internal.WrapsElement;
+
+
+/**
+ * WebElement which is found again by its locator when it is stale (see LazyElement and ElementCache). 
+ * 
+ * Each command runs on element(); a StaleElementReferenceException is caught once, 
+ * and the command is retried on relookup(). 
+ */
+abstract class RelocatingElement implements WebElement, WrapsElement, Locatable {
+
+	protected final By by; 
+
+	RelocatingElement(By by) {
+		this.by = by; 
+	}
+
+	/** The element the commands run on. */ 
+	abstract WebElement element(); 
+
+	/** Finds the element again, after a StaleElementReferenceException. */ 
+	abstract WebElement relookup(); 
+
+	@Override
+	public WebElement getWrappedElement() {
+		return element(); 
+	}
+
+	@Override
+	public void click() {
+		try {
+			element().click(); 
+		} catch (StaleElementReferenceException e) {
+			relookup().click(); 
+		}
+	}
+
+	@Override
+	public void submit() {
+		try {
+			element().submit(); 
+		} catch (StaleElementReferenceException e) {
+			relookup().submit(); 
+		}
+	}
+
+	@Override
+	public void sendKeys(CharSequence... keysToSend) {
+		try {
+			element().sendKeys(keysToSend); 
+		} catch (StaleElementReferenceException e) {
+			relookup().sendKeys(keysToSend); 
+		}
+	}
+
+	@Override
+	public void clear() {
+		try {
+			element().clear(); 
+		} catch (StaleElementReferenceException e) {
+			relookup().clear(); 
+		}
+	}
+
+	@Override
+	public String getTagName() {
+		try {
+			return element().getTagName(); 
+		} catch (StaleElementReferenceException e) {
+			return relookup().getTagName(); 
+		}
+	}
+
+	@Override
+	public String getAttribute(String name) {
+		try {
+			return element().getAttribute(name); 
+		} catch (StaleElementReferenceException e) {
+			return relookup().getAttribute(name); 
+		}
+	}
+
+	@Override
+	public boolean isSelected() {
+		try {
+			return element().isSelected(); 
+		} catch (StaleElementReferenceException e) {
+			return relookup().isSelected(); 
+		}
+	}
+
+	@Override
+	public boolean isEnabled() {
+		try {
+			return element().isEnabled(); 
+		} catch (StaleElementReferenceException e) {
+			return relookup().isEnabled(); 
+		}
+	}
+
+	@Override
+	public String getText() {
+		try {
+			return element().getText(); 
+		} catch (StaleElementReferenceException e) {
+			return relookup().getText(); 
+		}
+	}
+
+	@Override
+	public List<WebElement> findElements(By childBy) {
+		try {
+			return element().findElements(childBy); 
+		} catch (StaleElementReferenceException e) {
+			return relookup().findElements(childBy); 
+		}
+	}
+
+	@Override
+	public WebElement findElement(By childBy) {
+		try {
+			return element().findElement(childBy); 
+		} catch (StaleElementReferenceException e) {
+			return relookup().findElement(childBy); 
+		}
+	}
+
+	@Override
+	public boolean isDisplayed() {
+		try {
+			return element().isDisplayed(); 
+		} catch (StaleElementReferenceException e) {
+			return relookup().isDisplayed(); 
+		}
+	}
+
+	@Override
+	public Point getLocation() {
+		try {
+			return element().getLocation(); 
+		} catch (StaleElementReferenceException e) {
+			return relookup().getLocation(); 
+		}
+	}
+
+	@Override
+	public Dimension getSize() {
+		try {
+			return element().getSize(); 
+		} catch (StaleElementReferenceException e) {
+			return relookup().getSize(); 
+		}
+	}
+
+	@Override
+	public String getCssValue(String propertyName) {
+		try {
+			return element().getCssValue(propertyName); 
+		} catch (StaleElementReferenceException e) {
+			return relookup().getCssValue(propertyName); 
+		}
+	}
+
+	@Override
+	public Point getLocationOnScreenOnceScrolledIntoView() {
+		try {
+			return ((Locatable) element()).getLocationOnScreenOnceScrolledIntoView(); 
+		} catch (StaleElementReferenceException e) {
+			return ((Locatable) relookup()).getLocationOnScreenOnceScrolledIntoView(); 
+		}
+	}
+
+	@Override
+	public Coordinates getCoordinates() {
+		try {
+			return ((Locatable) element()).getCoordinates(); 
+		} catch (StaleElementReferenceException e) {
+			return ((Locatable) relookup()).getCoordinates(); 
+		}
+	}
+}
@@ -0,0 +1,262 @@
+package wtbox.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+
+/**
+ * Annotation processor which generates the element binder of each page object at build time.
+ *
+ * For a PageBase subclass with &#64;FindBy (or &#64;FindBys) WebElement fields, e.g. GoogleSearchPage,
+ * it generates GoogleSearchPage_Elements (a wtbox.pages.ElementBinder) in the same package:
+ *
+ *   public final class GoogleSearchPage_Elements implements ElementBinder&lt;GoogleSearchPage&gt; {
+ *       private static final By BY_searchField = By.name("q");
+ *       public void bind(GoogleSearchPage page) {
+ *           page.searchField = page.lazyElement(BY_searchField);
+ *       }
+ *   }
+ *
+ * PageBase finds it once per class, and binds the fields with this plain Java code
+ * instead of reading the annotations by reflection (see wtbox.pages.PageBinder).
+ *
+ * The binder sets the fields directly, so they must not be private.  A page class with a private
+ * annotated field (or a nested page class) gets a warning and no binder: it is bound by reflection.
+ *
+ * It is registered in META-INF/services/javax.annotation.processing.Processor.
+ * Compile wtbox itself with -proc:none (the processor is not compiled yet),
+ * then the tests and page objects with wtbox on the processor path.
+ *
+ * Copyright [2012] [Chon Chung]
+ *
+ * Licensed under the Apache Open Source License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+@SupportedAnnotationTypes({PageElementsProcessor.FIND_BY, PageElementsProcessor.FIND_BYS})
+public class PageElementsProcessor extends AbstractProcessor {
+
+	static final String FIND_BY = "org.openqa.selenium.support.FindBy";
+	static final String FIND_BYS = "org.openqa.selenium.support.FindBys";
+	private static final String PAGE_BASE = "wtbox.pages.PageBase";
+	private static final String WEB_ELEMENT = "org.openqa.selenium.WebElement";
+	/** Suffix of the generated class name (the same as wtbox.pages.PageBinder). */
+	private static final String SUFFIX = "_Elements";
+
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+		TypeElement pageBase = processingEnv.getElementUtils().getTypeElement(PAGE_BASE);
+		if (pageBase == null || annotations.isEmpty()) {
+			return false;
+		}
+		Set<TypeElement> pages = new LinkedHashSet<TypeElement>();
+		for (TypeElement annotation : annotations) {
+			for (Element field : round.getElementsAnnotatedWith(annotation)) {
+				Element owner = field.getEnclosingElement();
+				if (field.getKind() == ElementKind.FIELD && owner instanceof TypeElement
+						&& processingEnv.getTypeUtils().isSubtype(owner.asType(), pageBase.asType())) {
+					pages.add((TypeElement) owner);
+				}
+			}
+		}
+		for (TypeElement page : pages) {
+			generate(page, pageBase);
+		}
+		return false; //PageFactory users may also read the annotations
+	}
+
+
+	/** Generate the binder of the page class, if all its fields can be bound. */
+	private void generate(TypeElement page, TypeElement pageBase) {
+		if (page.getNestingKind() != NestingKind.TOP_LEVEL) {
+			warn(page, "nested page class: its elements are bound by reflection");
+			return;
+		}
+		String packageName = packageOf(page).getQualifiedName().toString();
+		Map<String, String> locators = new LinkedHashMap<String, String>(); //field name -> By expression
+		for (TypeElement type = page; type != null && !type.equals(pageBase); type = superclassOf(type)) {
+			for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+				String by = locatorOf(field);
+				if (by == null) {
+					continue;
+				}
+				if (!isWebElement(field.asType()) || field.getModifiers().contains(Modifier.STATIC)) {
+					warn(field, "only WebElement instance fields are bound");
+					continue;
+				}
+				if (!isAccessible(field, packageName)) {
+					warn(field, "make the field package-private (or protected) to generate its binding; "
+							+ page.getSimpleName() + " is bound by reflection");
+					return;
+				}
+				if (!locators.containsKey(field.getSimpleName().toString())) { //a field hides the super class one
+					locators.put(field.getSimpleName().toString(), by);
+				}
+			}
+		}
+		if (locators.isEmpty()) {
+			return;
+		}
+		String pageName = page.getSimpleName().toString();
+		String binderName = pageName + SUFFIX;
+		StringBuilder code = new StringBuilder();
+		if (!packageName.isEmpty()) {
+			code.append("package ").append(packageName).append(";\n\n");
+		}
+		code.append("/** Generated by ").append(getClass().getName()).append(" from ").append(pageName)
+			.append(": do not edit. */\n");
+		code.append("public final class ").append(binderName)
+			.append(" implements wtbox.pages.ElementBinder<").append(pageName).append("> {\n\n");
+		for (Map.Entry<String, String> locator : locators.entrySet()) {
+			code.append("\tprivate static final org.openqa.selenium.By BY_").append(locator.getKey())
+				.append(" = ").append(locator.getValue()).append(";\n");
+		}
+		code.append("\n\t@Override\n\tpublic void bind(").append(pageName).append(" page) {\n");
+		for (String field : locators.keySet()) {
+			code.append("\t\tpage.").append(field).append(" = page.lazyElement(BY_").append(field).append(");\n");
+		}
+		code.append("\t}\n}\n");
+		String qualifiedName = packageName.isEmpty() ? binderName : packageName + "." + binderName;
+		try (Writer out = processingEnv.getFiler().createSourceFile(qualifiedName, page).openWriter()) {
+			out.write(code.toString());
+		} catch (IOException e) {
+			processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Can not generate " + qualifiedName + ": " + e.getMessage(), page);
+		}
+	}
+
+	/** Returns the By expression of the field's &#64;FindBy or &#64;FindBys, or null if it has none. */
+	private String locatorOf(VariableElement field) {
+		for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+			String type = annotation.getAnnotationType().toString();
+			if (type.equals(FIND_BY)) {
+				return findByOf(annotation, field);
+			}
+			if (type.equals(FIND_BYS)) {
+				List<String> chain = new ArrayList<String>();
+				for (Object value : (List<?>) valueOf(annotation, "value")) {
+					chain.add(findByOf((AnnotationMirror) ((AnnotationValue) value).getValue(), field));
+				}
+				return "new org.openqa.selenium.support.pagefactory.ByChained(" + join(chain) + ")";
+			}
+		}
+		return null;
+	}
+
+	/** Returns the By expression of a &#64;FindBy, as PageFactory reads it (Annotations.buildBy()). */
+	private String findByOf(AnnotationMirror findBy, VariableElement field) {
+		Map<String, String> how = new LinkedHashMap<String, String>();
+		how.put("id", "org.openqa.selenium.By.id");
+		how.put("name", "org.openqa.selenium.By.name");
+		how.put("className", "org.openqa.selenium.By.className");
+		how.put("css", "org.openqa.selenium.By.cssSelector");
+		how.put("tagName", "org.openqa.selenium.By.tagName");
+		how.put("linkText", "org.openqa.selenium.By.linkText");
+		how.put("partialLinkText", "org.openqa.selenium.By.partialLinkText");
+		how.put("xpath", "org.openqa.selenium.By.xpath");
+		for (Map.Entry<String, String> attribute : how.entrySet()) {
+			Object value = valueOf(findBy, attribute.getKey());
+			if (value != null && !value.toString().isEmpty()) {
+				return attribute.getValue() + "(" + processingEnv.getElementUtils().getConstantExpression(value) + ")";
+			}
+		}
+		Object using = valueOf(findBy, "using");
+		if (using != null && !using.toString().isEmpty()) {
+			String expression = processingEnv.getElementUtils().getConstantExpression(using);
+			Object howValue = valueOf(findBy, "how"); //e.g. "NAME", or null (default: ID)
+			if (howValue == null || howValue.equals("ID")) return "org.openqa.selenium.By.id(" + expression + ")";
+			if (howValue.equals("NAME")) return "org.openqa.selenium.By.name(" + expression + ")";
+			if (howValue.equals("CLASS_NAME")) return "org.openqa.selenium.By.className(" + expression + ")";
+			if (howValue.equals("CSS")) return "org.openqa.selenium.By.cssSelector(" + expression + ")";
+			if (howValue.equals("TAG_NAME")) return "org.openqa.selenium.By.tagName(" + expression + ")";
+			if (howValue.equals("LINK_TEXT")) return "org.openqa.selenium.By.linkText(" + expression + ")";
+			if (howValue.equals("PARTIAL_LINK_TEXT")) return "org.openqa.selenium.By.partialLinkText(" + expression + ")";
+			if (howValue.equals("XPATH")) return "org.openqa.selenium.By.xpath(" + expression + ")";
+			return "new org.openqa.selenium.support.pagefactory.ByIdOrName(" + expression + ")"; //ID_OR_NAME
+		}
+		//no locator: PageFactory uses the field name as id or name
+		return "new org.openqa.selenium.support.pagefactory.ByIdOrName(\"" + field.getSimpleName() + "\")";
+	}
+
+	/** Returns the value of an annotation attribute set in the source (not the default), or null. */
+	private static Object valueOf(AnnotationMirror annotation, String name) {
+		for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues().entrySet()) {
+			if (entry.getKey().getSimpleName().contentEquals(name)) {
+				Object value = entry.getValue().getValue();
+				return (value instanceof VariableElement) ? ((VariableElement) value).getSimpleName().toString() : value; //enum constant
+			}
+		}
+		return null;
+	}
+
+	private boolean isWebElement(TypeMirror type) {
+		return type.getKind() == TypeKind.DECLARED
+				&& ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().contentEquals(WEB_ELEMENT);
+	}
+
+	/** True if the generated class (in packageName) can set the field. */
+	private boolean isAccessible(VariableElement field, String packageName) {
+		Set<Modifier> modifiers = field.getModifiers();
+		if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.FINAL)) {
+			return false;
+		}
+		if (modifiers.contains(Modifier.PUBLIC)) {
+			return true;
+		}
+		//package-private or protected: the generated class must be in the field's package
+		return packageOf(field).getQualifiedName().contentEquals(packageName);
+	}
+
+	private TypeElement superclassOf(TypeElement type) {
+		TypeMirror superclass = type.getSuperclass();
+		return (superclass.getKind() == TypeKind.DECLARED) ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+	}
+
+	private PackageElement packageOf(Element element) {
+		return processingEnv.getElementUtils().getPackageOf(element);
+	}
+
+	private void warn(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message, element);
+	}
+
+	private static String join(List<String> items) {
+		StringBuilder joined = new StringBuilder();
+		for (String item : items) {
+			joined.append(joined.length() == 0 ? "" : ", ").append(item);
+		}
+		return joined.toString();
+	}
+}
@@ -0,0 +1,331 @@
+package wtbox.replay;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+
+/**
+ * Local HTTP server which records the pages and AJAX responses of one web site (origin), and serves them back.
+ *
+ * Record once, against the live site: the server forwards each request to the origin, saves the response
+ * in the directory (see ReplayStore), and returns it to the browser.
+ *
+ * 	ReplayServer server = ReplayServer.record("http://www.google.com", new File("replay/google")).start();
+ * 	PageBase.redirectOrigin(server.getOrigin(), server.getBaseUrl());  //page.open() loads the local copy
+ * 	... run the tests ...
+ * 	server.stop();
+ *
+ * Then replay, without the network: ReplayServer.replay(new File("replay/google")).setLatency(200).start();
+ * A request which was not recorded gets a 404 (see getMisses()).
+ *
+ * Links and URLs of the origin in the pages, scripts and JSON responses are rewritten to the local server,
+ * so the browser stays on it.  Requests to other sites (CDNs, ads) go to the network: start one server per origin.
+ * A request is recorded by method, path and query; a POST request body is not part of the key.
+ *
+ * The latency (in milliseconds, 0 by default) is added to each response, e.g. to test the waits under a slow server.
+ *
+ * Copyright [2012] [Chon Chung]
+ *
+ * Licensed under the Apache Open Source License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+public final class ReplayServer {
+
+	/** The file (in the store directory) with the recorded origin. */
+	static final String ORIGIN_FILE = "origin.txt";
+
+	private final String origin;
+	private final ReplayStore store;
+	private final boolean recording;
+	private volatile long latencyMillis;
+	private final AtomicInteger requests = new AtomicInteger();
+	private final List<String> misses = new ArrayList<String>();
+	private HttpServer server;
+	private ExecutorService executor;
+	private String baseUrl;
+
+
+	private ReplayServer(String origin, File dir, boolean recording) throws IOException {
+		this.origin = origin;
+		this.store = new ReplayStore(dir);
+		this.recording = recording;
+	}
+
+	/**
+	 * Returns a server which records the origin's responses in the directory.
+	 *
+	 * @param origin	the web site, e.g. "http://www.google.com" (a path is ignored)
+	 * @param dir	the recording directory (a request recorded before is replaced)
+	 */
+	public static ReplayServer record(String origin, File dir) throws IOException {
+		String normalized = originOf(origin);
+		dir.mkdirs();
+		try (OutputStream out = new FileOutputStream(new File(dir, ORIGIN_FILE))) {
+			out.write(normalized.getBytes("UTF-8"));
+		}
+		return new ReplayServer(normalized, dir, true);
+	}
+
+	/**
+	 * Returns a server which replays the responses recorded in the directory.
+	 *
+	 * @param dir	a directory recorded by record()
+	 */
+	public static ReplayServer replay(File dir) throws IOException {
+		File originFile = new File(dir, ORIGIN_FILE);
+		if (!originFile.exists()) {
+			throw new IOException("Not a recording directory (no " + ORIGIN_FILE + "): " + dir);
+		}
+		try (InputStream in = new FileInputStream(originFile)) {
+			return new ReplayServer(new String(ReplayStore.readAll(in), "UTF-8").trim(), dir, false);
+		}
+	}
+
+
+	/** Add this latency to each response (in milliseconds). */
+	public ReplayServer setLatency(long millis) {
+		this.latencyMillis = millis;
+		return this;
+	}
+
+	public long getLatency() {
+		return latencyMillis;
+	}
+
+	/** Start the server on a free local port. */
+	public ReplayServer start() throws IOException {
+		return start(0);
+	}
+
+	/** Start the server on the local port (0 for a free one). */
+	public synchronized ReplayServer start(int port) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					serve(exchange);
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		executor = Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "wtbox-replay-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		server.setExecutor(executor);
+		server.start();
+		baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+		return this;
+	}
+
+	/** Stop the server (the recorded responses are already saved). */
+	public synchronized void stop() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdownNow();
+			server = null;
+		}
+	}
+
+	/** The recorded web site, e.g. "http://www.google.com". */
+	public String getOrigin() {
+		return origin;
+	}
+
+	/** The local server's URL, e.g. "http://127.0.0.1:51234", or null if it is not started. */
+	public synchronized String getBaseUrl() {
+		return baseUrl;
+	}
+
+	/** Returns the local URL of an origin URL (other URLs are returned as is). */
+	public String localUrl(String url) {
+		if (baseUrl != null && url.startsWith(origin) && (url.length() == origin.length()
+				|| url.charAt(origin.length()) == '/' || url.charAt(origin.length()) == '?')) {
+			return baseUrl + url.substring(origin.length());
+		}
+		return url;
+	}
+
+	public boolean isRecording() {
+		return recording;
+	}
+
+	/** Number of requests served. */
+	public int getRequestCount() {
+		return requests.get();
+	}
+
+	/** The requests which were not recorded (replay mode), e.g. "GET /favicon.ico". */
+	public List<String> getMisses() {
+		synchronized (misses) {
+			return new ArrayList<String>(misses);
+		}
+	}
+
+	/** Number of recorded requests. */
+	public int getRecordedCount() {
+		return store.size();
+	}
+
+
+	private void serve(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		String pathAndQuery = exchange.getRequestURI().getRawPath()
+				+ (exchange.getRequestURI().getRawQuery() == null ? "" : "?" + exchange.getRequestURI().getRawQuery());
+		String key = ReplayStore.key(exchange.getRequestMethod(), pathAndQuery);
+		ReplayStore.Response response;
+		if (recording) {
+			try {
+				response = fetch(exchange, pathAndQuery);
+			} catch (IOException e) {
+				e.printStackTrace();
+				sendText(exchange, 502, "Can not record " + key + ": " + e);
+				return;
+			}
+			store.put(key, response);
+		} else {
+			response = store.get(key);
+		}
+		if (latencyMillis > 0) {
+			try {
+				Thread.sleep(latencyMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (response == null) {
+			synchronized (misses) {
+				misses.add(key);
+			}
+			sendText(exchange, 404, "Not recorded: " + key);
+			return;
+		}
+		send(exchange, response);
+	}
+
+	private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+		byte[] body = text.getBytes("UTF-8");
+		exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=UTF-8");
+		exchange.sendResponseHeaders(status, body.length);
+		exchange.getResponseBody().write(body);
+	}
+
+	/** Forward the request to the origin, and return its response (redirects are not followed). */
+	private ReplayStore.Response fetch(HttpExchange exchange, String pathAndQuery) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(origin + pathAndQuery).openConnection();
+		connection.setInstanceFollowRedirects(false);
+		connection.setRequestMethod(exchange.getRequestMethod());
+		for (Map.Entry<String, List<String>> header : exchange.getRequestHeaders().entrySet()) {
+			String name = header.getKey();
+			if (name.equalsIgnoreCase("Host") || name.equalsIgnoreCase("Connection") || name.equalsIgnoreCase("Content-Length")
+					|| name.equalsIgnoreCase("Accept-Encoding") || name.equalsIgnoreCase("Keep-Alive")) {
+				continue;
+			}
+			for (String value : header.getValue()) {
+				connection.addRequestProperty(name, value.replace(baseUrl, origin)); //e.g. Referer
+			}
+		}
+		connection.setRequestProperty("Accept-Encoding", "identity"); //record plain bodies, so the URLs can be rewritten
+		byte[] requestBody = ReplayStore.readAll(exchange.getRequestBody());
+		if (requestBody.length > 0) {
+			connection.setDoOutput(true);
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(requestBody);
+			}
+		}
+		ReplayStore.Response response = new ReplayStore.Response();
+		response.status = connection.getResponseCode();
+		for (Map.Entry<String, List<String>> header : connection.getHeaderFields().entrySet()) {
+			String name = header.getKey();
+			if (name == null || name.equalsIgnoreCase("Transfer-Encoding") || name.equalsIgnoreCase("Content-Length")
+					|| name.equalsIgnoreCase("Connection") || name.equalsIgnoreCase("Keep-Alive")) {
+				continue; //the status line, or set by the local server
+			}
+			for (String value : header.getValue()) {
+				response.headers.add(new String[] {name, value});
+			}
+		}
+		InputStream in = (response.status >= 400) ? connection.getErrorStream() : connection.getInputStream();
+		if (in != null) {
+			try {
+				response.body = ReplayStore.readAll(in);
+			} finally {
+				in.close();
+			}
+		}
+		return response;
+	}
+
+	/** Send the response, with the origin's URLs rewritten to the local server. */
+	private void send(HttpExchange exchange, ReplayStore.Response response) throws IOException {
+		byte[] body = response.body;
+		String contentType = response.header("Content-Type");
+		if (contentType != null && response.header("Content-Encoding") == null && isText(contentType)) {
+			body = localize(new String(body, "ISO-8859-1")).getBytes("ISO-8859-1"); //the bytes are kept (the URLs are ASCII)
+		}
+		for (String[] header : response.headers) {
+			String value = header[1];
+			if (header[0].equalsIgnoreCase("Location")) {
+				value = localize(value);
+			} else if (header[0].equalsIgnoreCase("Set-Cookie")) {
+				value = value.replaceAll("(?i);\\s*(Domain=[^;]*|Secure)", ""); //a cookie of the local server
+			}
+			exchange.getResponseHeaders().add(header[0], value);
+		}
+		boolean noBody = exchange.getRequestMethod().equalsIgnoreCase("HEAD") || response.status == 204
+				|| response.status == 304 || body.length == 0;
+		exchange.sendResponseHeaders(response.status, noBody ? -1 : body.length);
+		if (!noBody) {
+			exchange.getResponseBody().write(body);
+		}
+	}
+
+	/** Rewrite the origin's URLs (http, https, protocol relative, and JSON escaped) to the local server. */
+	private String localize(String text) {
+		String host = origin.substring(origin.indexOf("//") + 2);
+		String localHost = baseUrl.substring(baseUrl.indexOf("//") + 2);
+		return text.replace("http://" + host, baseUrl).replace("https://" + host, baseUrl)
+				.replace("http:\\/\\/" + host, baseUrl.replace("/", "\\/")).replace("https:\\/\\/" + host, baseUrl.replace("/", "\\/"))
+				.replace("//" + host, "//" + localHost);
+	}
+
+	private static boolean isText(String contentType) {
+		String type = contentType.toLowerCase();
+		return type.startsWith("text/") || type.contains("javascript") || type.contains("json") || type.contains("xml");
+	}
+
+	/** Returns the scheme, host and port of the URL, e.g. "http://www.google.com". */
+	private static String originOf(String url) throws IOException {
+		URL parsed = new URL(url);
+		return parsed.getProtocol().toLowerCase() + "://" + parsed.getHost().toLowerCase()
+				+ (parsed.getPort() == -1 ? "" : ":" + parsed.getPort());
+	}
+}
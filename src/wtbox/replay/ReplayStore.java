@@ -0,0 +1,156 @@
+package wtbox.replay;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Directory of recorded responses, one origin per directory:
+ *
+ *   index.txt		one line per request: "&lt;id&gt;\t&lt;METHOD&gt; &lt;path?query&gt;"
+ *   &lt;id&gt;.headers	the status code on the first line, then one "Name: value" line per response header
+ *   &lt;id&gt;.body		the response body
+ *
+ * The files are plain text (but the bodies), so a recorded page can be read, edited or diffed.
+ * A request recorded again replaces the previous response.
+ *
+ * Copyright [2012] [Chon Chung]
+ *
+ * Licensed under the Apache Open Source License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+final class ReplayStore {
+
+	static final String INDEX = "index.txt";
+
+	private final File dir;
+	/** request key (e.g. "GET /search?q=cheese") -> response id */
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+	private int nextId;
+
+
+	/** Open the store, and read its index (if it was recorded before). */
+	ReplayStore(File dir) throws IOException {
+		this.dir = dir;
+		File index = new File(dir, INDEX);
+		if (!index.exists()) {
+			return;
+		}
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(index), "UTF-8"))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				int tab = line.indexOf('\t');
+				if (tab > 0) {
+					int id = Integer.parseInt(line.substring(0, tab));
+					ids.put(line.substring(tab + 1), id);
+					nextId = Math.max(nextId, id + 1);
+				}
+			}
+		}
+	}
+
+	/** Returns the request key: method and raw path (with the query). */
+	static String key(String method, String pathAndQuery) {
+		return method.toUpperCase() + " " + pathAndQuery;
+	}
+
+	File getDir() {
+		return dir;
+	}
+
+	synchronized int size() {
+		return ids.size();
+	}
+
+	/** Returns the recorded response of the request, or null if it was not recorded. */
+	synchronized Response get(String key) throws IOException {
+		Integer id = ids.get(key);
+		if (id == null) {
+			return null;
+		}
+		Response response = new Response();
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file(id, ".headers")), "UTF-8"))) {
+			response.status = Integer.parseInt(in.readLine().trim());
+			String line;
+			while ((line = in.readLine()) != null) {
+				int colon = line.indexOf(':');
+				if (colon > 0) {
+					response.headers.add(new String[] {line.substring(0, colon), line.substring(colon + 1).trim()});
+				}
+			}
+		}
+		try (InputStream in = new FileInputStream(file(id, ".body"))) {
+			response.body = readAll(in);
+		}
+		return response;
+	}
+
+	/** Save the response of the request (replacing the one recorded before). */
+	synchronized void put(String key, Response response) throws IOException {
+		Integer id = ids.get(key);
+		if (id == null) {
+			dir.mkdirs();
+			id = nextId++;
+			try (Writer index = new OutputStreamWriter(new FileOutputStream(new File(dir, INDEX), true), "UTF-8")) {
+				index.write(id + "\t" + key + "\n");
+			}
+			ids.put(key, id);
+		}
+		try (Writer out = new OutputStreamWriter(new FileOutputStream(file(id, ".headers")), "UTF-8")) {
+			out.write(response.status + "\n");
+			for (String[] header : response.headers) {
+				out.write(header[0] + ": " + header[1] + "\n");
+			}
+		}
+		try (OutputStream out = new FileOutputStream(file(id, ".body"))) {
+			out.write(response.body);
+		}
+	}
+
+	private File file(int id, String extension) {
+		return new File(dir, id + extension);
+	}
+
+	static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int n;
+		while ((n = in.read(buffer)) > 0) {
+			bytes.write(buffer, 0, n);
+		}
+		return bytes.toByteArray();
+	}
+
+
+	/** One recorded response. */
+	static final class Response {
+		int status;
+		/** name and value of each header, in the order received (a header may repeat, e.g. Set-Cookie) */
+		final List<String[]> headers = new ArrayList<String[]>();
+		byte[] body = new byte[0];
+
+		/** Returns the first value of the header, or null. */
+		String header(String name) {
+			for (String[] header : headers) {
+				if (header[0].equalsIgnoreCase(name)) {
+					return header[1];
+				}
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,18 @@
+package wtbox.test;
+
+import org.openqa.selenium.WebDriver;
+
+/**
+ * Creates a new WebDriver for a DriverPool. 
+ * e.g. 
+ * <pre>
+ * DriverFactory firefox = new DriverFactory() {
+ *     public WebDriver createDriver() { return new FirefoxDriver(); }
+ * };
+ * </pre>
+ */
+public interface DriverFactory {
+
+	/** Returns a new WebDriver (a new browser session). */ 
+	WebDriver createDriver(); 
+}
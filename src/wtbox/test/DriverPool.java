@@ -0,0 +1,324 @@
+package wtbox.test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.openqa.selenium.WebDriver;
+
+import wtbox.util.DriverState;
+
+
+/**
+ * A bounded pool of WebDrivers.  Starting a browser takes seconds, 
+ * so the pool keeps the drivers alive and leases them to the tests, 
+ * one driver per test thread, and across test classes. 
+ * 
+ * 1. Bounded:  at most maxDrivers browsers are open (leased or idle); lease() waits for a free one. 
+ * 2. Warm-up:  warmUp() starts the browsers in parallel before the tests need them. 
+ * 3. Health check:  a driver is checked before it is leased again, 
+ *    and a dead one (e.g. the browser crashed) is replaced with a new one. 
+ * 4. Fast reset:  a released driver is reset (SessionReset: cookies, storage, windows, about:blank) 
+ *    for the next test, instead of restarting the browser.  If the reset fails, 
+ *    the browser is quit and the next lease() starts a new one. 
+ * 
+ * Use it from a TestBase: 
+ * <pre>
+ * &#64;BeforeClass  public static void beforeClass() { TestBase.setDriverPool(pool); }
+ * &#64;Before       public void setup() { leaseDriver(); }
+ * &#64;After        public void tearDown() { releaseDriver(); }
+ * </pre>
+ * Call shutdown() (or TestBase.shutdownDriverPool()) at the end of the run (a JVM shutdown hook does it too, if it was not called). 
+ */
+public class DriverPool {
+
+	private final DriverFactory factory; 
+	private final int maxDrivers; 
+	/** Guards the counts and the idle drivers. */ 
+	private final Lock lock = new ReentrantLock(true); 
+	/** Signalled when a driver becomes idle, or a browser slot is free. */ 
+	private final Condition available = lock.newCondition(); 
+	/** Open drivers: leased, idle, and the ones being started.  Never more than maxDrivers. */ 
+	private int open = 0; 
+	/** Free drivers, ready to be leased. */ 
+	private final Deque<WebDriver> idle = new ArrayDeque<WebDriver>(); 
+	/** Drivers which are leased now. */ 
+	private final Set<WebDriver> leased = Collections.newSetFromMap(new ConcurrentHashMap<WebDriver, Boolean>()); 
+	private volatile boolean shutdown = false; 
+	private volatile boolean resetOnRelease = true; 
+	/** Quits the idle drivers when the JVM exits; removed by shutdown(). */ 
+	private final Thread shutdownHook; 
+
+	
+	/**
+	 * Constructor. 
+	 * @param factory		creates a new driver 
+	 * @param maxDrivers	the maximum number of open drivers (e.g. the number of test threads)
+	 */
+	public DriverPool(DriverFactory factory, int maxDrivers) {
+		this.factory = factory; 
+		this.maxDrivers = maxDrivers; 
+		this.shutdownHook = new Thread("wtbox-driverpool-shutdown") {
+			@Override
+			public void run() {
+				shutdown(); 
+			}
+		}; 
+		Runtime.getRuntime().addShutdownHook(shutdownHook); 
+	}
+	
+	/**
+	 * Reset the session of a released driver (default: true). 
+	 * Turn it off only if the tests reset the browser themselves. 
+	 */
+	public void setResetOnRelease(boolean reset) {
+		this.resetOnRelease = reset; 
+	}
+
+	/**
+	 * Start drivers now (in parallel), so the first tests do not wait for them. 
+	 * Only as many are started as there is room for: the open drivers (idle or leased) count. 
+	 * @param count		number of drivers to start (up to maxDrivers open)
+	 */
+	public void warmUp(int count) {
+		int toStart; 
+		lock.lock(); 
+		try {
+			toStart = shutdown ? 0 : Math.max(0, Math.min(count, maxDrivers - open)); 
+			open += toStart; //reserve the slots
+		} finally {
+			lock.unlock(); 
+		}
+		if (toStart == 0) {
+			return; 
+		}
+		List<Future<WebDriver>> started = new ArrayList<Future<WebDriver>>(); 
+		ExecutorService executor = Executors.newFixedThreadPool(toStart); 
+		try {
+			for (int i = 0; i < toStart; i++) {
+				started.add(executor.submit(new Callable<WebDriver>() {
+					@Override
+					public WebDriver call() {
+						return factory.createDriver(); 
+					}
+				})); 
+			}
+			for (Future<WebDriver> future : started) {
+				WebDriver driver = null; 
+				try {
+					driver = future.get(); 
+				} catch (Exception e) {
+					e.printStackTrace(); //this one did not start
+				}
+				if (driver == null) {
+					closed(); 
+				} else {
+					addIdle(driver); 
+				}
+			}
+		} finally {
+			executor.shutdown(); 
+		}
+	}
+
+	/**
+	 * Lease a driver: an idle one, or a new one if fewer than maxDrivers are open. 
+	 * Otherwise waits until a driver is released. 
+	 * 
+	 * @param timeOutInSeconds	The time in seconds to wait for a free driver
+	 * @return WebDriver	a healthy driver, for this thread only, until release()
+	 * @throws IllegalStateException	if no driver is free within the timeout, or the pool is shut down
+	 */
+	public WebDriver lease(int timeOutInSeconds) {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeOutInSeconds); 
+		while (true) {
+			WebDriver driver = null; 
+			lock.lock(); 
+			try {
+				while (true) {
+					if (shutdown) {
+						throw new IllegalStateException("DriverPool is shut down"); 
+					}
+					driver = idle.poll(); 
+					if (driver != null || open < maxDrivers) {
+						break; 
+					}
+					long left = deadline - System.nanoTime(); 
+					if (left <= 0) {
+						throw new IllegalStateException("No free driver after " + timeOutInSeconds + " seconds (" + maxDrivers + " leased)"); 
+					}
+					available.awaitNanos(left); 
+				}
+				if (driver == null) {
+					open++; //the slot of the new driver
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt(); 
+				throw new IllegalStateException("Interrupted while waiting for a driver", e); 
+			} finally {
+				lock.unlock(); 
+			}
+
+			if (driver != null && !isHealthy(driver)) {
+				quit(driver); //replace the dead driver
+				closed(); 
+				continue; 
+			}
+			if (driver == null) {
+				try {
+					driver = factory.createDriver(); 
+				} catch (RuntimeException e) {
+					closed(); 
+					throw e; 
+				}
+			}
+			leased.add(driver); 
+			return driver; 
+		}
+	}
+
+	/** Lease a driver, waiting up to 5 minutes for a free one. */ 
+	public WebDriver lease() {
+		return lease(300); 
+	}
+
+	/**
+	 * Return a leased driver to the pool, for the next test (of any test class). 
+	 * The driver's session is reset; if the reset fails, the driver is quit (and restarted by the next lease()). 
+	 * @param driver	a driver from lease()
+	 */
+	public void release(WebDriver driver) {
+		if (!leased.remove(driver)) {
+			return; //not leased from this pool, or already released
+		}
+		if (shutdown || (resetOnRelease && !SessionReset.reset(driver))) {
+			quit(driver); 
+			closed(); 
+		} else {
+			addIdle(driver); 
+		}
+	}
+
+	/**
+	 * Quit a leased driver instead of returning it (e.g. its state can not be reset). 
+	 * The next lease() starts a new one. 
+	 * @param driver	a driver from lease()
+	 */
+	public void invalidate(WebDriver driver) {
+		if (leased.remove(driver)) {
+			quit(driver); 
+			closed(); 
+		}
+	}
+
+	/**
+	 * Health check: the driver still answers a cheap command.  
+	 * Override it for a project specific check. 
+	 */
+	protected boolean isHealthy(WebDriver driver) {
+		try {
+			driver.getWindowHandles(); 
+			return true; 
+		} catch (RuntimeException e) {
+			return false; 
+		}
+	}
+
+	/** Returns the number of open drivers (leased and idle). */ 
+	public int size() {
+		lock.lock(); 
+		try {
+			return leased.size() + idle.size(); 
+		} finally {
+			lock.unlock(); 
+		}
+	}
+
+	/** Returns the number of free drivers. */ 
+	public int idleCount() {
+		lock.lock(); 
+		try {
+			return idle.size(); 
+		} finally {
+			lock.unlock(); 
+		}
+	}
+
+	/** Returns true once shutdown() was called: lease() throws. */ 
+	public boolean isShutdown() {
+		return shutdown; 
+	}
+
+	/** Quit all drivers.  Leased drivers are quit when they are released. */ 
+	public void shutdown() {
+		List<WebDriver> drivers; 
+		lock.lock(); 
+		try {
+			shutdown = true; 
+			drivers = new ArrayList<WebDriver>(idle); 
+			idle.clear(); 
+			open -= drivers.size(); 
+			available.signalAll(); //the waiting lease() calls fail
+		} finally {
+			lock.unlock(); 
+		}
+		for (WebDriver driver : drivers) {
+			quit(driver); 
+		}
+		if (Thread.currentThread() != shutdownHook) {
+			try {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook); 
+			} catch (IllegalStateException e) {
+				//the JVM is already shutting down
+			}
+		}
+	}
+
+	/** A driver is free: it waits for the next lease() (or is quit, if the pool is shut down). */ 
+	private void addIdle(WebDriver driver) {
+		lock.lock(); 
+		try {
+			if (!shutdown) {
+				idle.add(driver); 
+				available.signal(); 
+				return; 
+			}
+		} finally {
+			lock.unlock(); 
+		}
+		quit(driver); 
+		closed(); 
+	}
+
+	/** A driver was quit (or did not start): its slot is free. */ 
+	private void closed() {
+		lock.lock(); 
+		try {
+			open--; 
+			available.signal(); 
+		} finally {
+			lock.unlock(); 
+		}
+	}
+
+	private static void quit(WebDriver driver) {
+		try {
+			driver.quit(); 
+		} catch (RuntimeException e) {
+			//already dead
+		}
+		DriverState.forget(driver); 
+	}
+}
@@ -0,0 +1,98 @@
+package wtbox.test;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerScheduler;
+
+
+/**
+ * JUnit runner which runs the test methods of a class concurrently. 
+ * Each test method gets its own test instance, so with a TestBase which leases 
+ * a driver in &#64;Before (see DriverPool), each thread uses its own driver. 
+ * 
+ * <pre>
+ * &#64;RunWith(ParallelRunner.class)
+ * &#64;ParallelRunner.Threads(4)
+ * public class SearchTest extends TestBase { ... }
+ * </pre>
+ * 
+ * The number of threads is, in order: the &#64;Threads annotation, 
+ * the "wtbox.threads" system property, or the number of processors. 
+ * Use as many threads as the browsers the machine (or the grid) can run, 
+ * and a DriverPool of the same size. 
+ * &#64;BeforeClass and &#64;AfterClass still run once, before and after all the tests. 
+ */
+public class ParallelRunner extends BlockJUnit4ClassRunner {
+
+	/** The number of threads to run the test methods of the class. */ 
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.TYPE)
+	public @interface Threads {
+		int value(); 
+	}
+
+	/** Constructor, called by JUnit. */ 
+	public ParallelRunner(Class<?> testClass) throws InitializationError {
+		super(testClass); 
+		setScheduler(new ThreadPoolScheduler(testClass.getSimpleName(), threadsFor(testClass))); 
+	}
+
+	/** Returns the number of threads for the test class. */ 
+	static int threadsFor(Class<?> testClass) {
+		Threads threads = testClass.getAnnotation(Threads.class); 
+		if (threads != null) {
+			return threads.value(); 
+		}
+		String property = System.getProperty("wtbox.threads"); 
+		if (property != null) {
+			return Integer.parseInt(property.trim()); 
+		}
+		return Runtime.getRuntime().availableProcessors(); 
+	}
+
+
+	/** Runs each test method on a thread pool, and waits for all of them in finished(). */ 
+	private static class ThreadPoolScheduler implements RunnerScheduler {
+
+		private final ExecutorService executor; 
+
+		ThreadPoolScheduler(final String name, int threads) {
+			executor = Executors.newFixedThreadPool(Math.max(1, threads), new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger(); 
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, name + "-test-" + count.incrementAndGet()); 
+					thread.setDaemon(true); 
+					return thread; 
+				}
+			}); 
+		}
+
+		@Override
+		public void schedule(Runnable childStatement) {
+			executor.execute(childStatement); 
+		}
+
+		@Override
+		public void finished() {
+			executor.shutdown(); 
+			try {
+				executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS); 
+			} catch (InterruptedException e) {
+				executor.shutdownNow(); 
+				Thread.currentThread().interrupt(); 
+			}
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package wtbox.test;
+
+import java.util.Iterator;
+import java.util.Set;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+
+/**
+ * Resets a browser session between tests, instead of starting a new browser (which takes seconds). 
+ * 
+ * reset() does, in this order: 
+ * 1. close the extra windows (pop-ups), and switch back to the first window, 
+ * 2. clear the local and session storage of the current page (if the driver runs JavaScript), 
+ * 3. delete all cookies, 
+ * 4. navigate to about:blank. 
+ * 
+ * Note: WebDriver can only clear the cookies and storage of the current page's domain.  
+ * A test which visits several domains should clear them on each domain, or restart the browser. 
+ */
+public final class SessionReset {
+
+	private static final String CLEAR_STORAGE = 
+		"try { window.localStorage && window.localStorage.clear(); } catch (e) {}" + 
+		"try { window.sessionStorage && window.sessionStorage.clear(); } catch (e) {}"; 
+
+	private SessionReset() {
+	}
+
+	/**
+	 * Reset the browser session for the next test. 
+	 * 
+	 * @param driver	The driver object to be reset
+	 * @return true if the session is reset, or false if it failed (restart the browser instead)
+	 */
+	public static boolean reset(WebDriver driver) {
+		try {
+			closeExtraWindows(driver); 
+			clearStorage(driver); 
+			driver.manage().deleteAllCookies(); 
+			driver.get("about:blank"); 
+			return true; 
+		} catch (RuntimeException e) {
+			System.out.println("Unable to reset the browser session - " + e.getMessage()); 
+			return false; 
+		}
+	}
+
+	/** 
+	 * Clear the local and session storage.  A driver which does not run JavaScript 
+	 * (e.g. HtmlUnitDriver without JavaScript) has no storage to clear: it is not a failed reset. 
+	 */ 
+	private static void clearStorage(WebDriver driver) {
+		if (!(driver instanceof JavascriptExecutor)) {
+			return; 
+		}
+		try {
+			((JavascriptExecutor) driver).executeScript(CLEAR_STORAGE); 
+		} catch (UnsupportedOperationException e) {
+			//no JavaScript: no storage 
+		} catch (WebDriverException e) {
+			//no JavaScript (or no storage) on this page 
+		}
+	}
+
+	/** Close all windows but the first one, and switch to it. */ 
+	private static void closeExtraWindows(WebDriver driver) {
+		Set<String> handles = driver.getWindowHandles(); 
+		if (handles.size() <= 1) {
+			return; 
+		}
+		Iterator<String> iterator = handles.iterator(); 
+		String first = iterator.next(); 
+		while (iterator.hasNext()) {
+			driver.switchTo().window(iterator.next()); 
+			driver.close(); 
+		}
+		driver.switchTo().window(first); 
+	}
+}
@@ -0,0 +1,410 @@
+package wtbox.test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import wtbox.util.TimingStore;
+
+
+/**
+ * Runs test classes in N worker JVMs (ShardWorker), split by their past durations (ShardPlanner),
+ * and merges the results.  The shards end at about the same time, so the wall time is the suite's time
+ * divided by N, not the time of the slowest shard.
+ *
+ * Each worker gets the coordinator's classpath and its "wtbox." system properties.
+ * Its output goes to workDir/shard-index.log.  The measured class durations are recorded in the TimingStore
+ * of the history directory; the next plan estimates each class by the median of its last ESTIMATE_RUNS runs,
+ * and the classes much slower than their recent runs are reported.  Within a worker, ParallelRunner classes
+ * still run their methods on threads.
+ * <pre>
+ * java -cp ... wtbox.test.ShardCoordinator -shards 4 -history target/timings -dir bin test.MyTest test.OtherTest
+ * </pre>
+ *   -shards N		number of worker JVMs (default: the number of processors)
+ *   -history dir	the TimingStore of the past durations (default: target/shards/timings)
+ *   -workdir dir	the workers' results and logs (default: target/shards)
+ *   -dir classesDir	also run the test classes (with &#64;Test methods) found in the directory
+ *   -jvm option	a JVM option for the workers (e.g. -jvm -Xmx512m), repeatable
+ * The exit code is 0 if all the tests passed.
+ */
+public class ShardCoordinator {
+
+	/** Default timeout of a worker, in minutes: it is killed after that. */
+	public static final long DEFAULT_TIMEOUT_MINUTES = 60;
+	/** Number of recent runs of a class its estimated duration is the median of. */
+	public static final int ESTIMATE_RUNS = 5;
+
+	private final int shards;
+	private File workDir = new File("target/shards");
+	private File historyDir;
+	private final List<String> jvmOptions = new ArrayList<String>();
+	private long timeoutMinutes = DEFAULT_TIMEOUT_MINUTES;
+
+	/** @param shards	number of worker JVMs */
+	public ShardCoordinator(int shards) {
+		this.shards = Math.max(1, shards);
+	}
+
+	/** Set the directory of the workers' results and logs. */
+	public ShardCoordinator setWorkDir(File dir) {
+		this.workDir = dir;
+		return this;
+	}
+
+	/** Set the directory of the TimingStore of the past durations (default: workDir/timings). */
+	public ShardCoordinator setHistoryDir(File dir) {
+		this.historyDir = dir;
+		return this;
+	}
+
+	/** Add a JVM option for the workers, e.g. "-Xmx512m". */
+	public ShardCoordinator addJvmOption(String option) {
+		jvmOptions.add(option);
+		return this;
+	}
+
+	/** Set the timeout of each worker, in minutes. */
+	public ShardCoordinator setTimeoutMinutes(long minutes) {
+		this.timeoutMinutes = minutes;
+		return this;
+	}
+
+	/** Returns the directory of the TimingStore of the past durations. */
+	public File getHistoryDir() {
+		return (historyDir != null) ? historyDir : new File(workDir, "timings");
+	}
+
+
+	/**
+	 * Plan the shards, run the workers in parallel, and merge their results.
+	 *
+	 * @param classNames	the test classes
+	 * @return the merged results
+	 */
+	public ShardResult run(List<String> classNames) throws IOException, InterruptedException {
+		TimingStore history = TimingStore.open(getHistoryDir());
+		Map<String, Long> estimates = new HashMap<String, Long>();
+		for (String className : classNames) {
+			long median = history.percentile(TimingStore.CLASS + className, 0.5, ESTIMATE_RUNS);
+			if (median >= 0) {
+				estimates.put(className, TimeUnit.NANOSECONDS.toMillis(median));
+			}
+		}
+		List<ShardPlanner.Shard> plan = ShardPlanner.plan(classNames, shards, estimates);
+		workDir.mkdirs();
+
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(plan.size());
+		List<Future<Long>> futures = new ArrayList<Future<Long>>();
+		List<Process> processes = new ArrayList<Process>();
+		for (final ShardPlanner.Shard shard : plan) {
+			if (shard.getClassNames().isEmpty()) {
+				futures.add(null);
+				processes.add(null);
+				continue;
+			}
+			final Process process = start(shard);
+			processes.add(process);
+			futures.add(executor.submit(new Callable<Long>() {
+				@Override
+				public Long call() throws Exception {
+					process.waitFor();
+					return System.nanoTime();
+				}
+			}));
+		}
+		executor.shutdown();
+
+		ShardResult result = new ShardResult();
+		long deadline = start + TimeUnit.MINUTES.toNanos(timeoutMinutes);
+		for (int i = 0; i < plan.size(); i++) {
+			ShardPlanner.Shard shard = plan.get(i);
+			if (futures.get(i) == null) {
+				continue;
+			}
+			long end;
+			String error = null;
+			try {
+				end = futures.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+				if (processes.get(i).exitValue() != 0) {
+					error = "worker exited with code " + processes.get(i).exitValue();
+				}
+			} catch (TimeoutException e) {
+				processes.get(i).destroy();
+				end = System.nanoTime();
+				error = "worker killed after " + timeoutMinutes + " minutes";
+			} catch (ExecutionException e) {
+				end = System.nanoTime();
+				error = "worker failed: " + e.getCause();
+			}
+			result.addShard(shard, (end - start) / 1000000, logFile(shard));
+			merge(shard, resultsFile(shard), error, result, history);
+		}
+		result.wallMillis = (System.nanoTime() - start) / 1000000;
+		history.close();
+		for (String className : classNames) {
+			TimingStore.Regression slower = history.findRegression(TimingStore.CLASS + className, TimingStore.DEFAULT_THRESHOLD,
+					TimingStore.DEFAULT_WINDOW, TimeUnit.MILLISECONDS.toNanos(TimingStore.DEFAULT_MIN_DELTA_MILLIS));
+			if (slower != null) {
+				result.regressions.add(slower);
+			}
+		}
+		return result;
+	}
+
+
+	/** Starts the worker JVM of the shard. */
+	private Process start(ShardPlanner.Shard shard) throws IOException {
+		List<String> command = new ArrayList<String>();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.addAll(jvmOptions);
+		for (String name : System.getProperties().stringPropertyNames()) {
+			if (name.startsWith("wtbox.")) {
+				command.add("-D" + name + "=" + System.getProperty(name));
+			}
+		}
+		command.add(ShardWorker.class.getName());
+		command.add(resultsFile(shard).getPath());
+		command.addAll(shard.getClassNames());
+		resultsFile(shard).delete();
+		return new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(logFile(shard)).start();
+	}
+
+	private File resultsFile(ShardPlanner.Shard shard) {
+		return new File(workDir, "shard-" + shard.getIndex() + ".results");
+	}
+
+	private File logFile(ShardPlanner.Shard shard) {
+		return new File(workDir, "shard-" + shard.getIndex() + ".log");
+	}
+
+	/** Merges the worker's results file; the classes it did not report failed (e.g. the worker died). */
+	private static void merge(ShardPlanner.Shard shard, File results, String error, ShardResult result, TimingStore history)
+			throws IOException {
+		List<String> reported = new ArrayList<String>();
+		if (results.exists()) {
+			try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(results), "UTF-8"))) {
+				String line;
+				while ((line = in.readLine()) != null) {
+					String[] fields = line.split("\t", -1);
+					if (fields[0].equals("class") && fields.length == 6) {
+						reported.add(fields[1]);
+						long millis = Long.parseLong(fields[2]);
+						result.runCount += Integer.parseInt(fields[3]);
+						result.failureCount += Integer.parseInt(fields[4]);
+						result.ignoreCount += Integer.parseInt(fields[5]);
+						if (Integer.parseInt(fields[3]) > 0) {
+							history.record(TimingStore.CLASS + fields[1], TimeUnit.MILLISECONDS.toNanos(millis));
+						}
+					} else if (fields[0].equals("failure") && fields.length == 4) {
+						result.failures.add(fields[2] + ": " + fields[3]);
+					}
+				}
+			}
+		}
+		for (String className : shard.getClassNames()) {
+			if (!reported.contains(className)) {
+				result.failureCount++;
+				result.failures.add(className + ": not run, " + (error != null ? error : "no result") + " (see " + result.logs.get(shard.getIndex()) + ")");
+			}
+		}
+	}
+
+
+	/**
+	 * Returns the test classes (with public &#64;Test methods, not abstract) in the classes directory.
+	 *
+	 * @param classesDir	the root of the compiled classes, on the classpath
+	 */
+	public static List<String> findTestClasses(File classesDir) {
+		List<String> names = new ArrayList<String>();
+		addTestClasses(classesDir, "", names);
+		Collections.sort(names);
+		return names;
+	}
+
+	private static void addTestClasses(File dir, String packagePrefix, List<String> names) {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			String name = file.getName();
+			if (file.isDirectory()) {
+				addTestClasses(file, packagePrefix + name + ".", names);
+			} else if (name.endsWith(".class") && !name.contains("$")) {
+				String className = packagePrefix + name.substring(0, name.length() - ".class".length());
+				if (isTestClass(className)) {
+					names.add(className);
+				}
+			}
+		}
+	}
+
+	private static boolean isTestClass(String className) {
+		try {
+			Class<?> type = Class.forName(className, false, ShardCoordinator.class.getClassLoader());
+			if (Modifier.isAbstract(type.getModifiers()) || !Modifier.isPublic(type.getModifiers())) {
+				return false;
+			}
+			for (Method method : type.getMethods()) {
+				if (method.isAnnotationPresent(Test.class)) {
+					return true;
+				}
+			}
+		} catch (ClassNotFoundException | LinkageError e) {
+			//not loadable: not a test
+		}
+		return false;
+	}
+
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int shards = Runtime.getRuntime().availableProcessors();
+		File workDir = null;
+		File historyDir = null;
+		List<String> jvm = new ArrayList<String>();
+		List<String> classNames = new ArrayList<String>();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-shards")) {
+				shards = Integer.parseInt(args[++i]);
+			} else if (args[i].equals("-history")) {
+				historyDir = new File(args[++i]);
+			} else if (args[i].equals("-workdir")) {
+				workDir = new File(args[++i]);
+			} else if (args[i].equals("-dir")) {
+				classNames.addAll(findTestClasses(new File(args[++i])));
+			} else if (args[i].equals("-jvm")) {
+				jvm.add(args[++i]);
+			} else {
+				classNames.add(args[i]);
+			}
+		}
+		if (classNames.isEmpty()) {
+			System.err.println("Usage: java wtbox.test.ShardCoordinator [-shards N] [-history dir] [-workdir dir] [-dir classesDir] [-jvm option] className...");
+			System.exit(2);
+		}
+		ShardCoordinator coordinator = new ShardCoordinator(shards);
+		if (workDir != null) {
+			coordinator.setWorkDir(workDir);
+		}
+		if (historyDir != null) {
+			coordinator.setHistoryDir(historyDir);
+		}
+		for (String option : jvm) {
+			coordinator.addJvmOption(option);
+		}
+		ShardResult result = coordinator.run(classNames);
+		System.out.print(result.getSummary());
+		System.exit(result.wasSuccessful() ? 0 : 1);
+	}
+
+
+	/** The merged results of the shards. */
+	public static final class ShardResult {
+
+		private int runCount;
+		private int failureCount;
+		private int ignoreCount;
+		private long wallMillis;
+		private final List<String> failures = new ArrayList<String>();
+		private final List<TimingStore.Regression> regressions = new ArrayList<TimingStore.Regression>();
+		private final Map<Integer, File> logs = new TreeMap<Integer, File>();
+		private final List<String> shardLines = new ArrayList<String>();
+		private long minShardMillis = Long.MAX_VALUE;
+		private long maxShardMillis;
+
+		void addShard(ShardPlanner.Shard shard, long millis, File log) {
+			logs.put(shard.getIndex(), log);
+			minShardMillis = Math.min(minShardMillis, millis);
+			maxShardMillis = Math.max(maxShardMillis, millis);
+			shardLines.add(String.format(Locale.ROOT, "shard %d: %d classes, estimated %.1f s, took %.1f s (%s)",
+					shard.getIndex(), shard.getClassNames().size(), shard.getEstimatedMillis() / 1000.0, millis / 1000.0, log.getPath()));
+		}
+
+		public int getRunCount() {
+			return runCount;
+		}
+
+		/** Failed tests, and the classes which did not run. */
+		public int getFailureCount() {
+			return failureCount;
+		}
+
+		public int getIgnoreCount() {
+			return ignoreCount;
+		}
+
+		/** "test: message" of each failure. */
+		public List<String> getFailures() {
+			return Collections.unmodifiableList(failures);
+		}
+
+		/** The classes much slower than their recent runs (see TimingStore.findRegression()). */
+		public List<TimingStore.Regression> getRegressions() {
+			return Collections.unmodifiableList(regressions);
+		}
+
+		/** The time from the start of the first worker to the end of the last one. */
+		public long getWallMillis() {
+			return wallMillis;
+		}
+
+		/** The time of the fastest and of the slowest shard: close, if the plan was balanced. */
+		public long getMinShardMillis() {
+			return (minShardMillis == Long.MAX_VALUE) ? 0 : minShardMillis;
+		}
+
+		public long getMaxShardMillis() {
+			return maxShardMillis;
+		}
+
+		public boolean wasSuccessful() {
+			return failureCount == 0;
+		}
+
+		/** The shards, the counts, and the failures. */
+		public String getSummary() {
+			StringBuilder summary = new StringBuilder();
+			for (String line : shardLines) {
+				summary.append(line).append('\n');
+			}
+			summary.append(String.format(Locale.ROOT, "Wall time %.1f s (shards %.1f - %.1f s)%n",
+					wallMillis / 1000.0, getMinShardMillis() / 1000.0, maxShardMillis / 1000.0));
+			summary.append("Tests run: ").append(runCount).append(", Failures: ").append(failureCount)
+					.append(", Ignored: ").append(ignoreCount).append('\n');
+			for (String failure : failures) {
+				summary.append("  ").append(failure).append('\n');
+			}
+			if (!regressions.isEmpty()) {
+				summary.append("Slower than their recent runs:\n");
+				for (TimingStore.Regression regression : regressions) {
+					summary.append("  ").append(regression).append('\n');
+				}
+			}
+			return summary.toString();
+		}
+	}
+}
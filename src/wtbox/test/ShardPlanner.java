@@ -0,0 +1,124 @@
+package wtbox.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+
+/**
+ * Splits test classes into shards of about the same duration, from their past durations
+ * (longest processing time first: each class, the longest first, goes to the shard with the least work so far).
+ * The last shard then ends at most the duration of one class after the others, instead of one
+ * straggler shard doubling the wall time.
+ *
+ * A class without a past duration is estimated as the mean of the known ones
+ * (or DEFAULT_MILLIS, if none is known).
+ */
+public final class ShardPlanner {
+
+	/** Estimated duration of a class, when no class has a past duration. */
+	public static final long DEFAULT_MILLIS = 10000;
+
+	private ShardPlanner() {
+	}
+
+
+	/**
+	 * Plan the shards.
+	 *
+	 * @param classNames	the test classes
+	 * @param shards	number of shards (at least 1)
+	 * @param durations	past duration of the classes in milliseconds (e.g. medians from a TimingStore), may be empty
+	 * @return the shards (some may be empty, if there are fewer classes than shards), in index order
+	 */
+	public static List<Shard> plan(List<String> classNames, int shards, Map<String, Long> durations) {
+		final Map<String, Long> estimates = new HashMap<String, Long>();
+		long defaultMillis = meanOf(classNames, durations);
+		for (String name : classNames) {
+			Long past = durations.get(name);
+			estimates.put(name, (past == null) ? defaultMillis : past);
+		}
+		List<String> ordered = new ArrayList<String>(new LinkedHashSet<String>(classNames));
+		Collections.sort(ordered, new Comparator<String>() {
+			@Override
+			public int compare(String a, String b) {
+				int byDuration = Long.compare(estimates.get(b), estimates.get(a));
+				return (byDuration != 0) ? byDuration : a.compareTo(b); //the same plan for the same input
+			}
+		});
+
+		List<Shard> plan = new ArrayList<Shard>();
+		PriorityQueue<Shard> leastLoaded = new PriorityQueue<Shard>();
+		for (int i = 0; i < Math.max(1, shards); i++) {
+			Shard shard = new Shard(i);
+			plan.add(shard);
+			leastLoaded.add(shard);
+		}
+		for (String name : ordered) {
+			Shard shard = leastLoaded.poll();
+			shard.classNames.add(name);
+			shard.estimatedMillis += estimates.get(name);
+			leastLoaded.add(shard);
+		}
+		return plan;
+	}
+
+	/** The mean past duration of the classes which have one, or DEFAULT_MILLIS. */
+	private static long meanOf(List<String> classNames, Map<String, Long> durations) {
+		long total = 0;
+		int known = 0;
+		for (String name : classNames) {
+			Long past = durations.get(name);
+			if (past != null) {
+				total += past;
+				known++;
+			}
+		}
+		return (known == 0) ? DEFAULT_MILLIS : total / known;
+	}
+
+
+	/** The test classes of one worker, and their estimated duration. */
+	public static final class Shard implements Comparable<Shard> {
+
+		private final int index;
+		private final List<String> classNames = new ArrayList<String>();
+		private long estimatedMillis;
+
+		Shard(int index) {
+			this.index = index;
+		}
+
+		/** The shard's index, from 0. */
+		public int getIndex() {
+			return index;
+		}
+
+		/** The test classes, the longest first. */
+		public List<String> getClassNames() {
+			return Collections.unmodifiableList(classNames);
+		}
+
+		/** The sum of the classes' estimated durations, in milliseconds. */
+		public long getEstimatedMillis() {
+			return estimatedMillis;
+		}
+
+		/** The least loaded shard first (the lowest index, for the same load). */
+		@Override
+		public int compareTo(Shard other) {
+			int byLoad = Long.compare(estimatedMillis, other.estimatedMillis);
+			return (byLoad != 0) ? byLoad : Integer.compare(index, other.index);
+		}
+
+		@Override
+		public String toString() {
+			return "shard " + index + " (" + estimatedMillis + " ms): " + classNames;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package wtbox.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+
+
+/**
+ * A shard's worker process, started by ShardCoordinator: runs the test classes one after the other with JUnit,
+ * and writes the results file the coordinator merges:
+ * <pre>
+ * class	&lt;className&gt;	&lt;milliseconds&gt;	&lt;run&gt;	&lt;failures&gt;	&lt;ignored&gt;
+ * failure	&lt;className&gt;	&lt;test&gt;	&lt;message&gt;
+ * </pre>
+ * Each class line is written (and flushed) when the class ends, so the coordinator knows which classes
+ * ran if the worker dies.
+ *
+ * Usage: java wtbox.test.ShardWorker resultsFile className...
+ */
+public final class ShardWorker {
+
+	private ShardWorker() {
+	}
+
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: java wtbox.test.ShardWorker resultsFile className...");
+			System.exit(2);
+		}
+		File results = new File(args[0]);
+		JUnitCore junit = new JUnitCore();
+		try (Writer out = new OutputStreamWriter(new FileOutputStream(results), "UTF-8")) {
+			for (int i = 1; i < args.length; i++) {
+				String className = args[i];
+				System.out.println("=== " + className);
+				long start = System.nanoTime();
+				Result result;
+				try {
+					result = junit.run(Class.forName(className));
+				} catch (ClassNotFoundException e) {
+					out.write(line("class", className, "0", "0", "1", "0"));
+					out.write(line("failure", className, className, "Class not found: " + e.getMessage()));
+					out.flush();
+					continue;
+				}
+				long millis = (System.nanoTime() - start) / 1000000;
+				out.write(line("class", className, String.valueOf(millis), String.valueOf(result.getRunCount()),
+						String.valueOf(result.getFailureCount()), String.valueOf(result.getIgnoreCount())));
+				for (Failure failure : result.getFailures()) {
+					out.write(line("failure", className, failure.getTestHeader(), String.valueOf(failure.getMessage())));
+					System.out.println(failure.getTestHeader() + ": " + failure.getTrace());
+				}
+				out.flush();
+			}
+		}
+		System.exit(0); //the tests may leave non-daemon threads (e.g. browsers) running
+	}
+
+	/** A tab separated line (tabs and line breaks in the fields are replaced by spaces). */
+	private static String line(String... fields) {
+		StringBuilder line = new StringBuilder();
+		for (String field : fields) {
+			if (line.length() > 0) {
+				line.append('\t');
+			}
+			line.append(field.replace('\t', ' ').replace('\r', ' ').replace('\n', ' '));
+		}
+		return line.append('\n').toString();
+	}
+}
@@ -0,0 +1,648 @@
+package wtbox.test;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openqa.selenium.Alert;
+import org.openqa.selenium.By;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.logging.Logs;
+
+import wtbox.util.JavaScriptTool;
+
+
+/**
+ * In-process WebDriver and JavascriptExecutor, without a browser: for benchmarks and tests of wtbox itself.
+ *
+ * The page is a simple DOM model of StubElements, built by the test, with scripted changes
+ * (an element appears after X ms, its text changes after Y ms):
+ * <pre>
+ * StubDriver driver = new StubDriver().setCommandLatency(200, TimeUnit.MICROSECONDS);
+ * driver.addElement(By.id("search"), "Search");
+ * driver.addElementAfter(700, By.cssSelector("div.results"), "10 results");
+ * WaitTool.waitForElement(driver, By.cssSelector("div.results"), 5);  //returns after 700 ms
+ * </pre>
+ * The elements are found by id, name, class name, tag name, link text, and simple CSS and XPath
+ * (see StubLocators); an element added with addElement() is also found by its locator.
+ *
+ * Each command (of the driver and of its elements) takes the command latency (0 by default),
+ * like the round trip to a browser driver.  findElement() waits for the implicitlyWait time.
+ *
+ * It runs the wtbox scripts of JavaScriptTool in Java (IS_MATCHED, FIND_EACH, FILL_FORM, the OBSERVE_ scripts,
+ * and the network and page load scripts, which are always idle and loaded), so WaitTool can be measured in
+ * both wait modes.  executeScript() returns the results set with setScriptResult(), and throws
+ * UnsupportedOperationException for the other scripts, so WaitTool uses its driver fallbacks.
+ *
+ * After quit(), the commands throw a WebDriverException (e.g. a dead browser for the driver pool's health check).
+ *
+ * The scripted changes are applied by the driver's commands (there is no background thread),
+ * so a test runs the same way each time.
+ */
+public class StubDriver implements WebDriver, JavascriptExecutor {
+
+	private final StubElement document = new StubElement(this, "#document");
+	private final StubElement body;
+	/** the scripted changes, by due time */
+	private final PriorityQueue<Change> changes = new PriorityQueue<Change>();
+	private long changeSequence;
+	private final Map<String, Cookie> cookies = new LinkedHashMap<String, Cookie>();
+	private final Map<String, Object> scriptResults = new ConcurrentHashMap<String, Object>();
+	private final AtomicLong commands = new AtomicLong();
+	private volatile long latencyNanos;
+	private volatile long implicitWaitMillis;
+	private volatile long scriptTimeoutMillis;
+	private volatile String currentUrl = "about:blank";
+	private volatile String title = "";
+	private volatile boolean quit;
+
+
+	/** A new driver, with an empty page (html, head and body). */
+	public StubDriver() {
+		StubElement html = document.appendChild("html");
+		html.appendChild("head");
+		body = html.appendChild("body");
+	}
+
+
+	/** Each command (of the driver and of its elements) takes this time. */
+	public StubDriver setCommandLatency(long time, TimeUnit unit) {
+		latencyNanos = unit.toNanos(time);
+		return this;
+	}
+
+	/** The page body, to build the page. */
+	public StubElement getBody() {
+		return body;
+	}
+
+	/** Returns a new element, not in the page yet (see StubElement.appendChild()). */
+	public StubElement createElement(String tagName) {
+		return new StubElement(this, tagName);
+	}
+
+	/**
+	 * Add an element to the body, found by the locator: e.g. By.id("x") adds &lt;div id="x"&gt;,
+	 * By.name("q") adds &lt;input name="q"&gt;, and By.linkText("Next") adds &lt;a&gt;Next&lt;/a&gt;.
+	 */
+	public StubElement addElement(By by, String text) {
+		return body.appendChild(elementOf(by, text));
+	}
+
+	/** Add the element (like addElement()) after the delay (in milliseconds). */
+	public StubElement addElementAfter(long millis, By by, String text) {
+		StubElement element = elementOf(by, text);
+		body.appendChildAfter(millis, element);
+		return element;
+	}
+
+	/** Remove the elements of the locator: they are stale. */
+	public void removeElements(By by) {
+		synchronized (this) {
+			for (StubElement element : findStub(document, by)) {
+				element.remove();
+			}
+		}
+	}
+
+	/** Run the change (e.g. update the page) after the delay (in milliseconds). */
+	public void schedule(long millis, Runnable change) {
+		synchronized (this) {
+			changes.add(new Change(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis), changeSequence++, change));
+		}
+	}
+
+	/** The title returned by getTitle(). */
+	public void setTitle(String title) {
+		this.title = title;
+	}
+
+	/** executeScript(script) returns the result. */
+	public void setScriptResult(String script, Object result) {
+		scriptResults.put(script, result);
+	}
+
+	/** Number of commands run (of the driver and of its elements). */
+	public long getCommandCount() {
+		return commands.get();
+	}
+
+	/** The implicitlyWait time set by the test (in milliseconds). */
+	public long getImplicitWaitMillis() {
+		return implicitWaitMillis;
+	}
+
+	/** The script timeout set by the test (in milliseconds). */
+	public long getScriptTimeoutMillis() {
+		return scriptTimeoutMillis;
+	}
+
+
+	/** Count the command, take the command latency, and apply the due changes. */
+	void command() {
+		if (quit) {
+			throw new WebDriverException("The stub session was quit");
+		}
+		commands.incrementAndGet();
+		long latency = latencyNanos;
+		if (latency >= TimeUnit.MILLISECONDS.toNanos(1)) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(latency);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		} else if (latency > 0) {
+			long end = System.nanoTime() + latency; //sleep() is not precise under a millisecond
+			while (System.nanoTime() - end < 0) {
+				Thread.yield();
+			}
+		}
+		applyChanges();
+	}
+
+	/** Apply the scripted changes which are due. */
+	private synchronized void applyChanges() {
+		long now = System.nanoTime();
+		while (!changes.isEmpty() && changes.peek().due - now <= 0) {
+			changes.poll().change.run();
+		}
+	}
+
+	/** Sleep until the next scripted change, or until the deadline (System.nanoTime()). */
+	private void sleepUntilChange(long deadline) {
+		long until = deadline;
+		synchronized (this) {
+			if (!changes.isEmpty() && changes.peek().due - deadline < 0) {
+				until = changes.peek().due;
+			}
+		}
+		long nanos = until - System.nanoTime();
+		if (nanos > 0) {
+			try {
+				TimeUnit.NANOSECONDS.sleep(nanos);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new TimeoutException("Interrupted");
+			}
+		}
+		applyChanges();
+	}
+
+	boolean isDocument(StubElement element) {
+		return element == document;
+	}
+
+	/** Returns the elements under root which match the locator. */
+	List<WebElement> find(StubElement root, By by) {
+		return new ArrayList<WebElement>(findStub(root, by));
+	}
+
+	/** Returns the first element under root which matches the locator, waiting for the implicitlyWait time. */
+	WebElement findFirst(StubElement root, By by) {
+		long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(implicitWaitMillis);
+		while (true) {
+			List<StubElement> found = findStub(root, by);
+			if (!found.isEmpty()) {
+				return found.get(0);
+			}
+			if (System.nanoTime() - end >= 0) {
+				throw new NoSuchElementException("Unable to locate element: " + by);
+			}
+			sleepUntilChange(end);
+		}
+	}
+
+	private List<StubElement> findStub(final StubElement root, By by) {
+		String[] locator = JavaScriptTool.locatorOf(by);
+		if (locator == null) { //e.g. ByChained, ByIdOrName: they use the search context
+			List<StubElement> found = new ArrayList<StubElement>();
+			for (WebElement element : by.findElements(searchContextOf(root))) {
+				found.add((StubElement) element);
+			}
+			return found;
+		}
+		synchronized (this) {
+			return StubLocators.find(document, root, locator[0], locator[1], by.toString());
+		}
+	}
+
+	private SearchContext searchContextOf(final StubElement root) {
+		return new SearchContext() {
+			@Override
+			public List<WebElement> findElements(By by) {
+				return find(root, by);
+			}
+			@Override
+			public WebElement findElement(By by) {
+				return findFirst(root, by);
+			}
+		};
+	}
+
+	private List<StubElement> find(StubElement root, String kind, String value) {
+		synchronized (this) {
+			return StubLocators.find(document, root, kind, value, null);
+		}
+	}
+
+	/** Returns a new element found by the locator. */
+	private StubElement elementOf(By by, String text) {
+		StubElement element = createElement("div").setText(text);
+		element.addAlias(by.toString());
+		String[] locator = JavaScriptTool.locatorOf(by);
+		String kind = (locator == null) ? "" : locator[0];
+		if (kind.equals("id")) {
+			element.setAttribute("id", locator[1]);
+		} else if (kind.equals("name")) {
+			element.setTagName("input").setAttribute("name", locator[1]);
+		} else if (kind.equals("className")) {
+			element.setAttribute("class", locator[1]);
+		} else if (kind.equals("tagName")) {
+			element.setTagName(locator[1]);
+		} else if (kind.equals("linkText") || kind.equals("partialLinkText")) {
+			element.setTagName("a").setAttribute("href", "#").setText(locator[1]);
+		} else if (kind.equals("css") && locator[1].matches("[A-Za-z0-9]*(#[\\w-]+)?(\\.[\\w-]+)*")) {
+			String css = locator[1]; //e.g. "input#q.big"
+			String tag = css.replaceAll("[#.].*", "");
+			if (!tag.isEmpty()) {
+				element.setTagName(tag);
+			}
+			StringBuilder classes = new StringBuilder();
+			for (String part : css.substring(tag.length()).split("(?=[#.])")) {
+				if (part.startsWith("#")) {
+					element.setAttribute("id", part.substring(1));
+				} else if (part.startsWith(".")) {
+					classes.append(classes.length() == 0 ? "" : " ").append(part.substring(1));
+				}
+			}
+			if (classes.length() > 0) {
+				element.setAttribute("class", classes.toString());
+			}
+		}
+		return element;
+	}
+
+
+	/** Returns the first element of the locator under the document which matches the condition, or null. */
+	private StubElement match(String kind, String value, String condition, String text) {
+		for (StubElement element : find(document, kind, value)) {
+			if (JavaScriptTool.PRESENT.equals(condition)
+					|| (JavaScriptTool.VISIBLE.equals(condition) && element.isShown())
+					|| (JavaScriptTool.TEXT.equals(condition) && element.textContent().contains(text))) {
+				return element;
+			}
+		}
+		return null;
+	}
+
+	private List<StubElement> matchAll(List<?> kinds, List<?> values, String condition) {
+		List<StubElement> result = new ArrayList<StubElement>();
+		for (int i = 0; i < kinds.size(); i++) {
+			result.add(match((String) kinds.get(i), (String) values.get(i), condition, ""));
+		}
+		return result;
+	}
+
+	/** A condition checked by an OBSERVE_ script: returns the result, or null to keep waiting. */
+	private interface Check {
+		Object check();
+	}
+
+	/**
+	 * Waits in the "browser" (like JavaScriptTool.OBSERVE): returns the check result, or null if the timeout is reached.
+	 * It throws TimeoutException if the script timeout is reached first.
+	 */
+	private Object observe(Check check, long timeoutMillis) {
+		long start = System.nanoTime();
+		long end = start + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		long scriptEnd = start + TimeUnit.MILLISECONDS.toNanos(scriptTimeoutMillis);
+		while (true) {
+			Object result;
+			synchronized (this) {
+				result = check.check();
+			}
+			if (result != null) {
+				return result;
+			}
+			long now = System.nanoTime();
+			if (now - end >= 0) {
+				return null;
+			}
+			if (now - scriptEnd >= 0) {
+				throw new TimeoutException("Timed out waiting for async script result after " + scriptTimeoutMillis + " ms");
+			}
+			sleepUntilChange(end - scriptEnd < 0 ? end : scriptEnd);
+		}
+	}
+
+
+	@Override
+	public void get(String url) {
+		command();
+		currentUrl = url;
+	}
+
+	@Override
+	public String getCurrentUrl() {
+		command();
+		return currentUrl;
+	}
+
+	@Override
+	public String getTitle() {
+		command();
+		return title;
+	}
+
+	@Override
+	public List<WebElement> findElements(By by) {
+		command();
+		return find(document, by);
+	}
+
+	@Override
+	public WebElement findElement(By by) {
+		command();
+		return findFirst(document, by);
+	}
+
+	@Override
+	public String getPageSource() {
+		command();
+		StringBuilder html = new StringBuilder("<html><head><title>").append(title).append("</title></head>");
+		synchronized (this) {
+			body.appendHtml(html);
+		}
+		return html.append("</html>").toString();
+	}
+
+	@Override
+	public void close() {
+		command();
+	}
+
+	/** After quit(), each command throws a WebDriverException, like a closed browser session. */
+	@Override
+	public void quit() {
+		command();
+		quit = true;
+	}
+
+	/** True once quit() was called. */
+	public boolean isQuit() {
+		return quit;
+	}
+
+	@Override
+	public Set<String> getWindowHandles() {
+		command();
+		return Collections.singleton("stub");
+	}
+
+	@Override
+	public String getWindowHandle() {
+		command();
+		return "stub";
+	}
+
+	@Override
+	public TargetLocator switchTo() {
+		return new StubTargetLocator();
+	}
+
+	@Override
+	public Navigation navigate() {
+		return new StubNavigation();
+	}
+
+	@Override
+	public Options manage() {
+		return new StubOptions();
+	}
+
+	@Override
+	public Object executeScript(String script, Object... args) {
+		command();
+		if (scriptResults.containsKey(script)) {
+			return scriptResults.get(script);
+		}
+		if (script.equals(JavaScriptTool.IS_MATCHED)) {
+			synchronized (this) {
+				return match((String) args[0], (String) args[1], (String) args[2], "") != null;
+			}
+		}
+		if (script.equals(JavaScriptTool.FIND_EACH)) {
+			synchronized (this) {
+				return matchAll((List<?>) args[0], (List<?>) args[1], (String) args[2]);
+			}
+		}
+		if (script.equals(JavaScriptTool.COUNT_TEXT)) {
+			return countText((String) args[0], (String) args[1], (String) args[2], (Boolean) args[3]);
+		}
+		if (script.equals(JavaScriptTool.FILL_FORM)) {
+			return fillForm((List<?>) args[0], (List<?>) args[1], (List<?>) args[2]);
+		}
+		if (script.equals(JavaScriptTool.IS_NETWORK_IDLE) || script.endsWith(JavaScriptTool.IS_PAGE_LOADED)) {
+			return Boolean.TRUE; //no network; the page is loaded (its readiness script is not run)
+		}
+		throw new UnsupportedOperationException("StubDriver does not run this script");
+	}
+
+	@Override
+	public Object executeAsyncScript(String script, final Object... args) {
+		command();
+		if (script.equals(JavaScriptTool.OBSERVE_ELEMENT)) {
+			final String condition = (String) args[2];
+			final boolean gone = JavaScriptTool.ABSENT.equals(condition) || JavaScriptTool.INVISIBLE.equals(condition);
+			final String matched = !gone ? condition : (JavaScriptTool.ABSENT.equals(condition) ? JavaScriptTool.PRESENT : JavaScriptTool.VISIBLE);
+			return observe(new Check() {
+				@Override
+				public Object check() {
+					StubElement element = match((String) args[0], (String) args[1], matched, (String) args[3]);
+					return gone ? (element == null ? Boolean.TRUE : null) : element;
+				}
+			}, ((Number) args[4]).longValue());
+		}
+		if (script.equals(JavaScriptTool.OBSERVE_EACH)) {
+			final boolean all = (Boolean) args[3];
+			return observe(new Check() {
+				@Override
+				public Object check() {
+					List<StubElement> result = matchAll((List<?>) args[0], (List<?>) args[1], (String) args[2]);
+					int count = 0;
+					for (StubElement element : result) {
+						if (element != null) count++;
+					}
+					return (all ? count == result.size() : count > 0) ? result : null;
+				}
+			}, ((Number) args[4]).longValue());
+		}
+		if (script.equals(JavaScriptTool.OBSERVE_TEXT)) {
+			return observe(new Check() {
+				@Override
+				public Object check() {
+					Long count = countText((String) args[0], (String) args[1], (String) args[2], (Boolean) args[3]);
+					return count > 0 ? count : null;
+				}
+			}, ((Number) args[4]).longValue());
+		}
+		if (script.equals(JavaScriptTool.OBSERVE_NETWORK_IDLE) || script.endsWith(JavaScriptTool.OBSERVE_PAGE_LOADED)) {
+			return Boolean.TRUE;
+		}
+		throw new UnsupportedOperationException("StubDriver does not run this script");
+	}
+
+	/** JavaScriptTool.COUNT_TEXT in Java: the occurrences of the text in the body (or the elements of the locator). */
+	private synchronized Long countText(String kind, String value, String text, boolean visibleOnly) {
+		String wanted = text.replaceAll("\\s+", " ");
+		if (wanted.isEmpty()) {
+			return 0L;
+		}
+		List<StubElement> roots = kind.isEmpty() ? Collections.singletonList(getBody()) : find(document, kind, value);
+		long count = 0;
+		for (StubElement root : roots) {
+			String all = (visibleOnly ? root.displayedText() : root.textContent()).replaceAll("\\s+", " ");
+			for (int i = all.indexOf(wanted); i >= 0; i = all.indexOf(wanted, i + wanted.length())) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/** JavaScriptTool.FILL_FORM in Java: returns the index of the first missing field, or -1. */
+	private synchronized Long fillForm(List<?> kinds, List<?> values, List<?> texts) {
+		for (int i = 0; i < kinds.size(); i++) {
+			StubElement element = match((String) kinds.get(i), (String) values.get(i), JavaScriptTool.PRESENT, "");
+			if (element == null) {
+				return (long) i;
+			}
+			String text = (String) texts.get(i);
+			if (element.isCheckable()) {
+				element.setSelected("true".equals(text) || "on".equals(text));
+			} else {
+				element.setAttribute("value", text);
+			}
+		}
+		return -1L;
+	}
+
+
+	/** A scripted change of the page. */
+	private static final class Change implements Comparable<Change> {
+		final long due;
+		final long sequence;
+		final Runnable change;
+
+		Change(long due, long sequence, Runnable change) {
+			this.due = due;
+			this.sequence = sequence;
+			this.change = change;
+		}
+
+		@Override
+		public int compareTo(Change other) {
+			int byDue = Long.signum(due - other.due);
+			return (byDue != 0) ? byDue : Long.compare(sequence, other.sequence);
+		}
+	}
+
+	private class StubOptions implements Options {
+		@Override
+		public void addCookie(Cookie cookie) {
+			command();
+			synchronized (StubDriver.this) {
+				cookies.put(cookie.getName(), cookie);
+			}
+		}
+		@Override
+		public void deleteCookieNamed(String name) {
+			command();
+			synchronized (StubDriver.this) {
+				cookies.remove(name);
+			}
+		}
+		@Override
+		public void deleteCookie(Cookie cookie) {
+			deleteCookieNamed(cookie.getName());
+		}
+		@Override
+		public void deleteAllCookies() {
+			command();
+			synchronized (StubDriver.this) {
+				cookies.clear();
+			}
+		}
+		@Override
+		public Set<Cookie> getCookies() {
+			command();
+			synchronized (StubDriver.this) {
+				return new LinkedHashSet<Cookie>(cookies.values());
+			}
+		}
+		@Override
+		public Cookie getCookieNamed(String name) {
+			command();
+			synchronized (StubDriver.this) {
+				return cookies.get(name);
+			}
+		}
+		@Override public Timeouts timeouts() { return new StubTimeouts(); }
+		@Override public ImeHandler ime() { throw new UnsupportedOperationException("ime"); }
+		@Override public Window window() { throw new UnsupportedOperationException("window"); }
+		@Override public Logs logs() { throw new UnsupportedOperationException("logs"); }
+	}
+
+	private class StubTimeouts implements Timeouts {
+		@Override
+		public Timeouts implicitlyWait(long time, TimeUnit unit) {
+			command();
+			implicitWaitMillis = unit.toMillis(time);
+			return this;
+		}
+		@Override
+		public Timeouts setScriptTimeout(long time, TimeUnit unit) {
+			command();
+			scriptTimeoutMillis = unit.toMillis(time);
+			return this;
+		}
+		@Override
+		public Timeouts pageLoadTimeout(long time, TimeUnit unit) {
+			command();
+			return this;
+		}
+	}
+
+	private class StubNavigation implements Navigation {
+		@Override public void back() { command(); }
+		@Override public void forward() { command(); }
+		@Override public void to(String url) { get(url); }
+		@Override public void to(URL url) { get(url.toString()); }
+		@Override public void refresh() { command(); }
+	}
+
+	private class StubTargetLocator implements TargetLocator {
+		@Override public WebDriver frame(int index) { command(); return StubDriver.this; }
+		@Override public WebDriver frame(String nameOrId) { command(); return StubDriver.this; }
+		@Override public WebDriver frame(WebElement frameElement) { command(); return StubDriver.this; }
+		@Override public WebDriver window(String nameOrHandle) { command(); return StubDriver.this; }
+		@Override public WebDriver defaultContent() { command(); return StubDriver.this; }
+		@Override public WebElement activeElement() { throw new UnsupportedOperationException("activeElement"); }
+		@Override public Alert alert() { throw new UnsupportedOperationException("alert"); }
+	}
+}
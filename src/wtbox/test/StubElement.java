@@ -0,0 +1,400 @@
+package wtbox.test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebElement;
+
+
+/**
+ * Element of a StubDriver page: a node of its DOM model, with a tag, attributes, text and child elements.
+ *
+ * The test builds the page, and scripts its changes (an element appears, its text changes, it is removed)
+ * after a delay:
+ * <pre>
+ * StubElement results = driver.getBody().appendChild("div").setAttribute("id", "results");
+ * results.setTextAfter(300, "10 results");
+ * results.appendChildAfter(500, driver.createElement("a").setText("Next"));
+ * </pre>
+ * Each command takes the driver's command latency.  An element removed from the page
+ * throws StaleElementReferenceException, like a browser element removed from the DOM.
+ */
+public class StubElement implements WebElement {
+
+	private final StubDriver driver;
+	private final Map<String, String> attributes = new LinkedHashMap<String, String>();
+	private final List<StubElement> children = new ArrayList<StubElement>();
+	/** locators (By.toString()) this element was added with, see StubDriver.addElement() */
+	private final Set<String> aliases = new CopyOnWriteArraySet<String>();
+	private StubElement parent;
+	private String tagName;
+	private String text = "";
+	private boolean displayed = true;
+	private boolean selected;
+
+	StubElement(StubDriver driver, String tagName) {
+		this.driver = driver;
+		this.tagName = tagName.toLowerCase();
+	}
+
+
+	/** Append a new child element, and return it. */
+	public StubElement appendChild(String tagName) {
+		return appendChild(new StubElement(driver, tagName));
+	}
+
+	/** Append the element (e.g. created by StubDriver.createElement()), and return it. */
+	public StubElement appendChild(StubElement child) {
+		synchronized (driver) {
+			if (child.parent != null) {
+				child.parent.children.remove(child);
+			}
+			child.parent = this;
+			children.add(child);
+		}
+		return child;
+	}
+
+	/** Remove this element from the page: it is stale. */
+	public void remove() {
+		synchronized (driver) {
+			if (parent != null) {
+				parent.children.remove(this);
+				parent = null;
+			}
+		}
+	}
+
+	public StubElement setText(String text) {
+		synchronized (driver) {
+			this.text = (text == null) ? "" : text;
+		}
+		return this;
+	}
+
+	public StubElement setTagName(String tagName) {
+		synchronized (driver) {
+			this.tagName = tagName.toLowerCase();
+		}
+		return this;
+	}
+
+	/** Set the attribute (or remove it, if the value is null). */
+	public StubElement setAttribute(String name, String value) {
+		synchronized (driver) {
+			if (value == null) {
+				attributes.remove(name);
+			} else {
+				attributes.put(name, value);
+			}
+		}
+		return this;
+	}
+
+	/** Show or hide the element (and its children), like the CSS display property. */
+	public StubElement setDisplayed(boolean displayed) {
+		synchronized (driver) {
+			this.displayed = displayed;
+		}
+		return this;
+	}
+
+	/** Append the child element after the delay (in milliseconds). */
+	public StubElement appendChildAfter(long millis, final StubElement child) {
+		driver.schedule(millis, new Runnable() {
+			@Override
+			public void run() {
+				appendChild(child);
+			}
+		});
+		return this;
+	}
+
+	/** Change the text after the delay (in milliseconds). */
+	public StubElement setTextAfter(long millis, final String text) {
+		driver.schedule(millis, new Runnable() {
+			@Override
+			public void run() {
+				setText(text);
+			}
+		});
+		return this;
+	}
+
+	/** Show or hide the element after the delay (in milliseconds). */
+	public StubElement setDisplayedAfter(long millis, final boolean displayed) {
+		driver.schedule(millis, new Runnable() {
+			@Override
+			public void run() {
+				setDisplayed(displayed);
+			}
+		});
+		return this;
+	}
+
+	/** Remove the element after the delay (in milliseconds). */
+	public StubElement removeAfter(long millis) {
+		driver.schedule(millis, new Runnable() {
+			@Override
+			public void run() {
+				remove();
+			}
+		});
+		return this;
+	}
+
+
+	/** The DOM model (call them holding the driver's lock). */
+	String tag() {
+		return tagName;
+	}
+
+	String attribute(String name) {
+		return attributes.get(name);
+	}
+
+	StubElement parent() {
+		return parent;
+	}
+
+	List<StubElement> children() {
+		return new ArrayList<StubElement>(children);
+	}
+
+	/** Returns the descendants of this element, in document order. */
+	List<StubElement> descendants() {
+		List<StubElement> list = new ArrayList<StubElement>();
+		addDescendants(list);
+		return list;
+	}
+
+	private void addDescendants(List<StubElement> list) {
+		for (StubElement child : children) {
+			list.add(child);
+			child.addDescendants(list);
+		}
+	}
+
+	/** The text of the element and its descendants, displayed or not (like textContent). */
+	String textContent() {
+		return text(false);
+	}
+
+	/** The displayed text of the element and its descendants, or "" if it is hidden. */
+	String displayedText() {
+		return isShown() ? text(true) : "";
+	}
+
+	/** The displayed text of the element and its descendants (like WebElement.getText()). */
+	private String text(boolean displayedOnly) {
+		if (displayedOnly && !displayed) {
+			return "";
+		}
+		StringBuilder all = new StringBuilder(text);
+		for (StubElement child : children) {
+			String childText = child.text(displayedOnly);
+			if (!childText.isEmpty()) {
+				all.append(all.length() == 0 ? "" : " ").append(childText);
+			}
+		}
+		return all.toString();
+	}
+
+	void addAlias(String locator) {
+		aliases.add(locator);
+	}
+
+	boolean hasAlias(String locator) {
+		return locator != null && !aliases.isEmpty() && aliases.contains(locator);
+	}
+
+	/** True if the element and its ancestors are displayed. */
+	boolean isShown() {
+		for (StubElement e = this; e != null; e = e.parent) {
+			if (!e.displayed) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** True if the element is in the page. */
+	boolean isAttached() {
+		StubElement e = this;
+		while (e.parent != null) {
+			e = e.parent;
+		}
+		return driver.isDocument(e);
+	}
+
+	boolean isCheckable() {
+		String type = attributes.get("type");
+		return tagName.equals("input") && ("checkbox".equals(type) || "radio".equals(type));
+	}
+
+	void setSelected(boolean selected) {
+		this.selected = selected;
+	}
+
+	/** Appends the element's HTML (for getPageSource()). */
+	void appendHtml(StringBuilder html) {
+		html.append('<').append(tagName);
+		for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+			html.append(' ').append(attribute.getKey()).append("=\"").append(escape(attribute.getValue()).replace("\"", "&quot;")).append('"');
+		}
+		if (!displayed) {
+			html.append(" style=\"display: none\"");
+		}
+		html.append('>').append(escape(text));
+		for (StubElement child : children) {
+			child.appendHtml(html);
+		}
+		html.append("</").append(tagName).append('>');
+	}
+
+	private static String escape(String text) {
+		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+	}
+
+
+	/** Take the command latency, and check the element is still in the page. Returns the driver's lock. */
+	private Object command() {
+		driver.command();
+		synchronized (driver) {
+			if (!isAttached()) {
+				throw new StaleElementReferenceException("Element is no longer attached to the DOM: " + this);
+			}
+		}
+		return driver;
+	}
+
+	@Override
+	public void click() {
+		String href;
+		synchronized (command()) {
+			if (isCheckable()) {
+				selected = "radio".equals(attributes.get("type")) || !selected;
+			}
+			href = tagName.equals("a") ? attributes.get("href") : null;
+		}
+		if (href != null && !href.startsWith("#") && !href.startsWith("javascript:")) {
+			driver.get(href);
+		}
+	}
+
+	@Override
+	public void submit() {
+		command();
+	}
+
+	@Override
+	public void sendKeys(CharSequence... keys) {
+		synchronized (command()) {
+			StringBuilder value = new StringBuilder(attributes.containsKey("value") ? attributes.get("value") : "");
+			for (CharSequence key : keys) {
+				value.append(key);
+			}
+			attributes.put("value", value.toString());
+		}
+	}
+
+	@Override
+	public void clear() {
+		synchronized (command()) {
+			attributes.put("value", "");
+		}
+	}
+
+	@Override
+	public String getTagName() {
+		synchronized (command()) {
+			return tagName;
+		}
+	}
+
+	@Override
+	public String getAttribute(String name) {
+		synchronized (command()) {
+			if (name.equals("checked") || name.equals("selected")) {
+				return selected ? "true" : null;
+			}
+			return attributes.get(name);
+		}
+	}
+
+	@Override
+	public boolean isSelected() {
+		synchronized (command()) {
+			return selected;
+		}
+	}
+
+	@Override
+	public boolean isEnabled() {
+		synchronized (command()) {
+			return !attributes.containsKey("disabled");
+		}
+	}
+
+	@Override
+	public String getText() {
+		synchronized (command()) {
+			return displayedText();
+		}
+	}
+
+	@Override
+	public List<WebElement> findElements(By by) {
+		command();
+		return driver.find(this, by);
+	}
+
+	@Override
+	public WebElement findElement(By by) {
+		command();
+		return driver.findFirst(this, by);
+	}
+
+	@Override
+	public boolean isDisplayed() {
+		synchronized (command()) {
+			return isShown();
+		}
+	}
+
+	@Override
+	public Point getLocation() {
+		command();
+		return new Point(0, 0);
+	}
+
+	@Override
+	public Dimension getSize() {
+		synchronized (command()) {
+			return isShown() ? new Dimension(100, 20) : new Dimension(0, 0);
+		}
+	}
+
+	@Override
+	public String getCssValue(String propertyName) {
+		synchronized (command()) {
+			if (propertyName.equals("display")) {
+				return displayed ? "block" : "none";
+			}
+			return "";
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "StubElement: <" + tagName + (attributes.isEmpty() ? "" : " " + attributes) + ">";
+	}
+}
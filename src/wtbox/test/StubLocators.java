@@ -0,0 +1,354 @@
+package wtbox.test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.openqa.selenium.InvalidSelectorException;
+
+
+/**
+ * Finds the elements of a StubDriver page by a locator (kind and value, as JavaScriptTool.locatorOf() returns them).
+ *
+ * It supports the locators page objects use:
+ *   CSS: tag, #id, .class, [attr], [attr=value] (and ~= ^= $= *=), descendant and child (&gt;) combinators, groups (,);
+ *   XPath: steps with / and //, a tag name or *, and the predicates [@attr], [@attr='value'], [text()='value'],
+ *          [contains(@attr,'value')] and [contains(text(),'value')].
+ * Other CSS (pseudo classes, siblings) and XPath expressions throw InvalidSelectorException,
+ * unless the element was added with that locator (StubDriver.addElement()).
+ */
+final class StubLocators {
+
+	private StubLocators() {
+	}
+
+	/** Returns the elements under root (in document order) matching the locator. */
+	static List<StubElement> find(StubElement document, StubElement root, String kind, String value, String alias) {
+		List<StubElement> found = new ArrayList<StubElement>();
+		List<StubElement> all = root.descendants();
+		boolean aliasFound = false;
+		for (StubElement element : all) {
+			if (element.hasAlias(alias)) {
+				found.add(element);
+				aliasFound = true;
+			}
+		}
+		if (kind == null) {
+			return found;
+		}
+		List<StubElement> matched;
+		try {
+			matched = findByKind(document, root, all, kind, value);
+		} catch (InvalidSelectorException e) {
+			if (aliasFound) {
+				return found;
+			}
+			throw e;
+		}
+		if (!aliasFound) {
+			return matched;
+		}
+		Set<StubElement> union = new LinkedHashSet<StubElement>(found);
+		union.addAll(matched);
+		List<StubElement> ordered = new ArrayList<StubElement>();
+		for (StubElement element : all) {
+			if (union.contains(element)) {
+				ordered.add(element);
+			}
+		}
+		return ordered;
+	}
+
+	private static List<StubElement> findByKind(StubElement document, StubElement root, List<StubElement> all,
+			String kind, String value) {
+		List<StubElement> found = new ArrayList<StubElement>();
+		if (kind.equals("xpath")) {
+			return xpath(value.startsWith("/") ? document : root, value);
+		}
+		List<List<Compound>> css = kind.equals("css") ? parseCss(value) : null;
+		for (StubElement element : all) {
+			boolean matches;
+			if (kind.equals("id")) {
+				matches = value.equals(element.attribute("id"));
+			} else if (kind.equals("name")) {
+				matches = value.equals(element.attribute("name"));
+			} else if (kind.equals("className")) {
+				matches = hasWord(element.attribute("class"), value);
+			} else if (kind.equals("tagName")) {
+				matches = element.tag().equalsIgnoreCase(value);
+			} else if (kind.equals("linkText")) {
+				matches = element.tag().equals("a") && element.textContent().trim().equals(value);
+			} else if (kind.equals("partialLinkText")) {
+				matches = element.tag().equals("a") && element.textContent().contains(value);
+			} else if (kind.equals("css")) {
+				matches = matchesCss(element, css);
+			} else {
+				throw new InvalidSelectorException("StubDriver does not support the locator: " + kind);
+			}
+			if (matches) {
+				found.add(element);
+			}
+		}
+		return found;
+	}
+
+
+	/** A compound CSS selector (e.g. input.big[name=q]), and the combinator before it. */
+	private static final class Compound {
+		boolean child; //'>' before it, else descendant
+		String tag; //null for any
+		final List<String[]> attributes = new ArrayList<String[]>(); //name, operator (or null), value
+	}
+
+	/** Parses a CSS selector into groups of compounds. */
+	private static List<List<Compound>> parseCss(String selector) {
+		List<List<Compound>> groups = new ArrayList<List<Compound>>();
+		for (String group : selector.split(",")) {
+			List<Compound> compounds = new ArrayList<Compound>();
+			String s = group.trim().replaceAll("\\s*>\\s*", " > ");
+			boolean child = false;
+			for (String part : s.split("\\s+")) {
+				if (part.equals(">")) {
+					child = true;
+					continue;
+				}
+				Compound compound = parseCompound(part, selector);
+				compound.child = child;
+				compounds.add(compound);
+				child = false;
+			}
+			if (compounds.isEmpty()) {
+				throw new InvalidSelectorException("Invalid CSS selector: " + selector);
+			}
+			groups.add(compounds);
+		}
+		return groups;
+	}
+
+	private static Compound parseCompound(String part, String selector) {
+		Compound compound = new Compound();
+		int i = 0;
+		while (i < part.length() && (Character.isLetterOrDigit(part.charAt(i)) || part.charAt(i) == '-' || part.charAt(i) == '*')) {
+			i++;
+		}
+		if (i > 0 && !part.substring(0, i).equals("*")) {
+			compound.tag = part.substring(0, i).toLowerCase();
+		}
+		while (i < part.length()) {
+			char c = part.charAt(i);
+			if (c == '#' || c == '.') {
+				int end = i + 1;
+				while (end < part.length() && isIdentChar(part.charAt(end))) {
+					end++;
+				}
+				String name = part.substring(i + 1, end);
+				compound.attributes.add(c == '#' ? new String[] {"id", "=", name} : new String[] {"class", "~=", name});
+				i = end;
+			} else if (c == '[') {
+				int end = part.indexOf(']', i);
+				if (end < 0) {
+					throw new InvalidSelectorException("Invalid CSS selector: " + selector);
+				}
+				compound.attributes.add(parseAttribute(part.substring(i + 1, end)));
+				i = end + 1;
+			} else {
+				throw new InvalidSelectorException("StubDriver does not support the CSS selector: " + selector);
+			}
+		}
+		return compound;
+	}
+
+	private static String[] parseAttribute(String attribute) {
+		int eq = attribute.indexOf('=');
+		if (eq < 0) {
+			return new String[] {attribute.trim(), null, null};
+		}
+		String operator = "=";
+		int nameEnd = eq;
+		if (eq > 0 && "~^$*|".indexOf(attribute.charAt(eq - 1)) >= 0) {
+			operator = attribute.charAt(eq - 1) + "=";
+			nameEnd = eq - 1;
+		}
+		return new String[] {attribute.substring(0, nameEnd).trim(), operator, unquote(attribute.substring(eq + 1).trim())};
+	}
+
+	private static boolean isIdentChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '-' || c == '_';
+	}
+
+	private static boolean matchesCss(StubElement element, List<List<Compound>> groups) {
+		for (List<Compound> compounds : groups) {
+			if (matches(element, compounds, compounds.size() - 1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/** True if the element matches compounds[index], and its ancestors the compounds before it (like querySelectorAll()). */
+	private static boolean matches(StubElement element, List<Compound> compounds, int index) {
+		if (!matches(element, compounds.get(index))) {
+			return false;
+		}
+		if (index == 0) {
+			return true;
+		}
+		boolean child = compounds.get(index).child;
+		for (StubElement ancestor = element.parent(); ancestor != null; ancestor = ancestor.parent()) {
+			if (matches(ancestor, compounds, index - 1)) {
+				return true;
+			}
+			if (child) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	private static boolean matches(StubElement element, Compound compound) {
+		if (compound.tag != null && !element.tag().equalsIgnoreCase(compound.tag)) {
+			return false;
+		}
+		for (String[] attribute : compound.attributes) {
+			if (!matchesAttribute(element.attribute(attribute[0]), attribute[1], attribute[2])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean matchesAttribute(String actual, String operator, String expected) {
+		if (actual == null) {
+			return false;
+		}
+		if (operator == null) {
+			return true;
+		}
+		switch (operator) {
+			case "=": return actual.equals(expected);
+			case "~=": return hasWord(actual, expected);
+			case "^=": return actual.startsWith(expected);
+			case "$=": return actual.endsWith(expected);
+			case "*=": return actual.contains(expected);
+			default: return actual.equals(expected) || actual.startsWith(expected + "-"); //|=
+		}
+	}
+
+
+	/** Evaluates the supported XPath subset from the context element. */
+	private static List<StubElement> xpath(StubElement context, String expression) {
+		String path = expression.startsWith(".") ? expression.substring(1) : expression;
+		if (!path.startsWith("/")) {
+			path = "/" + path; //relative: children of the context
+		}
+		List<StubElement> current = new ArrayList<StubElement>();
+		current.add(context);
+		int i = 0;
+		while (i < path.length()) {
+			boolean descendant = path.startsWith("//", i);
+			i += descendant ? 2 : 1;
+			int end = stepEnd(path, i);
+			String step = path.substring(i, end);
+			i = end;
+			Set<StubElement> next = new LinkedHashSet<StubElement>();
+			for (StubElement node : current) {
+				for (StubElement candidate : descendant ? node.descendants() : node.children()) {
+					if (matchesStep(candidate, step, expression)) {
+						next.add(candidate);
+					}
+				}
+			}
+			current = new ArrayList<StubElement>(next);
+		}
+		return current;
+	}
+
+	/** Returns the end of the step which starts at i (the next '/' outside of a predicate). */
+	private static int stepEnd(String path, int i) {
+		int depth = 0;
+		char quote = 0;
+		for (int j = i; j < path.length(); j++) {
+			char c = path.charAt(j);
+			if (quote != 0) {
+				if (c == quote) quote = 0;
+			} else if (c == '\'' || c == '"') {
+				quote = c;
+			} else if (c == '[') {
+				depth++;
+			} else if (c == ']') {
+				depth--;
+			} else if (c == '/' && depth == 0) {
+				return j;
+			}
+		}
+		return path.length();
+	}
+
+	private static boolean matchesStep(StubElement element, String step, String expression) {
+		int bracket = step.indexOf('[');
+		String name = (bracket < 0) ? step : step.substring(0, bracket);
+		if (name.isEmpty() || (!name.equals("*") && !name.matches("[A-Za-z][A-Za-z0-9-]*"))) {
+			throw new InvalidSelectorException("StubDriver does not support the XPath: " + expression);
+		}
+		if (!name.equals("*") && !element.tag().equalsIgnoreCase(name)) {
+			return false;
+		}
+		while (bracket >= 0) {
+			int end = step.indexOf(']', bracket);
+			if (end < 0) {
+				throw new InvalidSelectorException("Invalid XPath: " + expression);
+			}
+			if (!matchesPredicate(element, step.substring(bracket + 1, end).trim(), expression)) {
+				return false;
+			}
+			bracket = step.indexOf('[', end);
+		}
+		return true;
+	}
+
+	private static boolean matchesPredicate(StubElement element, String predicate, String expression) {
+		boolean contains = predicate.startsWith("contains(") && predicate.endsWith(")");
+		String[] operands = contains ? predicate.substring(9, predicate.length() - 1).split(",", 2) : predicate.split("=", 2);
+		String actual = valueOf(element, operands[0].trim(), expression);
+		if (operands.length == 1) {
+			if (contains) {
+				throw new InvalidSelectorException("Invalid XPath: " + expression);
+			}
+			return actual != null; //[@attr]
+		}
+		String expected = unquote(operands[1].trim());
+		return actual != null && (contains ? actual.contains(expected) : actual.equals(expected));
+	}
+
+	private static String valueOf(StubElement element, String operand, String expression) {
+		if (operand.startsWith("@")) {
+			return element.attribute(operand.substring(1));
+		}
+		if (operand.equals("text()") || operand.equals(".")) {
+			return element.textContent();
+		}
+		throw new InvalidSelectorException("StubDriver does not support the XPath: " + expression);
+	}
+
+
+	private static boolean hasWord(String words, String word) {
+		if (words == null) {
+			return false;
+		}
+		for (String each : words.trim().split("\\s+")) {
+			if (each.equals(word)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String unquote(String value) {
+		if (value.length() >= 2 && (value.charAt(0) == '\'' || value.charAt(0) == '"')
+				&& value.charAt(value.length() - 1) == value.charAt(0)) {
+			return value.substring(1, value.length() - 1);
+		}
+		return value;
+	}
+}
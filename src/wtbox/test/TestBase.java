@@ -1,8 +1,12 @@
 package wtbox.test;
 
-import java.util.concurrent.TimeUnit;
+import org.junit.Rule;
 import org.openqa.selenium.WebDriver;
 
+import wtbox.util.CommandMetrics;
+import wtbox.util.DriverState;
+import wtbox.util.InstrumentedDriver;
+import wtbox.util.Tracer;
 import wtbox.util.WaitTool;
 
 /**
@@ -16,21 +20,143 @@ public class TestBase {
 	/** This page's WebDriver */ 
 	protected WebDriver driver;
 	
+	/** Records each test's Tracer timeline (when the tracer is on) */ 
+	@Rule 
+	public TraceRule traceRule = new TraceRule(); 
+	
+	/** Driver pool shared by all test classes, for leaseDriver() */ 
+	private static volatile DriverPool driverPool; 
+	
+	/** The browser session reused across test classes, for initializeReusedSession() (apart from the driverPool) */ 
+	private static DriverPool reusedSession; 
+	
+	/** The pool this test's driver was leased from, for releaseDriver() */ 
+	private DriverPool leasedFrom; 
+	
 	/** 
 	 * Initialize test properties ( WebDriver, implicitlyWait, and etc).  
 	 * 
+	 * If CommandMetrics (or Tracer) is enabled, the driver is instrumented (InstrumentedDriver.wrap()), 
+	 * so every command of the test is timed. 
+	 * 
 	 * Note: for some project you can initialize the test setting based on property files or excel fille.*/ 
 	protected void initialize(WebDriver driver){
 		//implicitlyWait will poll the DOM every 500 milliseconds until the element is found (or timeout after 9 seconds)
-		driver.manage().timeouts().implicitlyWait(WaitTool.DEFAULT_WAIT_4_PAGE, TimeUnit.SECONDS); 
+		initialize(driver, WaitTool.DEFAULT_WAIT_4_PAGE); 
+	}
+
+	/** 
+	 * Initialize test properties with the given implicitlyWait time.  
+	 * 
+	 * 0 is the "zero implicit wait" session mode: a new driver session has no implicit wait, 
+	 * so no timeout command is sent at all, and WaitTool does not have to nullify 
+	 * and reset implicitlyWait around its waits.  Use WaitTool's explicit waits for every element. 
+	 * (Pass a new driver session; a driver whose implicitlyWait was already set is not reset.) 
+	 * 
+	 * @param driver
+	 * @param implicitWaitInSeconds		implicitlyWait time, or 0 for no implicit wait
+	 */
+	protected void initialize(WebDriver driver, int implicitWaitInSeconds){
+		if (CommandMetrics.isEnabled() || Tracer.isEnabled()) {
+			driver = InstrumentedDriver.wrap(driver); 
+		}
+		if (implicitWaitInSeconds == 0) {
+			DriverState.assumeImplicitWait(driver, 0); //a new session starts with 0, nothing to send
+		} else {
+			WaitTool.setImplicitWait(driver, implicitWaitInSeconds); 
+		}
 		this.driver = driver; 
 	}
 
+	/** 
+	 * Set the driver pool shared by all test classes.  
+	 * e.g. in &#64;BeforeClass: TestBase.setDriverPool(new DriverPool(factory, 4)); 
+	 */ 
+	public static void setDriverPool(DriverPool pool){
+		driverPool = pool; 
+	}
+	
+	/** Returns the shared driver pool, or null. */ 
+	public static DriverPool getDriverPool(){
+		return driverPool; 
+	}
+	
+	/** 
+	 * Shut down the shared driver pool (its drivers are quit), and unset it. 
+	 * e.g. in &#64;AfterClass, when the next test classes do not use it. 
+	 */ 
+	public static void shutdownDriverPool(){
+		DriverPool pool = driverPool; 
+		driverPool = null; 
+		if (pool != null) {
+			pool.shutdown(); 
+		}
+	}
+
+	/** 
+	 * Lease a driver from the shared driver pool for this test, and initialize the test properties.  
+	 * Call it in &#64;Before, and releaseDriver() in &#64;After. 
+	 * With ParallelRunner each test thread leases its own driver. 
+	 */ 
+	protected void leaseDriver(){
+		DriverPool pool = driverPool; 
+		if (pool == null || pool.isShutdown()) {
+			throw new IllegalStateException("No driver pool: call TestBase.setDriverPool() first"); 
+		}
+		lease(pool); 
+	}
+	
+	private void lease(DriverPool pool){
+		initialize(pool.lease()); 
+		leasedFrom = pool; 
+	}
+
+	/** 
+	 * Session-reuse mode: lease the shared browser session, which stays alive across test classes.  
+	 * The first call starts it with the factory, in its own pool of one driver 
+	 * (apart from the shared driver pool of leaseDriver(); a new one, if it was shut down). 
+	 * releaseDriver() resets the session (cookies, storage, windows) for the next test, 
+	 * and restarts the browser only if the reset fails.  Call it in &#64;Before. 
+	 * 
+	 * @param factory	creates the browser the first time (and after a failed reset)
+	 */ 
+	protected void initializeReusedSession(DriverFactory factory){
+		DriverPool pool; 
+		synchronized (TestBase.class) {
+			if (reusedSession == null || reusedSession.isShutdown()) {
+				reusedSession = new DriverPool(factory, 1); 
+			}
+			pool = reusedSession; 
+		}
+		lease(pool); 
+	}
+
+	/** Quit the reused browser session of initializeReusedSession(), e.g. at the end of the run. */ 
+	public static void shutdownReusedSession(){
+		DriverPool pool; 
+		synchronized (TestBase.class) {
+			pool = reusedSession; 
+			reusedSession = null; 
+		}
+		if (pool != null) {
+			pool.shutdown(); 
+		}
+	}
+
+	/** Return this test's driver to the pool it was leased from (its session is reset), for the next test. */ 
+	protected void releaseDriver(){
+		if (driver != null && leasedFrom != null) {
+			leasedFrom.release(InstrumentedDriver.unwrap(driver)); 
+			driver = null; 
+			leasedFrom = null; 
+		}
+	}
+
 	/**
 	 * Set the driver implicitlyWait time.  
 	 * @param waitTimeInSeconds
 	 */
 	public void setImplicitlyWaitTime(int waitTimeInSeconds){
-		driver.manage().timeouts().implicitlyWait(waitTimeInSeconds, TimeUnit.SECONDS); 
+		WaitTool.setImplicitWait(driver, waitTimeInSeconds); 
 	}
 }
@@ -0,0 +1,56 @@
+package wtbox.test;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.rules.TestWatcher;
+import org.junit.runner.Description;
+
+import wtbox.util.TimingStore;
+import wtbox.util.Tracer;
+
+/**
+ * JUnit rule which records a Tracer timeline for each test, and writes it (in the Chrome trace-event format)
+ * to the trace directory when the test ends.  TestBase declares it, so its tests are traced when the tracer is on
+ * (-Dwtbox.trace.dir=target/traces).  Other tests can declare it too:
+ * <pre>
+ * &#64;Rule public TraceRule trace = new TraceRule();
+ * </pre>
+ * Each test's whole run is a STEP span named after the test.
+ *
+ * With -Dwtbox.timings.dir, the test's duration (and the steps of its timeline) are also recorded
+ * in the TimingStore, and a test which is much slower than its recent runs is reported.
+ */
+public class TraceRule extends TestWatcher {
+
+	private long startNanos;
+
+	@Override
+	protected void starting(Description description) {
+		Tracer.startTest(description.getClassName() + "." + description.getMethodName());
+		Tracer.begin(Tracer.STEP, description.getMethodName());
+		startNanos = System.nanoTime();
+	}
+
+	@Override
+	protected void finished(Description description) {
+		long nanos = System.nanoTime() - startNanos;
+		File file = Tracer.endTest();
+		if (file != null) {
+			System.out.println("Trace of " + description.getDisplayName() + ": " + file.getPath());
+		}
+		TimingStore store = TimingStore.getDefault();
+		if (store != null) {
+			String test = description.getClassName() + "." + description.getMethodName();
+			store.record(TimingStore.TEST + test, nanos);
+			if (Tracer.isEnabled()) {
+				store.recordSteps(test);
+			}
+			TimingStore.Regression slower = store.findRegression(TimingStore.TEST + test, TimingStore.DEFAULT_THRESHOLD,
+					TimingStore.DEFAULT_WINDOW, TimeUnit.MILLISECONDS.toNanos(TimingStore.DEFAULT_MIN_DELTA_MILLIS));
+			if (slower != null) {
+				System.out.println("Slower than its recent runs: " + slower);
+			}
+		}
+	}
+}
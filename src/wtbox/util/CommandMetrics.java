@@ -0,0 +1,243 @@
+package wtbox.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Command metrics registry.  Keeps a LatencyHistogram for each WebDriver command
+ * (findElement, click, sendKeys, executeScript, implicitlyWait, ...) recorded by InstrumentedDriver,
+ * and for the WaitTool waits ("wait.polling", "wait.observer") with their poll and timeout counts.
+ *
+ * Metrics are off by default.  Turn them on with CommandMetrics.setEnabled(true)
+ * (before TestBase.initialize() or the page objects are created), or with the system properties:
+ *   -Dwtbox.metrics=true  			record the metrics
+ *   -Dwtbox.metrics.file=target/metrics  	record, and write target/metrics.json and target/metrics.csv when the JVM exits
+ *
+ * Copyright [2012] [Chon Chung]
+ *
+ * Licensed under the Apache Open Source License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+public final class CommandMetrics {
+
+	/** Name of the WaitTool polling waits (WebDriverWait loop). */
+	public static final String WAIT_POLLING = "wait.polling";
+	/** Name of the WaitTool in-browser waits (WaitMode.DOM_OBSERVER). */
+	public static final String WAIT_OBSERVER = "wait.observer";
+
+	private static final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	private static volatile boolean enabled =
+			Boolean.getBoolean("wtbox.metrics") || System.getProperty("wtbox.metrics.file") != null;
+
+	static {
+		String file = System.getProperty("wtbox.metrics.file");
+		if (file != null) {
+			exportOnExit(file);
+		}
+	}
+
+
+	private CommandMetrics() {
+	}
+
+
+	/** Turn the metrics on (or off).  Drivers are only wrapped while it is on. */
+	public static void setEnabled(boolean on) {
+		enabled = on;
+	}
+
+	/** Returns true if the metrics are recorded. */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Record one WebDriver command.
+	 *
+	 * @param command	command name (e.g. "findElement", "timeouts.implicitlyWait")
+	 * @param nanos	how long the command took
+	 * @param failed	true if the command threw an exception
+	 */
+	public static void recordCommand(String command, long nanos, boolean failed) {
+		if (!enabled) {
+			return;
+		}
+		Entry entry = entryOf(command);
+		entry.latency.record(nanos);
+		if (failed) {
+			entry.errors.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Record one WaitTool wait.
+	 *
+	 * @param kind	WAIT_POLLING or WAIT_OBSERVER
+	 * @param elapsedMillis	how long the wait took
+	 * @param polls	number of condition checks (1 for an in-browser wait)
+	 * @param succeeded	false if the timeout was reached
+	 */
+	public static void recordWait(String kind, long elapsedMillis, int polls, boolean succeeded) {
+		if (!enabled) {
+			return;
+		}
+		Entry entry = entryOf(kind);
+		entry.latency.record(elapsedMillis * 1000000);
+		entry.polls.addAndGet(polls);
+		if (!succeeded) {
+			entry.errors.incrementAndGet();
+		}
+	}
+
+	/** Returns the histogram of a command (or wait), or null if it was never recorded. */
+	public static LatencyHistogram getHistogram(String command) {
+		Entry entry = entries.get(command);
+		return (entry == null) ? null : entry.latency;
+	}
+
+	/** Forget all the metrics, e.g. between two runs in the same JVM. */
+	public static void reset() {
+		entries.clear();
+	}
+
+
+	/**
+	 * Returns the metrics as JSON:
+	 * {"commands": [{"name": "findElement", "count": 12, "errors": 0, "polls": 0, "totalMs": ..., "meanMs": ...,
+	 *   "minMs": ..., "p50Ms": ..., "p90Ms": ..., "p99Ms": ..., "maxMs": ..., "buckets": [[upper bound in microseconds, count], ...]}, ...]}
+	 * "errors" is the number of failed commands (timeouts, for the waits).
+	 */
+	public static String toJson() {
+		StringBuilder json = new StringBuilder("{\"commands\": [");
+		String separator = "\n  ";
+		for (Map.Entry<String, Entry> e : sorted().entrySet()) {
+			LatencyHistogram h = e.getValue().latency;
+			json.append(separator).append("{\"name\": \"").append(escape(e.getKey())).append('"')
+				.append(", \"count\": ").append(h.getCount())
+				.append(", \"errors\": ").append(e.getValue().errors.get())
+				.append(", \"polls\": ").append(e.getValue().polls.get())
+				.append(", \"totalMs\": ").append(millis(h.getTotalMicros()))
+				.append(", \"meanMs\": ").append(millis(h.getMeanMicros()))
+				.append(", \"minMs\": ").append(millis(h.getMinMicros()))
+				.append(", \"p50Ms\": ").append(millis(h.getPercentileMicros(0.5)))
+				.append(", \"p90Ms\": ").append(millis(h.getPercentileMicros(0.9)))
+				.append(", \"p99Ms\": ").append(millis(h.getPercentileMicros(0.99)))
+				.append(", \"maxMs\": ").append(millis(h.getMaxMicros()))
+				.append(", \"buckets\": [");
+			long[][] buckets = h.getBuckets();
+			for (int i = 0; i < buckets.length; i++) {
+				json.append(i == 0 ? "" : ", ").append('[').append(buckets[i][0]).append(", ").append(buckets[i][1]).append(']');
+			}
+			json.append("]}");
+			separator = ",\n  ";
+		}
+		return json.append("\n]}\n").toString();
+	}
+
+	/**
+	 * Returns the metrics as CSV, one line per command (or wait):
+	 * name,count,errors,polls,total_ms,mean_ms,min_ms,p50_ms,p90_ms,p99_ms,max_ms
+	 */
+	public static String toCsv() {
+		StringBuilder csv = new StringBuilder("name,count,errors,polls,total_ms,mean_ms,min_ms,p50_ms,p90_ms,p99_ms,max_ms\n");
+		for (Map.Entry<String, Entry> e : sorted().entrySet()) {
+			LatencyHistogram h = e.getValue().latency;
+			csv.append(e.getKey()).append(',').append(h.getCount())
+				.append(',').append(e.getValue().errors.get())
+				.append(',').append(e.getValue().polls.get())
+				.append(',').append(millis(h.getTotalMicros()))
+				.append(',').append(millis(h.getMeanMicros()))
+				.append(',').append(millis(h.getMinMicros()))
+				.append(',').append(millis(h.getPercentileMicros(0.5)))
+				.append(',').append(millis(h.getPercentileMicros(0.9)))
+				.append(',').append(millis(h.getPercentileMicros(0.99)))
+				.append(',').append(millis(h.getMaxMicros()))
+				.append('\n');
+		}
+		return csv.toString();
+	}
+
+	/** Write toJson() to the file. */
+	public static void writeJson(File file) throws IOException {
+		write(file, toJson());
+	}
+
+	/** Write toCsv() to the file. */
+	public static void writeCsv(File file) throws IOException {
+		write(file, toCsv());
+	}
+
+	/**
+	 * Write the metrics to pathPrefix.json and pathPrefix.csv when the JVM exits (end of the run).
+	 *
+	 * @param pathPrefix	e.g. "target/metrics"
+	 */
+	public static void exportOnExit(final String pathPrefix) {
+		Runtime.getRuntime().addShutdownHook(new Thread("wtbox-metrics-export") {
+			@Override
+			public void run() {
+				try {
+					writeJson(new File(pathPrefix + ".json"));
+					writeCsv(new File(pathPrefix + ".csv"));
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+
+	private static Entry entryOf(String name) {
+		Entry entry = entries.get(name);
+		if (entry == null) {
+			Entry created = new Entry();
+			entry = entries.putIfAbsent(name, created);
+			if (entry == null) {
+				entry = created;
+			}
+		}
+		return entry;
+	}
+
+	private static Map<String, Entry> sorted() {
+		return new TreeMap<String, Entry>(entries);
+	}
+
+	private static String millis(long micros) {
+		return String.format(Locale.ROOT, "%.3f", micros / 1000.0);
+	}
+
+	private static String escape(String text) {
+		return text.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	private static void write(File file, String content) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		try (Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+			out.write(content);
+		}
+	}
+
+
+	/** Metrics of one command. */
+	private static final class Entry {
+		final LatencyHistogram latency = new LatencyHistogram();
+		final AtomicLong errors = new AtomicLong();
+		final AtomicLong polls = new AtomicLong();
+	}
+}
@@ -0,0 +1,219 @@
+package wtbox.util;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openqa.selenium.WebDriver;
+
+
+/**
+ * Per-driver state registry.  Remembers the timeouts we have set on each WebDriver,
+ * so WaitTool does not send a timeout command to the driver when the value is already set.
+ * (Each timeout command is one HTTP round-trip to a remote driver.)
+ *
+ * The registry only knows the values set through this class (WaitTool, TestBase),
+ * so set the implicit wait with WaitTool.setImplicitWait() rather than
+ * driver.manage().timeouts().implicitlyWait().
+ *
+ * Drivers are weak keys, so a driver which is no longer used is removed automatically.
+ * An InstrumentedDriver proxy shares the state of its driver.
+ *
+ * Copyright [2012] [Chon Chung]
+ *
+ * Licensed under the Apache Open Source License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+public final class DriverState {
+
+	/** The timeout value is unknown: it was never set through this class. */
+	public static final int UNKNOWN = -1;
+
+	/** Script timeout of a new driver session (restored when the previous one is UNKNOWN). */
+	public static final int DEFAULT_SCRIPT_TIMEOUT = 0;
+
+	private static final Map<WebDriver, DriverState> registry =
+			Collections.synchronizedMap(new WeakHashMap<WebDriver, DriverState>());
+
+	/** Current implicit wait in seconds, or UNKNOWN. */
+	private int implicitWait = UNKNOWN;
+	/** Current script timeout in seconds, or UNKNOWN. */
+	private int scriptTimeout = UNKNOWN;
+	/** Number of open implicit wait suspensions. */
+	private int suspensions = 0;
+	/** Implicit wait to reset when the last suspension is closed. */
+	private int suspendedImplicitWait = UNKNOWN;
+	/** Number of open script timeout extensions. */
+	private int extensions = 0;
+	/** Script timeout to restore when the last extension is closed. */
+	private int extendedScriptTimeout = UNKNOWN;
+
+
+	private DriverState() {
+	}
+
+	/** Returns the state of the driver (creates it if it is not in the registry). */
+	private static DriverState of(WebDriver driver) {
+		driver = InstrumentedDriver.unwrap(driver);
+		synchronized (registry) {
+			DriverState state = registry.get(driver);
+			if (state == null) {
+				state = new DriverState();
+				registry.put(driver, state);
+			}
+			return state;
+		}
+	}
+
+
+	/**
+	 * Set the driver implicitlyWait() time.
+	 * It does not send the command if the driver already has this wait time.
+	 *
+	 * @param driver	The driver object to be used
+	 * @param waitTime_InSeconds	the implicit wait time in seconds
+	 */
+	public static void setImplicitWait(WebDriver driver, int waitTime_InSeconds) {
+		DriverState state = of(driver);
+		synchronized (state) {
+			state.implicitlyWait(driver, waitTime_InSeconds);
+			if (state.suspensions > 0) {
+				state.suspendedImplicitWait = waitTime_InSeconds; //keep it when the suspension is closed
+			}
+		}
+	}
+
+	/** Sends implicitlyWait() if the driver does not have this wait time yet.  Call it holding the lock. */
+	private void implicitlyWait(WebDriver driver, int waitTime_InSeconds) {
+		if (implicitWait != waitTime_InSeconds) {
+			implicitWait = UNKNOWN; //if the command fails, we do not know the driver's value
+			driver.manage().timeouts().implicitlyWait(waitTime_InSeconds, TimeUnit.SECONDS);
+			implicitWait = waitTime_InSeconds;
+		}
+	}
+
+	/**
+	 * Nullify the implicit wait until resumeImplicitWait() is called.
+	 * Suspensions are counted, so nested suspensions (or several threads sharing the driver)
+	 * reset the implicit wait only when the last one is resumed.
+	 *
+	 * @param driver	The driver object to be used
+	 * @param defaultWait_InSeconds	the wait time to reset if the current one is UNKNOWN
+	 */
+	static void suspendImplicitWait(WebDriver driver, int defaultWait_InSeconds) {
+		DriverState state = of(driver);
+		synchronized (state) {
+			if (state.suspensions == 0) {
+				state.suspendedImplicitWait = (state.implicitWait == UNKNOWN) ? defaultWait_InSeconds : state.implicitWait;
+			}
+			state.suspensions++;
+			try {
+				state.implicitlyWait(driver, 0);
+			} catch (RuntimeException e) {
+				state.suspensions--;
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Close one suspendImplicitWait().  The last one resets the implicit wait before the suspension.
+	 */
+	static void resumeImplicitWait(WebDriver driver) {
+		DriverState state = of(driver);
+		synchronized (state) {
+			if (state.suspensions == 0) {
+				return;
+			}
+			state.suspensions--;
+			if (state.suspensions == 0) {
+				state.implicitlyWait(driver, state.suspendedImplicitWait);
+			}
+		}
+	}
+
+	/**
+	 * Returns the implicit wait time (in seconds) set on the driver, or UNKNOWN.
+	 */
+	public static int getImplicitWait(WebDriver driver) {
+		DriverState state = of(driver);
+		synchronized (state) {
+			return state.implicitWait;
+		}
+	}
+
+	/**
+	 * Record the driver's implicit wait time without sending a command.
+	 * e.g. a new driver session starts with 0 (no implicit wait).
+	 */
+	public static void assumeImplicitWait(WebDriver driver, int waitTime_InSeconds) {
+		DriverState state = of(driver);
+		synchronized (state) {
+			state.implicitWait = waitTime_InSeconds;
+			if (state.suspensions > 0) {
+				state.suspendedImplicitWait = waitTime_InSeconds;
+			}
+		}
+	}
+
+	/**
+	 * Make sure the driver's script timeout (for executeAsyncScript) is at least the given time,
+	 * until restoreScriptTimeout() is called.  It only sends the command when the current timeout
+	 * is shorter or unknown.  Extensions are counted, like the implicit wait suspensions.
+	 *
+	 * @param driver	The driver object to be used
+	 * @param timeOutInSeconds	the minimum script timeout in seconds
+	 */
+	static void extendScriptTimeout(WebDriver driver, int timeOutInSeconds) {
+		DriverState state = of(driver);
+		synchronized (state) {
+			if (state.extensions == 0) {
+				state.extendedScriptTimeout = state.scriptTimeout;
+			}
+			state.extensions++;
+			if (state.scriptTimeout < timeOutInSeconds) {
+				try {
+					state.setScriptTimeout(driver, timeOutInSeconds);
+				} catch (RuntimeException e) {
+					state.extensions--;
+					throw e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Close one extendScriptTimeout().  The last one restores the script timeout before the extension
+	 * (DEFAULT_SCRIPT_TIMEOUT, if it was unknown).
+	 */
+	static void restoreScriptTimeout(WebDriver driver) {
+		DriverState state = of(driver);
+		synchronized (state) {
+			if (state.extensions == 0) {
+				return;
+			}
+			state.extensions--;
+			int previous = (state.extendedScriptTimeout == UNKNOWN) ? DEFAULT_SCRIPT_TIMEOUT : state.extendedScriptTimeout;
+			if (state.extensions == 0 && state.scriptTimeout != previous) {
+				state.setScriptTimeout(driver, previous);
+			}
+		}
+	}
+
+	/** Sends setScriptTimeout().  Call it holding the lock. */
+	private void setScriptTimeout(WebDriver driver, int timeOutInSeconds) {
+		scriptTimeout = UNKNOWN; //if the command fails, we do not know the driver's value
+		driver.manage().timeouts().setScriptTimeout(timeOutInSeconds, TimeUnit.SECONDS);
+		scriptTimeout = timeOutInSeconds;
+	}
+
+	/**
+	 * Forget everything about the driver, e.g. after driver.quit(),
+	 * or after its timeouts were changed without this class.
+	 */
+	public static void forget(WebDriver driver) {
+		registry.remove(InstrumentedDriver.unwrap(driver));
+	}
+}
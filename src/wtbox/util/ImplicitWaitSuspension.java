@@ -0,0 +1,51 @@
+package wtbox.util;
+
+import org.openqa.selenium.WebDriver;
+
+
+/**
+ * A scoped implicit wait suspension.  The driver's implicitlyWait() is 0 
+ * until close() is called, and then the previous wait time is reset.  
+ * 
+ * Use it with try-with-resources, so the implicit wait is reset 
+ * even if the wait in between throws an exception (e.g. a TimeoutException): 
+ * <pre>
+ * try (ImplicitWaitSuspension suspension = WaitTool.suspendImplicitWait(driver)) {
+ *     new WebDriverWait(driver, 5).until(...); 
+ * }
+ * </pre>
+ * 
+ * The suspension state is kept per driver (DriverState), so it is safe 
+ * when many threads each own a driver. 
+ * 
+ * Copyright [2012] [Chon Chung]
+ * 
+ * Licensed under the Apache Open Source License, Version 2.0  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ */
+public final class ImplicitWaitSuspension implements AutoCloseable {
+
+	private final WebDriver driver; 
+	private boolean closed = false; 
+	
+	/**
+	 * Nullify the driver's implicitlyWait().  Use WaitTool.suspendImplicitWait(). 
+	 * 
+	 * @param driver	The driver object to be used 
+	 * @param defaultWait_InSeconds		wait time to reset if the current one is unknown 
+	 */
+	ImplicitWaitSuspension(WebDriver driver, int defaultWait_InSeconds) {
+		DriverState.suspendImplicitWait(driver, defaultWait_InSeconds); 
+		this.driver = driver; 
+	}
+	
+	/** Reset the implicit wait time before this suspension.  Closing it twice does nothing. */ 
+	@Override
+	public void close() {
+		if (!closed) {
+			closed = true; 
+			DriverState.resumeImplicitWait(driver); 
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package wtbox.util;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+
+/**
+ * Instrumented WebDriver.  wrap() returns a proxy of the driver which times every command
+ * (findElement, click, sendKeys, executeScript, timeouts.implicitlyWait, ...)
+ * and records it in CommandMetrics, and as a span of the Tracer timeline.
+ *
+ * The proxy implements all the driver's interfaces (JavascriptExecutor, TakesScreenshot, ...),
+ * and the elements, options, timeouts, navigation, and target locator it returns are instrumented too.
+ * Proxies passed back to the driver (e.g. an element as an executeScript() argument) are unwrapped.
+ *
+ * wrap() is idempotent: wrapping a proxy returns it as it is,
+ * and wrapping the same driver twice returns the same proxy.
+ *
+ * Copyright [2012] [Chon Chung]
+ *
+ * Licensed under the Apache Open Source License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+public final class InstrumentedDriver implements InvocationHandler {
+
+	/** raw driver -> its proxy.  The proxy holds the driver, so the proxy is only weakly referenced. */
+	private static final Map<WebDriver, WeakReference<WebDriver>> proxies =
+			Collections.synchronizedMap(new WeakHashMap<WebDriver, WeakReference<WebDriver>>());
+
+	private final Object target;
+	/** Command name prefix, e.g. "timeouts." ("" for the driver and the elements). */
+	private final String prefix;
+
+
+	private InstrumentedDriver(Object target, String prefix) {
+		this.target = target;
+		this.prefix = prefix;
+	}
+
+
+	/**
+	 * Returns the instrumented proxy of the driver.
+	 *
+	 * @param driver	The driver object to be used (a proxy is returned as it is)
+	 * @return the proxy, which records each command in CommandMetrics
+	 */
+	public static WebDriver wrap(WebDriver driver) {
+		if (driver == null || isInstrumented(driver)) {
+			return driver;
+		}
+		synchronized (proxies) {
+			WeakReference<WebDriver> reference = proxies.get(driver);
+			WebDriver proxy = (reference == null) ? null : reference.get();
+			if (proxy == null) {
+				proxy = (WebDriver) proxyOf(driver, interfacesOf(driver.getClass()), "");
+				proxies.put(driver, new WeakReference<WebDriver>(proxy));
+			}
+			return proxy;
+		}
+	}
+
+	/**
+	 * Returns the raw driver of an instrumented proxy, or the driver itself if it is not a proxy.
+	 */
+	public static WebDriver unwrap(WebDriver driver) {
+		return (WebDriver) unwrapObject(driver);
+	}
+
+	/** Returns true if the object is a proxy made by this class. */
+	public static boolean isInstrumented(Object object) {
+		return object != null && Proxy.isProxyClass(object.getClass())
+				&& Proxy.getInvocationHandler(object) instanceof InstrumentedDriver;
+	}
+
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		if (method.getDeclaringClass() == Object.class) {
+			if (method.getName().equals("equals")) {
+				return proxy == args[0] || target.equals(unwrapObject(args[0]));
+			}
+			return method.invoke(target, args); //hashCode(), toString()
+		}
+		Object[] rawArgs = unwrapArguments(args);
+		boolean failed = true;
+		long start = System.nanoTime();
+		try {
+			Object result = method.invoke(target, rawArgs);
+			failed = false;
+			return wrapResult(result, method.getReturnType());
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		} finally {
+			long end = System.nanoTime();
+			String command = prefix.isEmpty() ? method.getName() : prefix + method.getName();
+			CommandMetrics.recordCommand(command, end - start, failed);
+			Tracer.record(Tracer.DRIVER, command, start, end);
+		}
+	}
+
+
+	/** Instruments what a command returns: a driver, elements, or a WebDriver interface (Options, Timeouts, ...). */
+	private static Object wrapResult(Object result, Class<?> returnType) {
+		if (result == null || isInstrumented(result)) {
+			return result;
+		}
+		if (result instanceof WebDriver) {
+			return wrap((WebDriver) result);
+		}
+		if (result instanceof WebElement) {
+			return proxyOf(result, interfacesOf(result.getClass()), "");
+		}
+		if (result instanceof List) {
+			List<?> list = (List<?>) result;
+			List<Object> wrapped = new ArrayList<Object>(list.size());
+			for (Object item : list) {
+				wrapped.add(wrapResult(item, Object.class));
+			}
+			return wrapped;
+		}
+		if (returnType.isInterface() && returnType.getPackage() != null
+				&& returnType.getPackage().getName().equals("org.openqa.selenium")) {
+			String name = returnType.getSimpleName();
+			return proxyOf(result, new Class<?>[] {returnType}, Character.toLowerCase(name.charAt(0)) + name.substring(1) + ".");
+		}
+		return result;
+	}
+
+	/** Replaces the proxies in the arguments (also in arrays and lists, e.g. executeScript() arguments) by their target. */
+	private static Object[] unwrapArguments(Object[] args) {
+		if (args == null) {
+			return null;
+		}
+		Object[] raw = new Object[args.length];
+		for (int i = 0; i < args.length; i++) {
+			raw[i] = unwrapArgument(args[i]);
+		}
+		return raw;
+	}
+
+	private static Object unwrapArgument(Object arg) {
+		if (arg instanceof Object[] && arg.getClass() == Object[].class) {
+			return unwrapArguments((Object[]) arg);
+		}
+		if (arg instanceof List) {
+			List<Object> raw = new ArrayList<Object>();
+			for (Object item : (List<?>) arg) {
+				raw.add(unwrapArgument(item));
+			}
+			return raw;
+		}
+		return unwrapObject(arg);
+	}
+
+	private static Object unwrapObject(Object object) {
+		if (isInstrumented(object)) {
+			return ((InstrumentedDriver) Proxy.getInvocationHandler(object)).target;
+		}
+		return object;
+	}
+
+	private static Object proxyOf(Object target, Class<?>[] interfaces, String prefix) {
+		return Proxy.newProxyInstance(InstrumentedDriver.class.getClassLoader(), interfaces,
+				new InstrumentedDriver(target, prefix));
+	}
+
+	/** Returns the public interfaces implemented by the class and its super classes. */
+	private static Class<?>[] interfacesOf(Class<?> type) {
+		Set<Class<?>> interfaces = new LinkedHashSet<Class<?>>();
+		for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+			for (Class<?> i : c.getInterfaces()) {
+				if (Modifier.isPublic(i.getModifiers())) {
+					interfaces.add(i);
+				}
+			}
+		}
+		return interfaces.toArray(new Class<?>[interfaces.size()]);
+	}
+}
@@ -0,0 +1,440 @@
+package wtbox.util;
+
+import org.openqa.selenium.By;
+
+
+/**
+ * JavaScript tool class.  Holds the JavaScript snippets that WaitTool and PageBase
+ * inject into the browser, so a condition can be checked inside the page
+ * instead of polling the driver over the wire.
+ *
+ * A By locator can not be sent to the browser as it is,
+ * so locatorOf() translates it into a (kind, value) pair that the
+ * FIND_ALL script understands.
+ *
+ * Copyright [2012] [Chon Chung]
+ *
+ * Licensed under the Apache Open Source License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+public final class JavaScriptTool {
+
+	/** Condition: the element is in the DOM, regardless of being displayed or not. */
+	public static final String PRESENT = "present";
+	/** Condition: the element is in the DOM, and displayed. */
+	public static final String VISIBLE = "visible";
+	/** Condition: the element contains the given text. */
+	public static final String TEXT = "text";
+	/** Condition: no element is in the DOM. */
+	public static final String ABSENT = "absent";
+	/** Condition: no element is displayed (absent, or hidden). */
+	public static final String INVISIBLE = "invisible";
+
+	/**
+	 * wtboxFindAll(kind, value, root): returns an Array of the elements matching the locator.
+	 * root is optional (default: document). */
+	public static final String FIND_ALL =
+		"function wtboxFindAll(kind, value, root) {" +
+		"  root = root || document;" +
+		"  var found = [], list, i;" +
+		"  if (kind == 'id') {" +
+		"    var e = document.getElementById(value);" +
+		"    return (e && (root == document || root.contains(e))) ? [e] : [];" +
+		"  } else if (kind == 'css') {" +
+		"    list = root.querySelectorAll(value);" +
+		"  } else if (kind == 'name') {" +
+		"    list = root.getElementsByName ? root.getElementsByName(value)" +
+		"         : root.querySelectorAll('[name=\"' + value.replace(/\"/g, '\\\\\"') + '\"]');" +
+		"  } else if (kind == 'className') {" +
+		"    list = root.getElementsByClassName ? root.getElementsByClassName(value) : root.querySelectorAll('.' + value);" +
+		"  } else if (kind == 'tagName') {" +
+		"    list = root.getElementsByTagName(value);" +
+		"  } else if (kind == 'xpath') {" +
+		"    var snapshot = document.evaluate(value, root, null, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null);" +
+		"    for (i = 0; i < snapshot.snapshotLength; i++) { found.push(snapshot.snapshotItem(i)); }" +
+		"    return found;" +
+		"  } else if (kind == 'linkText' || kind == 'partialLinkText') {" +
+		"    var links = root.getElementsByTagName('a');" +
+		"    for (i = 0; i < links.length; i++) {" +
+		"      var text = (links[i].innerText || links[i].textContent || '').replace(/^\\s+|\\s+$/g, '');" +
+		"      if (kind == 'linkText' ? text == value : text.indexOf(value) >= 0) { found.push(links[i]); }" +
+		"    }" +
+		"    return found;" +
+		"  }" +
+		"  for (i = 0; list && i < list.length; i++) { found.push(list[i]); }" +
+		"  return found;" +
+		"}";
+
+	/**
+	 * wtboxIsVisible(element): true if the element takes space on the page and is not hidden.
+	 * It is close to (not exactly the same as) WebElement.isDisplayed(). */
+	public static final String IS_VISIBLE =
+		"function wtboxIsVisible(e) {" +
+		"  if (!e.offsetWidth && !e.offsetHeight && !(e.getClientRects && e.getClientRects().length)) { return false; }" +
+		"  var style = window.getComputedStyle ? window.getComputedStyle(e, null) : e.currentStyle;" +
+		"  return !style || (style.visibility != 'hidden' && style.display != 'none');" +
+		"}";
+
+	/**
+	 * wtboxMatch(kind, value, condition, text): returns the first element matching
+	 * the locator and the condition (PRESENT, VISIBLE, or TEXT), or null. */
+	public static final String MATCH =
+		FIND_ALL + IS_VISIBLE +
+		"function wtboxMatch(kind, value, condition, text) {" +
+		"  var list = wtboxFindAll(kind, value);" +
+		"  for (var i = 0; i < list.length; i++) {" +
+		"    var e = list[i];" +
+		"    if (condition == 'present') { return e; }" +
+		"    if (condition == 'visible' && wtboxIsVisible(e)) { return e; }" +
+		"    if (condition == 'text' && (e.innerText || e.textContent || '').indexOf(text) >= 0) { return e; }" +
+		"  }" +
+		"  return null;" +
+		"}";
+
+	/**
+	 * wtboxMatchAll(kinds, values, condition): returns an Array with the first element
+	 * matching each locator and the condition (PRESENT or VISIBLE), or null for each missing one. */
+	public static final String MATCH_ALL =
+		MATCH +
+		"function wtboxMatchAll(kinds, values, condition) {" +
+		"  var result = [];" +
+		"  for (var i = 0; i < kinds.length; i++) { result.push(wtboxMatch(kinds[i], values[i], condition, '')); }" +
+		"  return result;" +
+		"}";
+
+	/**
+	 * wtboxObserve(check, timeout, done): waits with a MutationObserver until check() returns a value.
+	 * It checks right away, and then again on every DOM change,
+	 * and calls done() with the value, or with null if the timeout (milliseconds) is reached.
+	 *
+	 * CSS changes (e.g. a stylesheet is loaded) are not DOM mutations,
+	 * so it also re-checks on a cheap in-browser timer.  */
+	public static final String OBSERVE =
+		"function wtboxObserve(check, timeout, done) {" +
+		"  var found = check();" +
+		"  if (found) { done(found); return; }" +
+		"  var finished = false, observer = null, ticker, timer;" +
+		"  function finish(result) {" +
+		"    if (finished) { return; }" +
+		"    finished = true;" +
+		"    if (observer) { observer.disconnect(); }" +
+		"    clearInterval(ticker); clearTimeout(timer);" +
+		"    done(result);" +
+		"  }" +
+		"  function recheck() { var result = check(); if (result) { finish(result); } }" +
+		"  var Observer = window.MutationObserver || window.WebKitMutationObserver;" +
+		"  if (Observer) {" +
+		"    observer = new Observer(recheck);" +
+		"    observer.observe(document, {childList: true, subtree: true, attributes: true, characterData: true});" +
+		"  }" +
+		"  ticker = setInterval(recheck, observer ? 250 : 50);" +
+		"  timer = setTimeout(function() { finish(null); }, timeout);" +
+		"}";
+
+	/**
+	 * Async script (for executeAsyncScript): waits for an element with a MutationObserver,
+	 * and calls back with the element (or true for ABSENT and INVISIBLE), or null if the timeout is reached.
+	 *
+	 * arguments: kind, value, condition, text, timeout in milliseconds, callback.  */
+	public static final String OBSERVE_ELEMENT =
+		MATCH + OBSERVE +
+		"var args = arguments, condition = args[2];" +
+		"var gone = (condition == 'absent' || condition == 'invisible');" +
+		"if (gone) { condition = (condition == 'absent') ? 'present' : 'visible'; }" +
+		"wtboxObserve(function() {" +
+		"  var e = wtboxMatch(args[0], args[1], condition, args[3]);" +
+		"  return gone ? (e ? null : true) : e;" +
+		"}, args[4], args[args.length - 1]);";
+
+	/**
+	 * Script (for executeScript): returns true if an element matches the locator
+	 * and the condition (PRESENT or VISIBLE).  It does not wait.
+	 *
+	 * arguments: kind, value, condition.  */
+	public static final String IS_MATCHED =
+		MATCH +
+		"return wtboxMatch(arguments[0], arguments[1], arguments[2], '') != null;";
+
+	/**
+	 * Script (for executeScript): returns wtboxMatchAll() of the locators, in one call.
+	 *
+	 * arguments: kinds, values, condition.  */
+	public static final String FIND_EACH =
+		MATCH_ALL +
+		"return wtboxMatchAll(arguments[0], arguments[1], arguments[2]);";
+
+	/**
+	 * Async script (for executeAsyncScript): waits with a MutationObserver until all (or any)
+	 * of the locators match, and calls back with the wtboxMatchAll() Array,
+	 * or null if the timeout is reached.
+	 *
+	 * arguments: kinds, values, condition, all (true) or any (false), timeout in milliseconds, callback.  */
+	public static final String OBSERVE_EACH =
+		MATCH_ALL + OBSERVE +
+		"var args = arguments;" +
+		"wtboxObserve(function() {" +
+		"  var result = wtboxMatchAll(args[0], args[1], args[2]), count = 0;" +
+		"  for (var i = 0; i < result.length; i++) { if (result[i]) { count++; } }" +
+		"  return (args[3] ? count == result.length : count > 0) ? result : null;" +
+		"}, args[4], args[args.length - 1]);";
+
+	/**
+	 * wtboxCountText(kind, value, text, visibleOnly): counts the occurrences of the text in the page
+	 * (or in the elements of the locator, if kind is not empty), in the browser.
+	 * Whitespace is collapsed, as in the rendered page.  visibleOnly skips the hidden elements,
+	 * the scripts and the styles; else it searches textContent. */
+	public static final String COUNT_TEXT_FUNCTION =
+		FIND_ALL +
+		"function wtboxVisibleText(node, parts) {" +
+		"  if (node.nodeType == 3) { parts.push(node.data); return; }" +
+		"  if (node.nodeType != 1) { return; }" +
+		"  var tag = node.tagName.toUpperCase();" +
+		"  if (tag == 'SCRIPT' || tag == 'STYLE' || tag == 'NOSCRIPT') { return; }" +
+		"  var style = window.getComputedStyle ? window.getComputedStyle(node, null) : node.currentStyle;" +
+		"  if (style && (style.display == 'none' || style.visibility == 'hidden')) { return; }" +
+		"  for (var i = 0; i < node.childNodes.length; i++) { wtboxVisibleText(node.childNodes[i], parts); parts.push(' '); }" +
+		"}" +
+		"function wtboxCountText(kind, value, text, visibleOnly) {" +
+		"  var roots = kind ? wtboxFindAll(kind, value) : [document.body || document.documentElement];" +
+		"  var wanted = text.replace(/\\s+/g, ' '), count = 0;" +
+		"  if (!wanted) { return 0; }" +
+		"  for (var r = 0; r < roots.length; r++) {" +
+		"    var all;" +
+		"    if (visibleOnly) { var parts = []; wtboxVisibleText(roots[r], parts); all = parts.join(''); }" +
+		"    else { all = roots[r].textContent || roots[r].innerText || ''; }" +
+		"    all = all.replace(/\\s+/g, ' ');" +
+		"    for (var i = all.indexOf(wanted); i >= 0; i = all.indexOf(wanted, i + wanted.length)) { count++; }" +
+		"  }" +
+		"  return count;" +
+		"}";
+
+	/**
+	 * Script (for executeScript): returns wtboxCountText(), so only a number comes back
+	 * instead of the page source.
+	 *
+	 * arguments: kind (or "" for the whole page), value, text, visibleOnly.  */
+	public static final String COUNT_TEXT =
+		COUNT_TEXT_FUNCTION +
+		"return wtboxCountText(arguments[0], arguments[1], arguments[2], arguments[3]);";
+
+	/**
+	 * Async script (for executeAsyncScript): waits with a MutationObserver until the text is found,
+	 * and calls back with its count, or null if the timeout is reached.
+	 *
+	 * arguments: kind (or "" for the whole page), value, text, visibleOnly, timeout in milliseconds, callback.  */
+	public static final String OBSERVE_TEXT =
+		COUNT_TEXT_FUNCTION + OBSERVE +
+		"var args = arguments;" +
+		"wtboxObserve(function() {" +
+		"  var count = wtboxCountText(args[0], args[1], args[2], args[3]);" +
+		"  return count > 0 ? count : null;" +
+		"}, args[4], args[args.length - 1]);";
+
+	/**
+	 * Script (for executeScript): sets the value of each form field, and fires its input and change events,
+	 * in one call.  A checkbox or radio button is checked if its text is "true" (or "on").
+	 * It stops at the first missing field.
+	 *
+	 * arguments: kinds, values, texts.
+	 * returns: the index of the first missing field, or -1 if all the fields are filled.  */
+	public static final String FILL_FORM =
+		MATCH +
+		"function wtboxFire(e, type) {" +
+		"  var event;" +
+		"  if (typeof Event == 'function') { event = new Event(type, {bubbles: true}); }" +
+		"  else { event = document.createEvent('HTMLEvents'); event.initEvent(type, true, false); }" +
+		"  e.dispatchEvent(event);" +
+		"}" +
+		"var kinds = arguments[0], values = arguments[1], texts = arguments[2];" +
+		"for (var i = 0; i < kinds.length; i++) {" +
+		"  var e = wtboxMatch(kinds[i], values[i], 'present', '');" +
+		"  if (!e) { return i; }" +
+		"  if (e.type == 'checkbox' || e.type == 'radio') { e.checked = (texts[i] == 'true' || texts[i] == 'on'); }" +
+		"  else { e.value = texts[i]; }" +
+		"  wtboxFire(e, 'input'); wtboxFire(e, 'change');" +
+		"}" +
+		"return -1;";
+
+	/**
+	 * wtboxNetworkHook(): installs (once per page) a hook over XMLHttpRequest.send and fetch,
+	 * which counts the requests in flight.  Returns the counter: {active: requests in flight,
+	 * idleSince: time (ms) the last request ended, or the hook was installed}.
+	 * Requests started before the hook is installed are not counted.
+	 *
+	 * wtboxNetworkIdle(quiet): true if no request has been in flight for quiet milliseconds. */
+	public static final String NETWORK_HOOK =
+		"function wtboxNetworkHook() {" +
+		"  if (window.wtboxNetwork) { return window.wtboxNetwork; }" +
+		"  var net = window.wtboxNetwork = {active: 0, idleSince: new Date().getTime()};" +
+		"  function started() { net.active++; }" +
+		"  function ended() { net.active = Math.max(0, net.active - 1); if (net.active == 0) { net.idleSince = new Date().getTime(); } }" +
+		"  var XHR = window.XMLHttpRequest;" +
+		"  if (XHR && XHR.prototype && XHR.prototype.send) {" +
+		"    var send = XHR.prototype.send;" +
+		"    XHR.prototype.send = function() {" +
+		"      var xhr = this, done = false;" +
+		"      function end() { if (!done && xhr.readyState == 4) { done = true; ended(); } }" +
+		"      if (xhr.addEventListener) {" +
+		"        xhr.addEventListener('readystatechange', end, false);" +
+		"        xhr.addEventListener('loadend', end, false);" +
+		"      } else {" +
+		"        var handler = xhr.onreadystatechange;" + //older XMLHttpRequest: wrap the page's handler
+		"        xhr.onreadystatechange = function() { end(); if (handler) { return handler.apply(this, arguments); } };" +
+		"      }" +
+		"      started();" +
+		"      try { return send.apply(xhr, arguments); }" +
+		"      catch (e) { if (!done) { done = true; ended(); } throw e; }" +
+		"    };" +
+		"  }" +
+		"  if (window.fetch) {" +
+		"    var fetch = window.fetch;" +
+		"    window.fetch = function() {" +
+		"      started();" +
+		"      try { return fetch.apply(this, arguments).then(function(r) { ended(); return r; }, function(e) { ended(); throw e; }); }" +
+		"      catch (e) { ended(); throw e; }" +
+		"    };" +
+		"  }" +
+		"  return net;" +
+		"}" +
+		"function wtboxNetworkIdle(quiet) {" +
+		"  var net = wtboxNetworkHook();" +
+		"  return net.active == 0 && new Date().getTime() - net.idleSince >= quiet;" +
+		"}";
+
+	/**
+	 * Script (for executeScript): installs the network hook, and returns wtboxNetworkIdle().  It does not wait.
+	 *
+	 * arguments: quiet period in milliseconds.  */
+	public static final String IS_NETWORK_IDLE =
+		NETWORK_HOOK +
+		"return wtboxNetworkIdle(arguments[0]);";
+
+	/**
+	 * Async script (for executeAsyncScript): waits in the browser until no XMLHttpRequest or fetch
+	 * request has been in flight for the quiet period, and calls back with true,
+	 * or null if the timeout is reached.
+	 *
+	 * arguments: quiet period in milliseconds, timeout in milliseconds, callback.  */
+	public static final String OBSERVE_NETWORK_IDLE =
+		NETWORK_HOOK +
+		"var quiet = arguments[0], timeout = arguments[1], done = arguments[arguments.length - 1];" +
+		"var start = new Date().getTime();" +
+		"(function check() {" +
+		"  if (wtboxNetworkIdle(quiet)) { done(true); return; }" +
+		"  if (new Date().getTime() - start >= timeout) { done(null); return; }" +
+		"  setTimeout(check, 50);" +
+		"})();";
+
+	/**
+	 * wtboxPageLoaded(quiet): true if the document is loaded (readyState "complete"),
+	 * the page's own readiness function wtboxPageReady() (if it is declared) returns true,
+	 * and the network is idle for quiet milliseconds. */
+	public static final String PAGE_LOADED =
+		NETWORK_HOOK +
+		"function wtboxPageLoaded(quiet) {" +
+		"  if (document.readyState != 'complete') { return false; }" +
+		"  if (typeof wtboxPageReady == 'function') {" +
+		"    try { if (!wtboxPageReady()) { return false; } } catch (e) { return false; }" +
+		"  }" +
+		"  return wtboxNetworkIdle(quiet);" +
+		"}";
+
+	/**
+	 * Script (for executeScript): returns wtboxPageLoaded().  It does not wait.
+	 * Prefix it with pageReadyFunction() to add the page's readiness check.
+	 *
+	 * arguments: network quiet period in milliseconds.  */
+	public static final String IS_PAGE_LOADED =
+		PAGE_LOADED +
+		"return wtboxPageLoaded(arguments[0]);";
+
+	/**
+	 * Async script (for executeAsyncScript): waits in the browser until wtboxPageLoaded() is true,
+	 * and calls back with true, or null if the timeout is reached.
+	 * Prefix it with pageReadyFunction() to add the page's readiness check.
+	 *
+	 * arguments: network quiet period in milliseconds, timeout in milliseconds, callback.  */
+	public static final String OBSERVE_PAGE_LOADED =
+		PAGE_LOADED +
+		"var quiet = arguments[0], timeout = arguments[1], done = arguments[arguments.length - 1];" +
+		"var start = new Date().getTime();" +
+		"(function check() {" +
+		"  if (wtboxPageLoaded(quiet)) { done(true); return; }" +
+		"  if (new Date().getTime() - start >= timeout) { done(null); return; }" +
+		"  setTimeout(check, 50);" +
+		"})();";
+
+	/**
+	 * Async script (for executeAsyncScript): returns the version of the current page's resource on the server,
+	 * without reloading the page.  It asks the server for the page's URL in the background:
+	 * a HEAD request (no body) for its ETag or Last-Modified header, else a GET request for a hash of its content.
+	 * Calls back with "etag:...", "modified:...", "hash:...", or null if the server can not be asked
+	 * (e.g. about:blank, or a file).
+	 *
+	 * arguments: callback.  */
+	public static final String RESOURCE_VERSION =
+		"var done = arguments[arguments.length - 1];" +
+		"function wtboxHash(s) {" +
+		"  var h = 5381;" +
+		"  for (var i = 0; i < s.length; i++) { h = ((h << 5) + h + s.charCodeAt(i)) | 0; }" +
+		"  return 'hash:' + h + ':' + s.length;" +
+		"}" +
+		"function wtboxAsk(method, callback) {" +
+		"  var x = new XMLHttpRequest();" +
+		"  x.open(method, location.href.replace(/#.*$/, ''), true);" +
+		"  x.setRequestHeader('Cache-Control', 'no-cache');" +
+		"  x.onreadystatechange = function() { if (x.readyState == 4) { callback(x); } };" +
+		"  x.send(null);" +
+		"}" +
+		"try {" +
+		"  wtboxAsk('HEAD', function(head) {" +
+		"    var etag = head.getResponseHeader('ETag'), modified = head.getResponseHeader('Last-Modified');" +
+		"    if (head.status == 200 && etag) { done('etag:' + etag); return; }" +
+		"    if (head.status == 200 && modified) { done('modified:' + modified); return; }" +
+		"    wtboxAsk('GET', function(get) { done(get.status == 200 ? wtboxHash(get.responseText || '') : null); });" +
+		"  });" +
+		"} catch (e) { done(null); }";
+
+
+	private JavaScriptTool() {
+	}
+
+
+	/**
+	 * Declares the page's readiness function wtboxPageReady() for the PAGE_LOADED scripts.
+	 *
+	 * @param readinessScript	function body returning true when the page is ready,
+	 *        e.g. "return document.getElementById('menu') != null;"  (null: no readiness check)
+	 * @return the function declaration, or "" if readinessScript is null
+	 */
+	public static String pageReadyFunction(String readinessScript) {
+		return (readinessScript == null) ? "" : "function wtboxPageReady() {" + readinessScript + "\n}";
+	}
+
+
+	/**
+	 * Translates a By locator into a (kind, value) pair for the FIND_ALL script.
+	 *
+	 * @param by	selector to translate
+	 * @return String[] {kind, value}, or null if the locator type is not supported
+	 *         (e.g. ByChained, or a custom By).  Callers should then use the driver instead.
+	 */
+	public static String[] locatorOf(By by) {
+		String locator = by.toString(); // e.g. "By.id: email"
+		int colon = locator.indexOf(": ");
+		if (!locator.startsWith("By.") || colon < 0) {
+			return null;
+		}
+		String type = locator.substring(3, colon);
+		String value = locator.substring(colon + 2);
+		if (type.equals("selector")) {
+			return new String[] {"css", value};
+		}
+		if (type.equals("id") || type.equals("name") || type.equals("className") || type.equals("tagName")
+				|| type.equals("xpath") || type.equals("linkText") || type.equals("partialLinkText")) {
+			return new String[] {type, value};
+		}
+		return null;
+	}
+}
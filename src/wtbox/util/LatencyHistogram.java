@@ -0,0 +1,136 @@
+package wtbox.util;
+
+import java.util.Arrays;
+
+
+/**
+ * Latency histogram.  Counts the recorded times in logarithmic buckets
+ * (4 buckets for each power of 2 microseconds, so a percentile is within 25% of the real value),
+ * and keeps the exact count, total, minimum and maximum.
+ *
+ * Recording does not allocate, so it can be used for every WebDriver command.
+ *
+ * Copyright [2012] [Chon Chung]
+ *
+ * Licensed under the Apache Open Source License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+public final class LatencyHistogram {
+
+	/** Buckets for each power of 2. */
+	private static final int SUB_BUCKETS = 4;
+	private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+	private final long[] counts = new long[BUCKETS];
+	private long count;
+	private long totalMicros;
+	private long minMicros = Long.MAX_VALUE;
+	private long maxMicros;
+
+
+	/** Record a time in nanoseconds. */
+	public synchronized void record(long nanos) {
+		long micros = Math.max(0, nanos / 1000);
+		counts[bucketOf(micros)]++;
+		count++;
+		totalMicros += micros;
+		minMicros = Math.min(minMicros, micros);
+		maxMicros = Math.max(maxMicros, micros);
+	}
+
+	/** Returns the number of recorded times. */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/** Returns the sum of the recorded times, in microseconds. */
+	public synchronized long getTotalMicros() {
+		return totalMicros;
+	}
+
+	/** Returns the shortest recorded time in microseconds (0 if nothing is recorded). */
+	public synchronized long getMinMicros() {
+		return (count == 0) ? 0 : minMicros;
+	}
+
+	/** Returns the longest recorded time in microseconds. */
+	public synchronized long getMaxMicros() {
+		return maxMicros;
+	}
+
+	/** Returns the average time in microseconds. */
+	public synchronized long getMeanMicros() {
+		return (count == 0) ? 0 : totalMicros / count;
+	}
+
+	/**
+	 * Returns the time (in microseconds) under which the given fraction of the recorded times are.
+	 * e.g. getPercentileMicros(0.99) is the 99th percentile.
+	 *
+	 * @param fraction	between 0 and 1
+	 * @return the upper bound of the bucket holding the percentile (at most the maximum)
+	 */
+	public synchronized long getPercentileMicros(double fraction) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(fraction * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.max(minMicros, Math.min(upperBoundOf(i), maxMicros));
+			}
+		}
+		return maxMicros;
+	}
+
+	/**
+	 * Returns the non-empty buckets as {upper bound in microseconds, count} pairs, in order.
+	 */
+	public synchronized long[][] getBuckets() {
+		int used = 0;
+		for (long c : counts) {
+			if (c > 0) used++;
+		}
+		long[][] buckets = new long[used][];
+		int j = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			if (counts[i] > 0) {
+				buckets[j++] = new long[] {upperBoundOf(i), counts[i]};
+			}
+		}
+		return buckets;
+	}
+
+	/** Forget all the recorded times. */
+	public synchronized void reset() {
+		Arrays.fill(counts, 0);
+		count = 0;
+		totalMicros = 0;
+		minMicros = Long.MAX_VALUE;
+		maxMicros = 0;
+	}
+
+
+	/** Bucket index of a time: exact under SUB_BUCKETS, then SUB_BUCKETS buckets per power of 2. */
+	private static int bucketOf(long micros) {
+		if (micros < SUB_BUCKETS) {
+			return (int) micros;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(micros); // >= 2
+		int sub = (int) ((micros >> (exponent - 2)) & (SUB_BUCKETS - 1));
+		return (exponent - 1) * SUB_BUCKETS + sub;
+	}
+
+	/** The smallest time (exclusive) above the bucket. */
+	private static long upperBoundOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket + 1;
+		}
+		int exponent = bucket / SUB_BUCKETS + 1;
+		int sub = bucket % SUB_BUCKETS;
+		return (long) (SUB_BUCKETS + sub + 1) << (exponent - 2);
+	}
+}
@@ -0,0 +1,446 @@
+package wtbox.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.htmlunit.HtmlUnitDriver;
+
+
+/**
+ * Locator performance analyzer.  Scans the page objects and tests for By locators
+ * (By.id("..."), By.xpath("..."), &#64;FindBy(css = "..."), ...), runs each one against a page snapshot
+ * (a local HTML file, so no network is needed), and measures its lookup time.
+ *
+ * The report lists the locators slowest first, with:
+ *  - the fragile ones: no match, several matches, absolute or positional XPath, deep paths, text based,
+ *  - a faster CSS selector for an XPath, when the CSS selector finds the same elements
+ *    (or "not verified", when the snapshot browser can not run the CSS selector).
+ *
+ * Usage:  java wtbox.util.LocatorAnalyzer src/test  fixtures/page.html  [repeats]
+ *
+ * Copyright [2012] [Chon Chung]
+ *
+ * Licensed under the Apache Open Source License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+public final class LocatorAnalyzer {
+
+	/** Default number of timed lookups of each locator. */
+	public static final int DEFAULT_REPEATS = 50;
+	/** Untimed lookups before the timed ones (JIT and browser caches). */
+	private static final int WARM_UP = 5;
+	/** A path with more steps than this is fragile: any layout change breaks it. */
+	private static final int MAX_STEPS = 4;
+
+	/** By.xxx("value") */
+	private static final Pattern BY_CALL = Pattern.compile(
+			"By\\.(id|name|className|cssSelector|tagName|linkText|partialLinkText|xpath)\\(\\s*(\"(?:[^\"\\\\]|\\\\.)*\"|[A-Za-z_$][\\w$]*)\\s*\\)");
+	/** &#64;FindBy(xxx = "value") */
+	private static final Pattern FIND_BY = Pattern.compile(
+			"@FindBy\\(\\s*(id|name|className|css|tagName|linkText|partialLinkText|xpath)\\s*=\\s*(\"(?:[^\"\\\\]|\\\\.)*\"|[A-Za-z_$][\\w$]*)\\s*\\)");
+	/** String NAME = "value";  (a constant used as a locator) */
+	private static final Pattern CONSTANT = Pattern.compile(
+			"String\\s+([A-Za-z_$][\\w$]*)\\s*=\\s*(\"(?:[^\"\\\\]|\\\\.)*\")\\s*;");
+
+
+	private LocatorAnalyzer() {
+	}
+
+
+	/** A locator found in the source. */
+	public static final class Locator {
+		/** Locator type, as in By.xxx(): id, name, className, cssSelector, tagName, linkText, partialLinkText, xpath. */
+		public final String type;
+		public final String value;
+		/** Where it was found, e.g. "AJAX_wait.java:125". */
+		public final String source;
+
+		public Locator(String type, String value, String source) {
+			this.type = type;
+			this.value = value;
+			this.source = source;
+		}
+
+		/** Returns the By of the locator. */
+		public By toBy() {
+			return byOf(type, value);
+		}
+
+		@Override
+		public String toString() {
+			return "By." + type + "(\"" + value + "\")";
+		}
+	}
+
+	/** Analysis of one locator. */
+	public static final class Result {
+		public final Locator locator;
+		/** Average lookup time in microseconds. */
+		public final double meanMicros;
+		/** Number of matching elements in the snapshot. */
+		public final int matches;
+		/** Fragility notes (empty if none). */
+		public final List<String> notes;
+		/** A faster equivalent CSS selector, or null. */
+		public final String suggestion;
+		/** Average lookup time of the suggestion in microseconds (0 if it is not verified). */
+		public final double suggestionMicros;
+		/** False if the snapshot browser can not run the suggestion (e.g. HtmlUnit has no :nth-of-type()). */
+		public final boolean suggestionVerified;
+
+		Result(Locator locator, double meanMicros, int matches, List<String> notes, String suggestion, double suggestionMicros,
+				boolean suggestionVerified) {
+			this.locator = locator;
+			this.meanMicros = meanMicros;
+			this.matches = matches;
+			this.notes = notes;
+			this.suggestion = suggestion;
+			this.suggestionMicros = suggestionMicros;
+			this.suggestionVerified = suggestionVerified;
+		}
+	}
+
+
+	/**
+	 * Scan the .java files of the directory (and its sub directories) for locators.
+	 * Locators given by a String constant of the same file are resolved; other variables are skipped.
+	 *
+	 * @param sourceDir	source directory, e.g. src/test
+	 * @return the locators, each one once (the first place it was found)
+	 */
+	public static List<Locator> scan(File sourceDir) throws IOException {
+		Map<String, Locator> locators = new LinkedHashMap<String, Locator>();
+		scan(sourceDir, locators);
+		return new ArrayList<Locator>(locators.values());
+	}
+
+	private static void scan(File file, Map<String, Locator> locators) throws IOException {
+		File[] children = file.listFiles();
+		if (children != null) {
+			Arrays.sort(children);
+			for (File child : children) {
+				scan(child, locators);
+			}
+			return;
+		}
+		if (!file.getName().endsWith(".java")) {
+			return;
+		}
+		String source = new String(Files.readAllBytes(file.toPath()), Charset.forName("ISO-8859-1"));
+		Map<String, String> constants = new HashMap<String, String>();
+		Matcher constant = CONSTANT.matcher(source);
+		while (constant.find()) {
+			constants.put(constant.group(1), unquote(constant.group(2)));
+		}
+		for (Pattern pattern : new Pattern[] {BY_CALL, FIND_BY}) {
+			Matcher m = pattern.matcher(source);
+			while (m.find()) {
+				String type = m.group(1).equals("css") ? "cssSelector" : m.group(1);
+				String value = m.group(2).startsWith("\"") ? unquote(m.group(2)) : constants.get(m.group(2));
+				if (value == null) {
+					continue; //a variable: its value is not known here
+				}
+				String key = type + ":" + value;
+				if (!locators.containsKey(key)) {
+					locators.put(key, new Locator(type, value, file.getName() + ":" + lineOf(source, m.start())));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Run each locator against the page loaded in the driver, and time it.
+	 * The implicit wait is suspended, so a missing element is not waited for.
+	 *
+	 * @param driver	The driver object to be used (the snapshot page is already loaded)
+	 * @param locators	locators to analyze
+	 * @param repeats	number of timed lookups of each locator
+	 * @return the results, slowest first
+	 */
+	public static List<Result> analyze(WebDriver driver, List<Locator> locators, int repeats) {
+		List<Result> results = new ArrayList<Result>();
+		try (ImplicitWaitSuspension suspension = WaitTool.suspendImplicitWait(driver)) {
+			warmUp(driver, locators);
+			for (Locator locator : locators) {
+				By by = locator.toBy();
+				List<WebElement> found;
+				try {
+					found = driver.findElements(by);
+				} catch (RuntimeException e) { //e.g. an invalid selector
+					results.add(new Result(locator, 0, 0, Collections.singletonList("invalid: " + e.getClass().getSimpleName()), null, 0, false));
+					continue;
+				}
+				double mean = time(driver, by, repeats);
+				List<String> notes = fragilityOf(locator, found.size());
+				String suggestion = null;
+				double suggestionMean = 0;
+				boolean verified = false;
+				String css = locator.type.equals("xpath") ? toCss(locator.value) : null;
+				if (css != null && !found.isEmpty()) {
+					List<WebElement> cssFound;
+					try {
+						cssFound = driver.findElements(By.cssSelector(css));
+					} catch (RuntimeException e) {
+						cssFound = Collections.emptyList();
+					}
+					if (cssFound.isEmpty()) {
+						suggestion = css; //the snapshot browser can not run it (HtmlUnit finds nothing): suggested, not verified
+					} else if (found.equals(cssFound)) {
+						suggestionMean = time(driver, By.cssSelector(css), repeats);
+						suggestion = css;
+						verified = true;
+					}
+				}
+				results.add(new Result(locator, mean, found.size(), notes, suggestion, suggestionMean, verified));
+			}
+		}
+		Collections.sort(results, new Comparator<Result>() {
+			@Override
+			public int compare(Result a, Result b) {
+				return Double.compare(b.meanMicros, a.meanMicros);
+			}
+		});
+		return results;
+	}
+
+	/** Returns the report of the results: one line per locator, with its notes and suggestion. */
+	public static String report(List<Result> results) {
+		StringBuilder report = new StringBuilder();
+		report.append(String.format(Locale.ROOT, "%10s %7s  %s%n", "mean_us", "matches", "locator (source)"));
+		for (Result r : results) {
+			report.append(String.format(Locale.ROOT, "%10.1f %7d  %s (%s)%n", r.meanMicros, r.matches, r.locator, r.locator.source));
+			for (String note : r.notes) {
+				report.append("                    ! ").append(note).append('\n');
+			}
+			if (r.suggestion != null && !r.suggestionVerified) {
+				report.append(String.format(Locale.ROOT, "                    > use By.cssSelector(\"%s\"): not verified (the snapshot browser can not run it)%n",
+						r.suggestion));
+			} else if (r.suggestion != null) {
+				report.append(String.format(Locale.ROOT, "                    > use By.cssSelector(\"%s\"): %.1f us%n",
+						r.suggestion, r.suggestionMicros));
+			}
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Translates a simple XPath into a CSS selector, e.g. "//div[@id='statistics']/img[3]"
+	 * into "div#statistics > img:nth-of-type(3)".
+	 * It handles child and descendant steps, tag names, *, [@attribute='value'] and [position] predicates.
+	 *
+	 * @return the CSS selector, or null if the XPath can not be translated
+	 */
+	public static String toCss(String xpath) {
+		if (!xpath.startsWith("/")) {
+			return null;
+		}
+		StringBuilder css = new StringBuilder();
+		int i = 0;
+		while (i < xpath.length()) {
+			boolean descendant = xpath.startsWith("//", i);
+			i += descendant ? 2 : 1;
+			int end = stepEnd(xpath, i);
+			if (end < 0) {
+				return null;
+			}
+			String step = toCssStep(xpath.substring(i, end));
+			if (step == null) {
+				return null;
+			}
+			if (css.length() > 0) {
+				css.append(descendant ? " " : " > ");
+			}
+			css.append(step);
+			i = end;
+		}
+		return (css.length() == 0) ? null : css.toString();
+	}
+
+
+	/** Returns the end of the step starting at i (the next '/' outside of predicates), or -1. */
+	private static int stepEnd(String xpath, int i) {
+		int depth = 0;
+		char quote = 0;
+		for (int j = i; j < xpath.length(); j++) {
+			char c = xpath.charAt(j);
+			if (quote != 0) {
+				if (c == quote) quote = 0;
+			} else if (c == '\'' || c == '"') {
+				quote = c;
+			} else if (c == '[') {
+				depth++;
+			} else if (c == ']') {
+				depth--;
+			} else if (c == '/' && depth == 0) {
+				return j;
+			}
+		}
+		return (depth == 0 && quote == 0) ? xpath.length() : -1;
+	}
+
+	private static final Pattern STEP = Pattern.compile("([A-Za-z][\\w-]*|\\*)((?:\\[[^\\]]*\\])*)");
+	private static final Pattern ATTRIBUTE = Pattern.compile("@([A-Za-z][\\w-]*)\\s*=\\s*(?:'([^']*)'|\"([^\"]*)\")");
+	private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z][\\w-]*");
+
+	/** Translates one XPath step (e.g. "div[@id='x']", "img[3]"), or returns null. */
+	private static String toCssStep(String step) {
+		Matcher m = STEP.matcher(step);
+		if (!m.matches()) {
+			return null;
+		}
+		String tag = m.group(1);
+		StringBuilder css = new StringBuilder(tag.equals("*") ? "" : tag);
+		List<String> predicates = new ArrayList<String>();
+		Matcher p = Pattern.compile("\\[([^\\]]*)\\]").matcher(m.group(2));
+		while (p.find()) {
+			predicates.add(p.group(1).trim());
+		}
+		for (String predicate : predicates) {
+			Matcher attribute = ATTRIBUTE.matcher(predicate);
+			if (predicate.matches("\\d+")) {
+				if (predicates.size() > 1) {
+					return null; //tag[@a='v'][2] is not tag[a='v']:nth-of-type(2)
+				}
+				css.append(tag.equals("*") ? ":nth-child(" : ":nth-of-type(").append(predicate).append(')');
+			} else if (attribute.matches()) {
+				String name = attribute.group(1);
+				String value = (attribute.group(2) != null) ? attribute.group(2) : attribute.group(3);
+				if (name.equals("id") && IDENTIFIER.matcher(value).matches()) {
+					css.append('#').append(value);
+				} else {
+					css.append('[').append(name).append("='").append(value.replace("'", "\\'")).append("']");
+				}
+			} else {
+				return null; //functions (text(), contains(), ...) have no CSS equivalent
+			}
+		}
+		return (css.length() == 0) ? "*" : css.toString();
+	}
+
+	/** Fragility notes of a locator. */
+	private static List<String> fragilityOf(Locator locator, int matches) {
+		List<String> notes = new ArrayList<String>();
+		if (matches == 0) {
+			notes.add("no match in the snapshot");
+		} else if (matches > 1) {
+			notes.add(matches + " matches: findElement() uses the first one");
+		}
+		String value = locator.value;
+		if (locator.type.equals("xpath")) {
+			if (value.startsWith("/html") || (value.startsWith("/") && !value.startsWith("//"))) {
+				notes.add("absolute XPath");
+			}
+			if (value.contains("text()") || value.contains("contains(")) {
+				notes.add("text or function based XPath");
+			}
+		}
+		if ((locator.type.equals("xpath") && value.matches(".*\\[\\s*\\d+\\s*\\].*")) || value.contains("nth-")) {
+			notes.add("position based: breaks when an element is added before it");
+		}
+		if (locator.type.equals("linkText") || locator.type.equals("partialLinkText")) {
+			notes.add("text based: breaks when the text (or the language) changes");
+		}
+		int steps = locator.type.equals("xpath") ? value.replace("//", "/").split("/").length - 1
+				: locator.type.equals("cssSelector") ? value.trim().split("\\s*[ >+~]\\s*").length : 1;
+		if (steps > MAX_STEPS) {
+			notes.add(steps + " steps deep: depends on the page layout");
+		}
+		return notes;
+	}
+
+	/** Run all the locators a few times, so the first ones are not timed with a cold JIT and browser. */
+	private static void warmUp(WebDriver driver, List<Locator> locators) {
+		for (int i = 0; i < WARM_UP; i++) {
+			for (Locator locator : locators) {
+				try {
+					driver.findElements(locator.toBy());
+				} catch (RuntimeException e) {
+					//reported by analyze()
+				}
+			}
+		}
+	}
+
+	/** Average time of findElements(by) in microseconds. */
+	private static double time(WebDriver driver, By by, int repeats) {
+		for (int i = 0; i < WARM_UP; i++) {
+			driver.findElements(by);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < repeats; i++) {
+			driver.findElements(by);
+		}
+		return (System.nanoTime() - start) / 1000.0 / Math.max(1, repeats);
+	}
+
+	private static By byOf(String type, String value) {
+		if (type.equals("id")) return By.id(value);
+		if (type.equals("name")) return By.name(value);
+		if (type.equals("className")) return By.className(value);
+		if (type.equals("cssSelector")) return By.cssSelector(value);
+		if (type.equals("tagName")) return By.tagName(value);
+		if (type.equals("linkText")) return By.linkText(value);
+		if (type.equals("partialLinkText")) return By.partialLinkText(value);
+		return By.xpath(value);
+	}
+
+	/** Returns the value of a Java string literal. */
+	private static String unquote(String literal) {
+		StringBuilder value = new StringBuilder();
+		for (int i = 1; i < literal.length() - 1; i++) {
+			char c = literal.charAt(i);
+			if (c == '\\' && i + 1 < literal.length() - 1) {
+				c = literal.charAt(++i); //an escaped quote or backslash (other escapes are not used in locators)
+			}
+			value.append(c);
+		}
+		return value.toString();
+	}
+
+	private static int lineOf(String source, int offset) {
+		int line = 1;
+		for (int i = 0; i < offset; i++) {
+			if (source.charAt(i) == '\n') line++;
+		}
+		return line;
+	}
+
+
+	/**
+	 * Analyze the locators of a source directory against a local HTML snapshot, with HtmlUnit.
+	 *
+	 * @param args	source directory, HTML snapshot file, and (optional) number of repeats
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			System.err.println("Usage: java wtbox.util.LocatorAnalyzer <source dir> <snapshot.html> [repeats]");
+			return;
+		}
+		List<Locator> locators = scan(new File(args[0]));
+		int repeats = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_REPEATS;
+		WebDriver driver = new HtmlUnitDriver(true);
+		try {
+			driver.get(new File(args[1]).toURI().toString());
+			System.out.print(report(analyze(driver, locators, repeats)));
+		} finally {
+			driver.quit();
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package wtbox.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * Polling policy for WaitTool.  Decides how long a wait sleeps between two polls.
+ *
+ * WebDriverWait polls every 500 milliseconds, which is too slow for a fast AJAX response
+ * and too chatty for a slow page load.  Choose a policy globally with
+ * WaitTool.setPollingPolicy(), or per call (e.g. WaitTool.waitForElement(driver, by, 5, policy)):
+ *
+ * 1. fixed(interval):  the same interval every time (DEFAULT is fixed(500), as WebDriverWait).
+ * 2. backoff(initial, multiplier, max):  starts fast, then polls less and less often.
+ * 3. adaptive():  learns how long each locator usually takes in this run,
+ *    and polls fast around that time.
+ *
+ * Copyright [2012] [Chon Chung]
+ *
+ * Licensed under the Apache Open Source License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+public abstract class PollingPolicy {
+
+	/** WebDriverWait's polling: every 500 milliseconds. */
+	public static final PollingPolicy DEFAULT = fixed(500);
+
+
+	/**
+	 * Returns the time to sleep before the next poll.
+	 *
+	 * @param key	what the wait is waiting for (e.g. the locator's toString())
+	 * @param polls	the number of polls done so far (1 after the first failed poll)
+	 * @param elapsedMillis	time since the wait started
+	 * @return sleep time in milliseconds
+	 */
+	public abstract long nextInterval(String key, int polls, long elapsedMillis);
+
+	/**
+	 * Called when a wait is done.  Does nothing by default.
+	 *
+	 * @param key	what the wait was waiting for
+	 * @param elapsedMillis	how long the wait took
+	 * @param succeeded	false if the timeout was reached
+	 */
+	public void waitEnded(String key, long elapsedMillis, boolean succeeded) {
+	}
+
+
+	/** Poll every intervalMillis. */
+	public static PollingPolicy fixed(final long intervalMillis) {
+		return new PollingPolicy() {
+			@Override
+			public long nextInterval(String key, int polls, long elapsedMillis) {
+				return intervalMillis;
+			}
+
+			@Override
+			public String toString() {
+				return "fixed(" + intervalMillis + ")";
+			}
+		};
+	}
+
+	/**
+	 * Exponential backoff: initialMillis, then multiplied by multiplier after each poll, up to maxMillis.
+	 * e.g. backoff(20, 2, 1000) polls after 20, 40, 80, ... 1000, 1000 milliseconds.
+	 */
+	public static PollingPolicy backoff(final long initialMillis, final double multiplier, final long maxMillis) {
+		return new PollingPolicy() {
+			@Override
+			public long nextInterval(String key, int polls, long elapsedMillis) {
+				return backoffInterval(initialMillis, multiplier, maxMillis, polls);
+			}
+
+			@Override
+			public String toString() {
+				return "backoff(" + initialMillis + ", " + multiplier + ", " + maxMillis + ")";
+			}
+		};
+	}
+
+	/**
+	 * Adaptive polling, with its own memory of this run.
+	 * Use one instance for the whole run (e.g. WaitTool.setPollingPolicy(PollingPolicy.adaptive())).
+	 */
+	public static PollingPolicy adaptive() {
+		return new AdaptivePolicy();
+	}
+
+	/** initialMillis * multiplier^(polls - 1), capped at maxMillis. */
+	private static long backoffInterval(long initialMillis, double multiplier, long maxMillis, int polls) {
+		double interval = initialMillis * Math.pow(multiplier, Math.max(0, polls - 1));
+		return (long) Math.min(interval, maxMillis);
+	}
+
+
+	/**
+	 * Adaptive policy.  It keeps the typical time-to-ready of each key (a moving average
+	 * of the successful waits), then:
+	 *  - before that time, it sleeps until (nearly) that time, so a slow element is not polled for nothing,
+	 *  - around that time, it polls fast,
+	 *  - after that time, it backs off, as the element is late.
+	 * A key without history uses a backoff from MIN_INTERVAL.
+	 */
+	private static final class AdaptivePolicy extends PollingPolicy {
+
+		private static final long MIN_INTERVAL = 20;
+		private static final long MAX_INTERVAL = 1000;
+		/** Weight of the newest wait in the moving average. */
+		private static final double WEIGHT = 0.3;
+
+		/** Typical time-to-ready of each key, in milliseconds. */
+		private final ConcurrentMap<String, Long> readyTimes = new ConcurrentHashMap<String, Long>();
+
+		@Override
+		public long nextInterval(String key, int polls, long elapsedMillis) {
+			Long readyTime = readyTimes.get(key);
+			if (readyTime == null) {
+				return backoffInterval(MIN_INTERVAL, 2, MAX_INTERVAL, polls);
+			}
+			long early = (long) (readyTime * 0.9) - elapsedMillis;
+			if (early > MIN_INTERVAL) {
+				return Math.min(early, MAX_INTERVAL); //sleep until it is nearly ready
+			}
+			long late = elapsedMillis - readyTime;
+			if (late <= 0) {
+				return MIN_INTERVAL;
+			}
+			//it is late: back off in proportion to how late
+			return Math.max(MIN_INTERVAL, Math.min(late / 2, MAX_INTERVAL));
+		}
+
+		@Override
+		public void waitEnded(String key, long elapsedMillis, boolean succeeded) {
+			if (!succeeded) {
+				return; //a timeout says nothing about the time-to-ready
+			}
+			Long readyTime = readyTimes.get(key);
+			long average = (readyTime == null) ? elapsedMillis
+					: (long) (WEIGHT * elapsedMillis + (1 - WEIGHT) * readyTime);
+			readyTimes.put(key, average);
+		}
+
+		@Override
+		public String toString() {
+			return "adaptive()";
+		}
+	}
+}
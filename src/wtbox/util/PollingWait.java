@@ -0,0 +1,101 @@
+package wtbox.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.support.ui.Duration;
+import org.openqa.selenium.support.ui.Sleeper;
+import org.openqa.selenium.support.ui.SystemClock;
+import org.openqa.selenium.support.ui.WebDriverWait;
+
+import com.google.common.base.Function;
+
+
+/**
+ * WebDriverWait which sleeps between polls as the PollingPolicy says, instead of every 500 milliseconds.
+ * It also counts the polls and times the wait (one PollingWait per wait).
+ *
+ * Copyright [2012] [Chon Chung]
+ *
+ * Licensed under the Apache Open Source License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+final class PollingWait extends WebDriverWait {
+
+	private final PolicySleeper sleeper;
+
+	/**
+	 * @param driver	The driver object to be used
+	 * @param timeOutInSeconds	The time in seconds to wait until returning a failure
+	 * @param policy	polling policy
+	 * @param key	what the wait is waiting for (e.g. the locator's toString())
+	 */
+	PollingWait(WebDriver driver, long timeOutInSeconds, PollingPolicy policy, String key) {
+		this(driver, timeOutInSeconds, new PolicySleeper(policy, key, timeOutInSeconds));
+	}
+
+	private PollingWait(WebDriver driver, long timeOutInSeconds, PolicySleeper sleeper) {
+		super(driver, new SystemClock(), sleeper, timeOutInSeconds, DEFAULT_SLEEP_TIMEOUT);
+		this.sleeper = sleeper;
+	}
+
+	@Override
+	public <V> V until(Function<? super WebDriver, V> isTrue) {
+		sleeper.start();
+		Tracer.Span span = Tracer.begin(Tracer.WAIT, sleeper.key);
+		boolean succeeded = false;
+		try {
+			V value = super.until(isTrue);
+			succeeded = true;
+			return value;
+		} finally {
+			span.end();
+			long elapsed = getElapsedMillis();
+			sleeper.policy.waitEnded(sleeper.key, elapsed, succeeded);
+			CommandMetrics.recordWait(CommandMetrics.WAIT_POLLING, elapsed, getPolls(), succeeded);
+			WaitProfiler.record(sleeper.key, sleeper.timeOutMillis, elapsed, getPolls(), succeeded);
+		}
+	}
+
+	/** Returns the number of polls (condition checks) of the wait. */
+	int getPolls() {
+		return sleeper.sleeps + 1;
+	}
+
+	/** Returns the time since the wait started, in milliseconds. */
+	long getElapsedMillis() {
+		return (System.nanoTime() - sleeper.startNanos) / 1000000;
+	}
+
+
+	/** Sleeper which asks the policy how long to sleep, and never sleeps past the timeout. */
+	private static final class PolicySleeper implements Sleeper {
+
+		private final PollingPolicy policy;
+		private final String key;
+		private final long timeOutMillis;
+		private long startNanos;
+		private int sleeps;
+
+		PolicySleeper(PollingPolicy policy, String key, long timeOutInSeconds) {
+			this.policy = policy;
+			this.key = key;
+			this.timeOutMillis = TimeUnit.SECONDS.toMillis(timeOutInSeconds);
+		}
+
+		void start() {
+			startNanos = System.nanoTime();
+			sleeps = 0;
+		}
+
+		@Override
+		public void sleep(Duration ignored) throws InterruptedException {
+			sleeps++;
+			long elapsed = (System.nanoTime() - startNanos) / 1000000;
+			long interval = policy.nextInterval(key, sleeps, elapsed);
+			long left = timeOutMillis - elapsed;
+			Thread.sleep(Math.max(0, Math.min(interval, left)));
+		}
+	}
+}
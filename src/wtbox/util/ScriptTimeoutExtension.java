@@ -0,0 +1,51 @@
+package wtbox.util;
+
+import org.openqa.selenium.WebDriver;
+
+
+/**
+ * A scoped script timeout.  The driver's script timeout (for executeAsyncScript) 
+ * is at least the given time until close() is called, and then the previous timeout is restored.  
+ * 
+ * Use it with try-with-resources, so the timeout is restored 
+ * even if the script in between throws an exception (e.g. a TimeoutException): 
+ * <pre>
+ * try (ScriptTimeoutExtension extension = WaitTool.extendScriptTimeout(driver, 12)) {
+ *     ((JavascriptExecutor) driver).executeAsyncScript(...); 
+ * }
+ * </pre>
+ * 
+ * No command is sent if the timeout is already long enough, 
+ * and nested extensions restore the timeout only when the last one is closed. 
+ * 
+ * Copyright [2012] [Chon Chung]
+ * 
+ * Licensed under the Apache Open Source License, Version 2.0  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ */
+public final class ScriptTimeoutExtension implements AutoCloseable {
+
+	private final WebDriver driver; 
+	private boolean closed = false; 
+	
+	/**
+	 * Extend the driver's script timeout.  Use WaitTool.extendScriptTimeout(). 
+	 * 
+	 * @param driver	The driver object to be used 
+	 * @param timeOutInSeconds		the minimum script timeout in seconds 
+	 */
+	ScriptTimeoutExtension(WebDriver driver, int timeOutInSeconds) {
+		DriverState.extendScriptTimeout(driver, timeOutInSeconds); 
+		this.driver = driver; 
+	}
+	
+	/** Restore the script timeout before this extension.  Closing it twice does nothing. */ 
+	@Override
+	public void close() {
+		if (!closed) {
+			closed = true; 
+			DriverState.restoreScriptTimeout(driver); 
+		}
+	}
+}
@@ -7,10 +7,19 @@ import java.text.SimpleDateFormat;
  * TimeTool utility for Chon, who is lazy to remember things.  :-) */
 public class TimeTool {
 	
-	/** Return the current time in "MMM dd,yyyy HH:mm:ss" format. */ 
+	/** The format of getCurrentTime(), one per thread (SimpleDateFormat is not thread safe, and slow to create). */ 
+	private static final ThreadLocal<SimpleDateFormat> format = new ThreadLocal<SimpleDateFormat>() {
+		@Override
+		protected SimpleDateFormat initialValue() {
+			return new SimpleDateFormat("MMM dd,yyyy HH:mm:ss");
+		}
+	};
+	
+	/** 
+	 * Return the current time in "MMM dd,yyyy HH:mm:ss" format.  
+	 * It is the wall clock, to the second: to time test steps, use Tracer (or System.nanoTime()). */ 
 	public static String getCurrentTime(){
-        SimpleDateFormat sdf = new SimpleDateFormat("MMM dd,yyyy HH:mm:ss");
-        return sdf.format(new Date().getTime()); 
+        return format.get().format(new Date()); 
 	}
 
 }
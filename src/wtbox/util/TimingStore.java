@@ -0,0 +1,665 @@
+package wtbox.util;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+
+/**
+ * Timing history store.  Keeps the durations of the tests, of their steps (page loads, waits, ...),
+ * and of the test classes across the runs, in a directory of append-only, memory-mapped segment files,
+ * and answers: the percentiles of a duration, its trend, and which durations regressed.
+ *
+ * Keys name what was timed: "test:" + class.method, "step:" + test + " > " + category:name (the total of the test's
+ * Tracer spans of that name, once per run),
+ * "class:" + class name (ShardCoordinator, which plans its shards from them).
+ * <pre>
+ * TimingStore store = TimingStore.open(new File("target/timings"));
+ * store.record(TimingStore.TEST + "GoogleSearch.testSearch", nanos);
+ * long p90 = store.percentile(TimingStore.TEST + "GoogleSearch.testSearch", 0.9, 20);
+ * for (TimingStore.Regression slower : store.findRegressions(0.5, 20, TimeUnit.MILLISECONDS.toNanos(100))) { ... }
+ * </pre>
+ * Each TimingStore writes its own segments (up to SEGMENT_SIZE bytes each), so the worker JVMs of a sharded run
+ * can record in the same directory at the same time.  A segment holds its keys once (key records)
+ * and then 21 bytes per duration (sample records); a record is only seen once its type byte is written,
+ * so a segment cut by a crash is read up to its last whole record.
+ *
+ * Each run adds segments, so open() compacts the directory when it has more than MAX_SEGMENTS of them:
+ * the last RETAINED_SAMPLES durations of each key are rewritten into new segments, and the old ones are deleted.
+ * A writer locks the segment it appends to, and the compaction skips the locked ones (e.g. of a running worker JVM).
+ *
+ * TraceRule records each test (and the steps of its Tracer timeline) in getDefault(), the store of
+ * the system property:
+ *   -Dwtbox.timings.dir=target/timings  	record the test durations (with -Dwtbox.trace=true, their steps too)
+ *
+ * Copyright [2012] [Chon Chung]
+ *
+ * Licensed under the Apache Open Source License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+public final class TimingStore {
+
+	/** Key prefix of the test durations. */
+	public static final String TEST = "test:";
+	/** Key prefix of the step durations (Tracer spans of a test). */
+	public static final String STEP = "step:";
+	/** Key prefix of the test class durations. */
+	public static final String CLASS = "class:";
+
+	/** Size of a segment file. */
+	public static final int SEGMENT_SIZE = 1 << 20;
+	/** open() compacts the directory when it has more segments than this. */
+	public static final int MAX_SEGMENTS = 64;
+	/** Number of durations of each key kept by the compaction. */
+	public static final int RETAINED_SAMPLES = 100;
+	/** Number of recent durations the queries look at, by default. */
+	public static final int DEFAULT_WINDOW = 20;
+	/** A duration regressed if it is this much (50%) over the median of the recent ones... */
+	public static final double DEFAULT_THRESHOLD = 0.5;
+	/** ...and at least this much longer, in milliseconds (so a 2 ms step taking 4 ms is not flagged). */
+	public static final long DEFAULT_MIN_DELTA_MILLIS = 100;
+
+	private static final int MAGIC = 0x57544254; //"WTBT"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 8;
+	private static final byte KEY_RECORD = 1;
+	private static final byte SAMPLE_RECORD = 2;
+	private static final int SAMPLE_SIZE = 1 + 4 + 8 + 8;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final Object defaultLock = new Object();
+	private static TimingStore defaultStore;
+
+	private final File dir;
+	private final String writerId;
+	/** key -> its durations, oldest first */
+	private final Map<String, Series> series = new HashMap<String, Series>();
+
+	/** The segment this store appends to (null until the first record). */
+	private MappedByteBuffer segment;
+	private RandomAccessFile segmentFile;
+	/** The lock of the segment, so no compaction deletes it while it is written. */
+	private FileLock segmentLock;
+	private int segmentCount;
+	/** key -> its id in the current segment */
+	private final Map<String, Integer> segmentKeys = new HashMap<String, Integer>();
+
+
+	private TimingStore(File dir) {
+		this.dir = dir;
+		this.writerId = Long.toString(System.currentTimeMillis(), 36) + "-" + Integer.toString(new Random().nextInt(1 << 30), 36);
+	}
+
+
+	/**
+	 * Open the store: reads the segments of the directory (it is created if needed).
+	 *
+	 * @param dir	the store's directory
+	 */
+	public static TimingStore open(File dir) throws IOException {
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Can not create the timing store directory " + dir);
+		}
+		if (segmentsOf(dir).size() > MAX_SEGMENTS) {
+			compact(dir, RETAINED_SAMPLES);
+		}
+		TimingStore store = new TimingStore(dir);
+		for (File file : segmentsOf(dir)) {
+			store.load(file);
+		}
+		for (Series each : store.series.values()) {
+			each.sortByTime();
+		}
+		return store;
+	}
+
+	/**
+	 * Compact the directory: the last samplesPerKey durations of each key of the segments are rewritten
+	 * into new segments, and the old segments are deleted.  The segments locked by a writer are skipped.
+	 * (If the compaction is interrupted, e.g. by a crash, some durations may be kept twice.)
+	 *
+	 * @param dir	the store's directory
+	 * @param samplesPerKey	the number of durations of each key to keep
+	 * @return the number of deleted segments
+	 */
+	public static int compact(File dir, int samplesPerKey) throws IOException {
+		TimingStore compacted = new TimingStore(dir);
+		List<File> old = new ArrayList<File>();
+		List<RandomAccessFile> locked = new ArrayList<RandomAccessFile>();
+		try {
+			for (File file : segmentsOf(dir)) {
+				RandomAccessFile lockFile = new RandomAccessFile(file, "rw");
+				FileLock lock = null;
+				try {
+					lock = lockFile.getChannel().tryLock();
+				} catch (OverlappingFileLockException e) {
+					//written by a store of this JVM
+				}
+				if (lock == null) {
+					lockFile.close(); //in use: it stays as it is
+					continue;
+				}
+				locked.add(lockFile);
+				old.add(file);
+				compacted.load(file);
+			}
+			if (old.size() < 2) {
+				return 0; //nothing to merge
+			}
+			for (Map.Entry<String, Series> entry : compacted.series.entrySet()) {
+				Series each = entry.getValue();
+				each.sortByTime();
+				for (int i = Math.max(0, each.size - samplesPerKey); i < each.size; i++) {
+					compacted.append(entry.getKey(), each.times[i], each.nanos[i]);
+				}
+			}
+			compacted.close();
+			for (int i = 0; i < old.size(); i++) {
+				File file = old.get(i);
+				locked.get(i).close(); //a locked (open) file can not be deleted on Windows
+				if (!file.delete()) {
+					System.err.println("Can not delete the compacted timing segment " + file);
+				}
+			}
+			return old.size();
+		} finally {
+			compacted.close();
+			for (RandomAccessFile lockFile : locked) {
+				lockFile.close(); //releases the lock
+			}
+		}
+	}
+
+	/** Returns the segment files of the directory, sorted by name. */
+	private static List<File> segmentsOf(File dir) {
+		List<File> segments = new ArrayList<File>();
+		File[] files = dir.listFiles();
+		if (files != null) {
+			Arrays.sort(files);
+			for (File file : files) {
+				if (file.getName().endsWith(".seg")) {
+					segments.add(file);
+				}
+			}
+		}
+		return segments;
+	}
+
+	/**
+	 * Returns the store of the wtbox.timings.dir system property (opened once, and closed when the JVM exits),
+	 * or null if the property is not set, or the store can not be opened.
+	 */
+	public static TimingStore getDefault() {
+		String property = System.getProperty("wtbox.timings.dir");
+		if (property == null) {
+			return null;
+		}
+		synchronized (defaultLock) {
+			if (defaultStore == null) {
+				try {
+					defaultStore = open(new File(property));
+				} catch (IOException e) {
+					e.printStackTrace();
+					return null;
+				}
+				final TimingStore store = defaultStore;
+				Runtime.getRuntime().addShutdownHook(new Thread("wtbox-timings-close") {
+					@Override
+					public void run() {
+						store.close();
+					}
+				});
+			}
+			return defaultStore;
+		}
+	}
+
+	/** Returns the store's directory. */
+	public File getDir() {
+		return dir;
+	}
+
+
+	/** Record a duration which ended now. */
+	public void record(String key, long nanos) {
+		record(key, System.currentTimeMillis(), nanos);
+	}
+
+	/**
+	 * Record a duration.
+	 *
+	 * @param key	what was timed, e.g. TEST + "GoogleSearch.testSearch"
+	 * @param epochMillis	when it ended (System.currentTimeMillis())
+	 * @param nanos	how long it took
+	 */
+	public synchronized void record(String key, long epochMillis, long nanos) {
+		try {
+			append(key, epochMillis, nanos);
+		} catch (IOException e) {
+			e.printStackTrace(); //the duration is still kept in memory
+		}
+		seriesOf(key).add(epochMillis, nanos);
+	}
+
+	/**
+	 * Record the steps of this thread's Tracer timeline (the STEP, PAGE and WAIT spans, not the driver commands),
+	 * as STEP + test + " > " + category:name.  The spans of the same name are added up: one duration per step
+	 * and test run, so a step repeated in a loop is not many samples, and the span details (locators, URLs)
+	 * do not make new keys.  Call it when the test's spans ended (e.g. after Tracer.endTest()).
+	 *
+	 * @param test	the test's name
+	 */
+	public synchronized void recordSteps(final String test) {
+		final Map<String, Long> steps = new LinkedHashMap<String, Long>();
+		Tracer.visitSpans(new Tracer.SpanVisitor() {
+			@Override
+			public void visit(String category, String name, String detail, long nanos) {
+				if (!Tracer.DRIVER.equals(category)) {
+					String key = STEP + test + " > " + category + ":" + name;
+					Long total = steps.get(key);
+					steps.put(key, (total == null) ? nanos : total + nanos);
+				}
+			}
+		});
+		long now = System.currentTimeMillis();
+		for (Map.Entry<String, Long> step : steps.entrySet()) {
+			record(step.getKey(), now, step.getValue());
+		}
+	}
+
+	/** Write the segment to the disk. */
+	public synchronized void flush() {
+		if (segment != null) {
+			segment.force();
+		}
+	}
+
+	/**
+	 * Write the segment to the disk, and stop appending to it (the next record starts a new segment).
+	 * The segment file is cut to its records, where the system allows it (the file is still mapped).
+	 */
+	public synchronized void close() {
+		flush();
+		if (segmentFile != null) {
+			try {
+				try {
+					segmentFile.setLength(segment.position() + 1); //keep the end of the segment (0)
+				} catch (IOException e) {
+					//e.g. Windows does not cut a mapped file: it keeps SEGMENT_SIZE
+				}
+				segmentFile.close(); //releases the lock
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		segment = null;
+		segmentFile = null;
+		segmentLock = null;
+	}
+
+
+	/** Returns the keys, sorted. */
+	public synchronized Set<String> getKeys() {
+		return new TreeSet<String>(series.keySet());
+	}
+
+	/** Returns the keys with the prefix (e.g. TEST), sorted. */
+	public synchronized Set<String> getKeys(String prefix) {
+		Set<String> keys = new TreeSet<String>();
+		for (String key : series.keySet()) {
+			if (key.startsWith(prefix)) {
+				keys.add(key);
+			}
+		}
+		return keys;
+	}
+
+	/** Returns the number of durations of the key. */
+	public synchronized int getCount(String key) {
+		Series each = series.get(key);
+		return (each == null) ? 0 : each.size;
+	}
+
+	/**
+	 * Returns the recent durations of the key, oldest first.
+	 *
+	 * @param key	what was timed
+	 * @param window	the number of most recent durations (0 for all)
+	 * @return the durations in nanoseconds (empty if the key is unknown)
+	 */
+	public synchronized long[] getDurations(String key, int window) {
+		Series each = series.get(key);
+		if (each == null) {
+			return new long[0];
+		}
+		int from = (window <= 0) ? 0 : Math.max(0, each.size - window);
+		return Arrays.copyOfRange(each.nanos, from, each.size);
+	}
+
+	/**
+	 * Returns a percentile of the recent durations of the key (nearest rank).
+	 *
+	 * @param key	what was timed
+	 * @param percentile	from 0 to 1, e.g. 0.5 for the median, 0.9 for the 90th percentile
+	 * @param window	the number of most recent durations (0 for all)
+	 * @return the duration in nanoseconds, or -1 if there is none
+	 */
+	public long percentile(String key, double percentile, int window) {
+		return percentileOf(getDurations(key, window), percentile);
+	}
+
+	/**
+	 * Returns the trend of the recent durations of the key: the median of the newer half of the window
+	 * divided by the median of the older half.  e.g. 1.25 if it became 25% slower, 0.8 if 20% faster.
+	 *
+	 * @param key	what was timed
+	 * @param window	the number of most recent durations
+	 * @return the ratio, or NaN if there are less than 4 durations
+	 */
+	public double trend(String key, int window) {
+		long[] recent = getDurations(key, window);
+		if (recent.length < 4) {
+			return Double.NaN;
+		}
+		int half = recent.length / 2;
+		long older = percentileOf(Arrays.copyOfRange(recent, 0, recent.length - half), 0.5);
+		long newer = percentileOf(Arrays.copyOfRange(recent, recent.length - half, recent.length), 0.5);
+		return (older == 0) ? Double.NaN : (double) newer / older;
+	}
+
+	/**
+	 * Returns the keys whose last duration regressed: it is over the median of the durations before it
+	 * (up to window of them, at least 3) by more than the threshold, and by at least minDeltaNanos.
+	 * The worst regression first.
+	 *
+	 * @param threshold	e.g. 0.5 for 50% slower
+	 * @param window	the number of durations before the last one, for the baseline
+	 * @param minDeltaNanos	the smallest regression flagged, in nanoseconds
+	 */
+	public synchronized List<Regression> findRegressions(double threshold, int window, long minDeltaNanos) {
+		List<Regression> regressions = new ArrayList<Regression>();
+		for (String key : series.keySet()) {
+			Regression regression = findRegression(key, threshold, window, minDeltaNanos);
+			if (regression != null) {
+				regressions.add(regression);
+			}
+		}
+		Collections.sort(regressions, new Comparator<Regression>() {
+			@Override
+			public int compare(Regression a, Regression b) {
+				return Double.compare(b.getRatio(), a.getRatio());
+			}
+		});
+		return regressions;
+	}
+
+	/** findRegressions() of the keys with the prefix (e.g. CLASS). */
+	public List<Regression> findRegressions(String prefix, double threshold, int window, long minDeltaNanos) {
+		List<Regression> regressions = new ArrayList<Regression>();
+		for (Regression regression : findRegressions(threshold, window, minDeltaNanos)) {
+			if (regression.getKey().startsWith(prefix)) {
+				regressions.add(regression);
+			}
+		}
+		return regressions;
+	}
+
+	/**
+	 * Returns the regression of the key's last duration (see findRegressions()), or null.
+	 */
+	public synchronized Regression findRegression(String key, double threshold, int window, long minDeltaNanos) {
+		Series each = series.get(key);
+		if (each == null || each.size < 4) {
+			return null;
+		}
+		long latest = each.nanos[each.size - 1];
+		long baseline = percentileOf(Arrays.copyOfRange(each.nanos, Math.max(0, each.size - 1 - window), each.size - 1), 0.5);
+		if (latest > baseline * (1 + threshold) && latest - baseline >= minDeltaNanos) {
+			return new Regression(key, latest, baseline);
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the report of the keys with the prefix: count, median, 90th percentile, max and trend
+	 * of the recent durations (in milliseconds), and the regressions.
+	 */
+	public String getReport(String prefix, int window, double threshold, long minDeltaNanos) {
+		StringBuilder report = new StringBuilder();
+		report.append(String.format(Locale.ROOT, "%6s %10s %10s %10s %7s  %s%n", "count", "p50_ms", "p90_ms", "max_ms", "trend", "key"));
+		for (String key : getKeys(prefix)) {
+			long[] recent = getDurations(key, window);
+			double trend = trend(key, window);
+			report.append(String.format(Locale.ROOT, "%6d %10.1f %10.1f %10.1f %7s  %s%n", getCount(key),
+					percentileOf(recent, 0.5) / 1e6, percentileOf(recent, 0.9) / 1e6, percentileOf(recent, 1) / 1e6,
+					Double.isNaN(trend) ? "-" : String.format(Locale.ROOT, "%.2f", trend), key));
+		}
+		List<Regression> regressions = findRegressions(prefix, threshold, window, minDeltaNanos);
+		report.append("\nRegressions (over ").append(Math.round(threshold * 100)).append("% of the recent median): ")
+				.append(regressions.isEmpty() ? "none" : "").append('\n');
+		for (Regression regression : regressions) {
+			report.append("  ").append(regression).append('\n');
+		}
+		return report.toString();
+	}
+
+
+	/** Nearest-rank percentile of the durations, or -1 if there is none. */
+	private static long percentileOf(long[] durations, double percentile) {
+		if (durations.length == 0) {
+			return -1;
+		}
+		long[] sorted = durations.clone();
+		Arrays.sort(sorted);
+		int rank = (int) Math.ceil(percentile * sorted.length);
+		return sorted[Math.min(sorted.length - 1, Math.max(0, rank - 1))];
+	}
+
+	private Series seriesOf(String key) {
+		Series each = series.get(key);
+		if (each == null) {
+			each = new Series();
+			series.put(key, each);
+		}
+		return each;
+	}
+
+
+	/** Appends a sample record (and the key record, the first time the key is in the segment). */
+	private void append(String key, long epochMillis, long nanos) throws IOException {
+		Integer id = segmentKeys.get(key);
+		byte[] keyBytes = (id == null) ? key.getBytes(UTF8) : null;
+		int needed = SAMPLE_SIZE + ((id == null) ? 1 + 4 + 2 + keyBytes.length : 0) + 1; //+1: the end of the segment (0)
+		if (keyBytes != null && keyBytes.length > Short.MAX_VALUE) {
+			throw new IOException("Key too long: " + key.substring(0, 80) + "...");
+		}
+		if (segment == null || segment.remaining() < needed) {
+			newSegment();
+			id = null;
+			keyBytes = key.getBytes(UTF8);
+		}
+		if (id == null) {
+			id = segmentKeys.size();
+			int start = segment.position();
+			segment.position(start + 1);
+			segment.putInt(id).putShort((short) keyBytes.length).put(keyBytes);
+			segment.put(start, KEY_RECORD); //the record is complete
+			segmentKeys.put(key, id);
+		}
+		int start = segment.position();
+		segment.position(start + 1);
+		segment.putInt(id).putLong(epochMillis).putLong(nanos);
+		segment.put(start, SAMPLE_RECORD);
+	}
+
+	/** Starts a new segment file of this writer. */
+	private void newSegment() throws IOException {
+		close();
+		File file = new File(dir, String.format(Locale.ROOT, "segment-%s-%04d.seg", writerId, segmentCount++));
+		segmentFile = new RandomAccessFile(file, "rw");
+		segmentLock = segmentFile.getChannel().lock();
+		segmentFile.setLength(SEGMENT_SIZE);
+		segment = segmentFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+		segment.putInt(MAGIC).putInt(VERSION);
+		segmentKeys.clear();
+	}
+
+	/** Reads a segment (of any writer), up to its last whole record. */
+	private void load(File file) throws IOException {
+		RandomAccessFile opened;
+		try {
+			opened = new RandomAccessFile(file, "r");
+		} catch (FileNotFoundException e) {
+			return; //deleted by a compaction since the directory was listed
+		}
+		try (RandomAccessFile in = opened) {
+			if (in.length() < HEADER_SIZE) {
+				return;
+			}
+			MappedByteBuffer buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				System.err.println("Not a timing store segment (skipped): " + file);
+				return;
+			}
+			Map<Integer, String> keys = new HashMap<Integer, String>();
+			while (buffer.remaining() >= 1) {
+				byte type = buffer.get();
+				if (type == KEY_RECORD && buffer.remaining() >= 6) {
+					int id = buffer.getInt();
+					int length = buffer.getShort();
+					if (length < 0 || buffer.remaining() < length) {
+						return;
+					}
+					byte[] bytes = new byte[length];
+					buffer.get(bytes);
+					keys.put(id, new String(bytes, UTF8));
+				} else if (type == SAMPLE_RECORD && buffer.remaining() >= SAMPLE_SIZE - 1) {
+					String key = keys.get(buffer.getInt());
+					long epochMillis = buffer.getLong();
+					long nanos = buffer.getLong();
+					if (key != null) {
+						seriesOf(key).add(epochMillis, nanos);
+					}
+				} else {
+					return; //the end of the segment (0), or a cut record
+				}
+			}
+		}
+	}
+
+
+	/** The durations of a key, in parallel arrays. */
+	private static final class Series {
+
+		long[] times = new long[8];
+		long[] nanos = new long[8];
+		int size;
+
+		void add(long epochMillis, long duration) {
+			if (size == nanos.length) {
+				times = Arrays.copyOf(times, size * 2);
+				nanos = Arrays.copyOf(nanos, size * 2);
+			}
+			times[size] = epochMillis;
+			nanos[size] = duration;
+			size++;
+		}
+
+		/** Orders the durations by time (the segments of several writers are read one after the other). */
+		void sortByTime() {
+			Integer[] order = new Integer[size];
+			for (int i = 0; i < size; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer a, Integer b) {
+					return Long.compare(times[a], times[b]); //stable: the order of a writer is kept
+				}
+			});
+			long[] sortedTimes = new long[times.length];
+			long[] sortedNanos = new long[nanos.length];
+			for (int i = 0; i < size; i++) {
+				sortedTimes[i] = times[order[i]];
+				sortedNanos[i] = nanos[order[i]];
+			}
+			times = sortedTimes;
+			nanos = sortedNanos;
+		}
+	}
+
+
+	/** A key whose last duration regressed. */
+	public static final class Regression {
+
+		private final String key;
+		private final long latestNanos;
+		private final long baselineNanos;
+
+		Regression(String key, long latestNanos, long baselineNanos) {
+			this.key = key;
+			this.latestNanos = latestNanos;
+			this.baselineNanos = baselineNanos;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		/** The last duration, in nanoseconds. */
+		public long getLatestNanos() {
+			return latestNanos;
+		}
+
+		/** The median of the durations before it, in nanoseconds. */
+		public long getBaselineNanos() {
+			return baselineNanos;
+		}
+
+		/** The last duration divided by the baseline, e.g. 1.8. */
+		public double getRatio() {
+			return (baselineNanos == 0) ? Double.POSITIVE_INFINITY : (double) latestNanos / baselineNanos;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "%s: %.1f ms, was %.1f ms (x%.2f)", key, latestNanos / 1e6, baselineNanos / 1e6, getRatio());
+		}
+	}
+
+
+	/**
+	 * Prints the report of a store.
+	 * Usage: java wtbox.util.TimingStore dir [keyPrefix] [thresholdPercent]
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: java wtbox.util.TimingStore dir [keyPrefix] [thresholdPercent]");
+			System.exit(2);
+		}
+		TimingStore store = open(new File(args[0]));
+		String prefix = (args.length > 1) ? args[1] : "";
+		double threshold = (args.length > 2) ? Double.parseDouble(args[2]) / 100 : DEFAULT_THRESHOLD;
+		System.out.print(store.getReport(prefix, DEFAULT_WINDOW, threshold, DEFAULT_MIN_DELTA_MILLIS * 1000000));
+		System.exit(store.findRegressions(prefix, threshold, DEFAULT_WINDOW, DEFAULT_MIN_DELTA_MILLIS * 1000000).isEmpty() ? 0 : 1);
+	}
+}
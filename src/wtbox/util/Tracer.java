@@ -0,0 +1,398 @@
+package wtbox.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+
+/**
+ * Step timeline tracer.  Records nested spans (test steps, page-object calls, WaitTool waits, and the driver commands
+ * of an InstrumentedDriver) with System.nanoTime(), and exports the timeline of a test in the Chrome trace-event
+ * JSON format: open it in chrome://tracing (or https://ui.perfetto.dev) to see where the time went.
+ * <pre>
+ * Tracer.startTest("GoogleSearch.testSearch");
+ * try (Tracer.Span step = Tracer.begin(Tracer.STEP, "search")) {
+ *     googleSearchPage.enterSearchForm("Cheese!");
+ * }
+ * Tracer.endTest(); //writes wtbox.trace.dir/GoogleSearch.testSearch.json
+ * </pre>
+ * Each thread records its own timeline (a test runs on one thread, also with ParallelRunner).
+ * The spans are kept in arrays which are reused by the next test, so recording a span allocates nothing
+ * (pass constant names, and the detail separately: it is only joined to the name on export).
+ * At most MAX_SPANS spans are kept per test; the others are counted as dropped.
+ *
+ * The tracer is off by default.  Turn it on with Tracer.setEnabled(true), or with the system properties:
+ *   -Dwtbox.trace=true  			record the spans
+ *   -Dwtbox.trace.dir=target/traces  	record, and write each test's timeline there (endTest())
+ *
+ * Copyright [2012] [Chon Chung]
+ *
+ * Licensed under the Apache Open Source License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+public final class Tracer {
+
+	/** Category of the test steps. */
+	public static final String STEP = "step";
+	/** Category of the page-object calls (PageBase). */
+	public static final String PAGE = "page";
+	/** Category of the WaitTool waits. */
+	public static final String WAIT = "wait";
+	/** Category of the driver commands (InstrumentedDriver). */
+	public static final String DRIVER = "driver";
+
+	/** Maximum number of spans kept per test (and thread). */
+	public static final int MAX_SPANS = 1 << 20;
+
+	private static final int INITIAL_SPANS = 256;
+	private static final int MAX_DEPTH = 256;
+	/** The end of a span which is still open (System.nanoTime() may be negative, but not this). */
+	private static final long OPEN = Long.MIN_VALUE;
+
+	/** The time origin of all the timelines, so the threads line up. */
+	private static final long ORIGIN_NANOS = System.nanoTime();
+
+	private static final ThreadLocal<Timeline> timelines = new ThreadLocal<Timeline>() {
+		@Override
+		protected Timeline initialValue() {
+			return new Timeline();
+		}
+	};
+
+	private static volatile boolean enabled =
+			Boolean.getBoolean("wtbox.trace") || System.getProperty("wtbox.trace.dir") != null;
+
+	private static volatile File traceDir =
+			(System.getProperty("wtbox.trace.dir") == null) ? null : new File(System.getProperty("wtbox.trace.dir"));
+
+
+	private Tracer() {
+	}
+
+
+	/** Turn the tracer on (or off).  Drivers are only instrumented while it (or CommandMetrics) is on. */
+	public static void setEnabled(boolean on) {
+		enabled = on;
+	}
+
+	/** Returns true if the spans are recorded. */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/** Set the directory endTest() writes the timelines to (null to not write them). */
+	public static void setTraceDir(File dir) {
+		traceDir = dir;
+	}
+
+	/** Returns the directory endTest() writes the timelines to, or null. */
+	public static File getTraceDir() {
+		return traceDir;
+	}
+
+	/**
+	 * Start the timeline of a test on this thread: the spans of the previous test are forgotten.
+	 *
+	 * @param testName	the name of the test (e.g. "AJAX_wait.testWaitTool_class"), also the name of its trace file
+	 */
+	public static void startTest(String testName) {
+		timelines.get().reset(testName);
+	}
+
+	/**
+	 * End the timeline of this thread's test: the open spans are closed, and the timeline is written
+	 * to getTraceDir()/testName.json, if the tracer is on and the directory is set.
+	 *
+	 * @return the trace file, or null if it was not written
+	 */
+	public static File endTest() {
+		Timeline timeline = timelines.get();
+		timeline.endAll(System.nanoTime());
+		File dir = traceDir;
+		if (!enabled || dir == null || timeline.size == 0) {
+			return null;
+		}
+		File file = new File(dir, fileName(timeline.testName) + ".json");
+		try {
+			writeTimeline(file);
+			return file;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Begin a span on this thread.  Close it with end(), or with try-with-resources:
+	 * try (Tracer.Span span = Tracer.begin(Tracer.STEP, "login")) { ... }
+	 *
+	 * @param category	the span's category (STEP, PAGE, WAIT, DRIVER, or your own)
+	 * @param name	the span's name (a constant, so nothing is allocated)
+	 * @return the span, to be closed
+	 */
+	public static Span begin(String category, String name) {
+		return begin(category, name, null);
+	}
+
+	/**
+	 * Begin a span on this thread, with a detail (e.g. the locator, or the page title).
+	 *
+	 * @param category	the span's category (STEP, PAGE, WAIT, DRIVER, or your own)
+	 * @param name	the span's name
+	 * @param detail	shown after the name in the timeline, or null
+	 * @return the span, to be closed
+	 */
+	public static Span begin(String category, String name, String detail) {
+		if (!enabled) {
+			return Span.NONE;
+		}
+		Timeline timeline = timelines.get();
+		timeline.begin(category, name, detail, System.nanoTime());
+		return timeline.span;
+	}
+
+	/**
+	 * End this thread's innermost open span.
+	 *
+	 * @return how long the span took in nanoseconds, or -1 if no span is open
+	 */
+	public static long end() {
+		return timelines.get().end(System.nanoTime());
+	}
+
+	/**
+	 * Record a span which already ended (e.g. timed by the caller), on this thread.
+	 *
+	 * @param category	the span's category
+	 * @param name	the span's name
+	 * @param startNanos	System.nanoTime() at the start
+	 * @param endNanos	System.nanoTime() at the end
+	 */
+	public static void record(String category, String name, long startNanos, long endNanos) {
+		if (enabled) {
+			timelines.get().add(category, name, null, startNanos, endNanos);
+		}
+	}
+
+	/** Returns the number of spans recorded on this thread since startTest(). */
+	public static int getSpanCount() {
+		return timelines.get().size;
+	}
+
+	/** Returns the number of spans dropped on this thread since startTest(), over MAX_SPANS. */
+	public static int getDroppedCount() {
+		return timelines.get().dropped;
+	}
+
+	/** Calls the visitor with each ended span of this thread's timeline, in the order they began. */
+	static void visitSpans(SpanVisitor visitor) {
+		Timeline timeline = timelines.get();
+		for (int i = 0; i < timeline.size; i++) {
+			if (timeline.ends[i] != OPEN) {
+				visitor.visit(timeline.categories[i], timeline.names[i], timeline.details[i], timeline.ends[i] - timeline.starts[i]);
+			}
+		}
+	}
+
+	/** Returns this thread's timeline in the Chrome trace-event JSON format (the open spans end now). */
+	public static String getTimeline() {
+		StringBuilder json = new StringBuilder();
+		timelines.get().appendJson(json, System.nanoTime());
+		return json.toString();
+	}
+
+	/** Write getTimeline() to the file. */
+	public static void writeTimeline(File file) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		try (Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+			out.write(getTimeline());
+		}
+	}
+
+
+	/** A file name for the test name (e.g. "test.MyTest.testLogin(test.MyTest)" -> "test.MyTest.testLogin_test.MyTest_"). */
+	private static String fileName(String testName) {
+		String name = (testName == null || testName.isEmpty()) ? "trace-" + Thread.currentThread().getId() : testName;
+		return name.replaceAll("[^A-Za-z0-9._-]", "_");
+	}
+
+
+	/** Receives the spans of visitSpans(). */
+	interface SpanVisitor {
+		void visit(String category, String name, String detail, long nanos);
+	}
+
+
+	/**
+	 * An open span.  close() ends this thread's innermost open span (like Tracer.end()),
+	 * so close the spans in the reverse order they were begun (as try-with-resources does).
+	 * There is one Span per thread: begin() allocates nothing.
+	 */
+	public static final class Span implements AutoCloseable {
+
+		/** The span returned while the tracer is off: close() does nothing. */
+		static final Span NONE = new Span(null);
+
+		private final Timeline timeline;
+
+		private Span(Timeline timeline) {
+			this.timeline = timeline;
+		}
+
+		/** End the span: returns how long it took in nanoseconds, or -1 if the tracer is off. */
+		public long end() {
+			return (timeline == null) ? -1 : timeline.end(System.nanoTime());
+		}
+
+		@Override
+		public void close() {
+			end();
+		}
+	}
+
+
+	/** The spans of one thread, in parallel arrays (in the order they began). */
+	private static final class Timeline {
+
+		final Span span = new Span(this);
+		final long threadId = Thread.currentThread().getId();
+		final String threadName = Thread.currentThread().getName();
+		String testName;
+		String[] categories = new String[INITIAL_SPANS];
+		String[] names = new String[INITIAL_SPANS];
+		String[] details = new String[INITIAL_SPANS];
+		long[] starts = new long[INITIAL_SPANS];
+		long[] ends = new long[INITIAL_SPANS];
+		int size;
+		int dropped;
+		/** indexes of the open spans (-1 for a dropped one) */
+		final int[] open = new int[MAX_DEPTH];
+		int depth;
+
+		void reset(String test) {
+			Arrays.fill(categories, 0, size, null);
+			Arrays.fill(names, 0, size, null);
+			Arrays.fill(details, 0, size, null);
+			testName = test;
+			size = 0;
+			dropped = 0;
+			depth = 0;
+		}
+
+		void begin(String category, String name, String detail, long now) {
+			int index = add(category, name, detail, now, OPEN);
+			if (depth < MAX_DEPTH) {
+				open[depth] = index;
+			}
+			depth++;
+		}
+
+		long end(long now) {
+			if (depth == 0) {
+				return -1;
+			}
+			depth--;
+			int index = (depth < MAX_DEPTH) ? open[depth] : -1;
+			if (index < 0) {
+				return -1;
+			}
+			ends[index] = now;
+			return now - starts[index];
+		}
+
+		void endAll(long now) {
+			while (depth > 0) {
+				end(now);
+			}
+		}
+
+		/** Adds a span: returns its index, or -1 if it was dropped. */
+		int add(String category, String name, String detail, long start, long end) {
+			if (size == starts.length && !grow()) {
+				dropped++;
+				return -1;
+			}
+			categories[size] = category;
+			names[size] = name;
+			details[size] = detail;
+			starts[size] = start;
+			ends[size] = end;
+			return size++;
+		}
+
+		private boolean grow() {
+			if (starts.length >= MAX_SPANS) {
+				return false;
+			}
+			int capacity = Math.min(MAX_SPANS, starts.length * 2);
+			categories = Arrays.copyOf(categories, capacity);
+			names = Arrays.copyOf(names, capacity);
+			details = Arrays.copyOf(details, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			return true;
+		}
+
+		/** Appends the trace-event JSON: a complete ("X") event per span, timestamps in microseconds. */
+		void appendJson(StringBuilder json, long now) {
+			json.append("{\"traceEvents\":[\n");
+			json.append("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":").append(threadId).append(",\"args\":{\"name\":");
+			appendString(json, testName == null ? threadName : testName);
+			json.append("}}");
+			for (int i = 0; i < size; i++) {
+				long end = (ends[i] == OPEN) ? now : ends[i];
+				json.append(",\n{\"name\":");
+				appendString(json, details[i] == null ? names[i] : names[i] + " " + details[i]);
+				json.append(",\"cat\":");
+				appendString(json, categories[i]);
+				json.append(",\"ph\":\"X\",\"ts\":");
+				appendMicros(json, starts[i] - ORIGIN_NANOS);
+				json.append(",\"dur\":");
+				appendMicros(json, end - starts[i]);
+				json.append(",\"pid\":1,\"tid\":").append(threadId);
+				if (ends[i] == OPEN) {
+					json.append(",\"args\":{\"open\":true}");
+				}
+				json.append('}');
+			}
+			json.append("\n],\"displayTimeUnit\":\"ns\",\"otherData\":{\"test\":");
+			appendString(json, testName == null ? "" : testName);
+			json.append(",\"dropped\":").append(dropped).append("}}\n");
+		}
+
+		/** Appends the nanoseconds as microseconds with 3 decimals (e.g. 1234.567). */
+		private static void appendMicros(StringBuilder json, long nanos) {
+			if (nanos < 0) {
+				json.append('-');
+				nanos = -nanos;
+			}
+			long fraction = nanos % 1000;
+			json.append(nanos / 1000).append('.');
+			if (fraction < 100) json.append('0');
+			if (fraction < 10) json.append('0');
+			json.append(fraction);
+		}
+
+		private static void appendString(StringBuilder json, String s) {
+			json.append('"');
+			for (int i = 0; i < s.length(); i++) {
+				char c = s.charAt(i);
+				if (c == '"' || c == '\\') {
+					json.append('\\').append(c);
+				} else if (c < 0x20) {
+					json.append(String.format("\\u%04x", (int) c));
+				} else {
+					json.append(c);
+				}
+			}
+			json.append('"');
+		}
+	}
+}
@@ -0,0 +1,263 @@
+package wtbox.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+
+/**
+ * Wait-time profiler.  Records each WaitTool wait by call site (the first caller outside wtbox, e.g. the test or page object)
+ * and locator: how long it took versus its timeout, how many polls it made, and whether it timed out.
+ *
+ * At the end of the run, getReport() ranks:
+ *  1. the slowest waits (total time spent waiting),
+ *  2. the waits that always succeed instantly (their timeout can be cut, e.g. DEFAULT_WAIT_4_ELEMENT),
+ * with a suggested timeout for each wait that never timed out.
+ *
+ * The profiler is off by default.  Turn it on with WaitProfiler.setEnabled(true), or with the system properties:
+ *   -Dwtbox.waitprofile=true  			record the waits
+ *   -Dwtbox.waitprofile.file=target/waits.txt  	record, and write the report when the JVM exits
+ *
+ * Copyright [2012] [Chon Chung]
+ *
+ * Licensed under the Apache Open Source License, Version 2.0
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ */
+public final class WaitProfiler {
+
+	/** A wait which always takes less than this (in milliseconds) succeeds instantly. */
+	public static final long INSTANT_MILLIS = 100;
+	/** Number of waits in each section of the report. */
+	public static final int REPORT_SIZE = 20;
+
+	private static final ConcurrentMap<String, WaitStats> waits = new ConcurrentHashMap<String, WaitStats>();
+
+	private static volatile boolean enabled =
+			Boolean.getBoolean("wtbox.waitprofile") || System.getProperty("wtbox.waitprofile.file") != null;
+
+	static {
+		final String file = System.getProperty("wtbox.waitprofile.file");
+		if (file != null) {
+			Runtime.getRuntime().addShutdownHook(new Thread("wtbox-waitprofile-export") {
+				@Override
+				public void run() {
+					try {
+						writeReport(new File(file));
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+				}
+			});
+		}
+	}
+
+
+	private WaitProfiler() {
+	}
+
+
+	/** Turn the profiler on (or off). */
+	public static void setEnabled(boolean on) {
+		enabled = on;
+	}
+
+	/** Returns true if the waits are recorded. */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Record one wait.  The call site is found from the current stack.
+	 *
+	 * @param key	what the wait was waiting for (e.g. the locator's toString())
+	 * @param timeOutMillis	the wait's timeout
+	 * @param elapsedMillis	how long the wait took
+	 * @param polls	number of condition checks (1 for an in-browser wait)
+	 * @param succeeded	false if the timeout was reached
+	 */
+	public static void record(String key, long timeOutMillis, long elapsedMillis, int polls, boolean succeeded) {
+		if (!enabled) {
+			return;
+		}
+		String site = callSite();
+		WaitStats stats = waits.get(site + " " + key);
+		if (stats == null) {
+			WaitStats created = new WaitStats(site, key);
+			stats = waits.putIfAbsent(site + " " + key, created);
+			if (stats == null) {
+				stats = created;
+			}
+		}
+		stats.add(timeOutMillis, elapsedMillis, polls, succeeded);
+	}
+
+	/** Returns the recorded waits, slowest (total time) first. */
+	public static List<WaitStats> getWaits() {
+		List<WaitStats> list = new ArrayList<WaitStats>(waits.values());
+		Collections.sort(list, new Comparator<WaitStats>() {
+			@Override
+			public int compare(WaitStats a, WaitStats b) {
+				return Long.compare(b.getTotalMillis(), a.getTotalMillis());
+			}
+		});
+		return list;
+	}
+
+	/** Forget all the recorded waits. */
+	public static void reset() {
+		waits.clear();
+	}
+
+	/**
+	 * Returns the report: the REPORT_SIZE slowest waits, and the waits which always succeed instantly.
+	 */
+	public static String getReport() {
+		List<WaitStats> list = getWaits();
+		StringBuilder report = new StringBuilder();
+		report.append("Slowest waits (total time)\n");
+		appendHeader(report);
+		int lines = 0;
+		for (WaitStats stats : list) {
+			if (lines++ == REPORT_SIZE) break;
+			appendLine(report, stats);
+		}
+		report.append("\nWaits that always succeed instantly (under ").append(INSTANT_MILLIS).append(" ms)\n");
+		appendHeader(report);
+		lines = 0;
+		for (int i = list.size() - 1; i >= 0 && lines < REPORT_SIZE; i--) {
+			if (list.get(i).isAlwaysInstant()) {
+				appendLine(report, list.get(i));
+				lines++;
+			}
+		}
+		return report.toString();
+	}
+
+	/** Write getReport() to the file. */
+	public static void writeReport(File file) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (parent != null) {
+			parent.mkdirs();
+		}
+		try (Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+			out.write(getReport());
+		}
+	}
+
+
+	private static void appendHeader(StringBuilder report) {
+		report.append(String.format(Locale.ROOT, "%8s %8s %8s %8s %9s %8s %6s  %s%n",
+				"total_ms", "count", "mean_ms", "max_ms", "timeout_s", "timeouts", "polls", "call site / locator (suggested timeout)"));
+	}
+
+	private static void appendLine(StringBuilder report, WaitStats s) {
+		String suggestion = (s.getTimeouts() == 0) ? " (" + s.getSuggestedTimeoutSeconds() + " s)" : "";
+		report.append(String.format(Locale.ROOT, "%8d %8d %8d %8d %9d %8d %6.1f  %s  %s%s%n",
+				s.getTotalMillis(), s.getCount(), s.getTotalMillis() / s.getCount(), s.getMaxMillis(),
+				s.getTimeOutMillis() / 1000, s.getTimeouts(), (double) s.getPolls() / s.getCount(),
+				s.getCallSite(), s.getKey(), suggestion));
+	}
+
+	/** Returns the first stack frame outside of wtbox and the libraries, e.g. "test.wait_example.AJAX_wait.testAJAX(AJAX_wait.java:52)". */
+	private static String callSite() {
+		for (StackTraceElement frame : new Throwable().getStackTrace()) {
+			if (!frame.getClassName().startsWith("wtbox.") && !frame.getClassName().startsWith("org.openqa.")
+					&& !frame.getClassName().startsWith("com.google.")
+					&& !frame.getClassName().startsWith("java.") && !frame.getClassName().startsWith("sun.")) {
+				return frame.toString();
+			}
+		}
+		return "unknown";
+	}
+
+
+	/** Statistics of the waits of one call site and locator. */
+	public static final class WaitStats {
+
+		private final String callSite;
+		private final String key;
+		private long count;
+		private long timeouts;
+		private long polls;
+		private long totalMillis;
+		private long maxMillis;
+		private long timeOutMillis;
+
+		WaitStats(String callSite, String key) {
+			this.callSite = callSite;
+			this.key = key;
+		}
+
+		synchronized void add(long timeOut, long elapsed, int pollCount, boolean succeeded) {
+			count++;
+			polls += pollCount;
+			totalMillis += elapsed;
+			maxMillis = Math.max(maxMillis, elapsed);
+			timeOutMillis = Math.max(timeOutMillis, timeOut);
+			if (!succeeded) {
+				timeouts++;
+			}
+		}
+
+		/** The first caller outside wtbox (class, method, file and line). */
+		public String getCallSite() {
+			return callSite;
+		}
+
+		/** What the wait was waiting for (e.g. the locator's toString()). */
+		public String getKey() {
+			return key;
+		}
+
+		public synchronized long getCount() {
+			return count;
+		}
+
+		/** Number of waits which reached their timeout. */
+		public synchronized long getTimeouts() {
+			return timeouts;
+		}
+
+		/** Total number of polls (condition checks). */
+		public synchronized long getPolls() {
+			return polls;
+		}
+
+		public synchronized long getTotalMillis() {
+			return totalMillis;
+		}
+
+		public synchronized long getMaxMillis() {
+			return maxMillis;
+		}
+
+		/** The longest timeout used by these waits. */
+		public synchronized long getTimeOutMillis() {
+			return timeOutMillis;
+		}
+
+		/** True if none timed out and each one took less than INSTANT_MILLIS. */
+		public synchronized boolean isAlwaysInstant() {
+			return timeouts == 0 && maxMillis < INSTANT_MILLIS;
+		}
+
+		/**
+		 * A timeout (in seconds, at least 1) with room for the slowest recorded wait:
+		 * three times the slowest one, and never more than the current timeout.
+		 */
+		public synchronized long getSuggestedTimeoutSeconds() {
+			long suggested = Math.max(1, (maxMillis * 3 + 999) / 1000);
+			return Math.min(suggested, Math.max(1, timeOutMillis / 1000));
+		}
+	}
+}
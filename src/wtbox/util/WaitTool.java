@@ -1,12 +1,17 @@
 package wtbox.util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
 
 import org.openqa.selenium.By;
 import org.openqa.selenium.JavascriptExecutor;
-import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.ui.ExpectedCondition;
 import org.openqa.selenium.support.ui.ExpectedConditions;
@@ -20,6 +25,8 @@ import org.openqa.selenium.support.ui.WebDriverWait;
  * To use implicitlyWait() and WebDriverWait() in the same test, 
  * we would have to nullify implicitlyWait() before calling WebDriverWait(), 
  * and reset after it.  This class takes care of it. 
+ * It remembers each driver's implicitlyWait time (DriverState), 
+ * so it does not send a timeout command when the value is already set. 
  * 
  * 
  * Generally relying on implicitlyWait slows things down 
@@ -27,6 +34,14 @@ import org.openqa.selenium.support.ui.WebDriverWait;
  * Also, consider (DEFAULT_WAIT_4_PAGE = 0) for not using implicitlyWait 
  * for a certain test.
  * 
+ * By default the wait methods poll the driver every 500 milliseconds. 
+ * setPollingPolicy() (or a per-call PollingPolicy) changes the polling interval, 
+ * e.g. PollingPolicy.backoff(), or PollingPolicy.adaptive(). 
+ * setWaitMode(WaitMode.DOM_OBSERVER) makes the element and text waits 
+ * wait inside the browser with a MutationObserver instead, so they return 
+ * as soon as the DOM changes (see JavaScriptTool.OBSERVE_ELEMENT). 
+ * waitForNetworkIdle() waits for the AJAX requests to end, on pages without jQuery. 
+ * 
  * @author Chon Chung, Mark Collin, Andre, Tarun Kumar 
  * 
  * @todo check FluentWait -- http://seleniumsimplified.com/2012/08/22/fluentwait-with-webelement/
@@ -47,6 +62,66 @@ public class WaitTool {
 	 * "0" will nullify implicitlyWait and speed up a test. */ 
 	public static final int DEFAULT_WAIT_4_PAGE = 12; 
 
+	/** How the wait methods wait for an element. */ 
+	public enum WaitMode {
+		/** Poll the driver (findElement) every 500 milliseconds.  Works with every driver. */
+		POLLING,
+		/** Wait inside the browser with a MutationObserver (executeAsyncScript), 
+		 *  and return as soon as the DOM matches.  Falls back to POLLING 
+		 *  if the driver can not run async JavaScript. */
+		DOM_OBSERVER
+	}
+
+	/** Default quiet period of waitForNetworkIdle(): 500 milliseconds without a request in flight. */ 
+	public static final int DEFAULT_NETWORK_QUIET_MILLIS = 500; 
+
+	/** Returned by observeElement() when the driver can not run the observer script. */ 
+	private static final Object OBSERVER_UNSUPPORTED = new Object(); 
+
+	/** Extra script timeout, so the in-browser timeout fires before the driver's one. */ 
+	private static final int SCRIPT_TIMEOUT_SLACK = 2; 
+	
+	/** Default maximum number of page reloads of waitForElementRefresh(). */
+	public static final int DEFAULT_MAX_RELOADS = 10; 
+	
+	/** Time between two checks of waitForElementRefresh(): 500 milliseconds, doubling up to 8 seconds. */
+	private static final PollingPolicy REFRESH_BACKOFF = PollingPolicy.backoff(500, 2, 8000); 
+	
+	/** Script timeout (in seconds) of the page version probe of waitForElementRefresh(). */
+	private static final int REFRESH_PROBE_TIMEOUT = 5; 
+
+	private static volatile WaitMode waitMode = WaitMode.POLLING; 
+
+	private static volatile PollingPolicy pollingPolicy = PollingPolicy.DEFAULT; 
+
+
+	/**
+	 * Set how the wait methods wait for an element (default: WaitMode.POLLING). 
+	 * 
+	 * @param WaitMode	POLLING, or DOM_OBSERVER
+	 */
+	public static void setWaitMode(WaitMode mode) {
+		waitMode = mode; 
+	}
+	
+	/** Returns the current wait mode. */ 
+	public static WaitMode getWaitMode() {
+		return waitMode; 
+	}
+
+	/**
+	 * Set the polling policy of the wait methods which are not given one (default: PollingPolicy.DEFAULT, 500 milliseconds). 
+	 * 
+	 * @param PollingPolicy	e.g. PollingPolicy.backoff(20, 2, 1000), or PollingPolicy.adaptive()
+	 */
+	public static void setPollingPolicy(PollingPolicy policy) {
+		pollingPolicy = policy; 
+	}
+	
+	/** Returns the global polling policy. */ 
+	public static PollingPolicy getPollingPolicy() {
+		return pollingPolicy; 
+	}
 
 	
 
@@ -61,17 +136,38 @@ public class WaitTool {
 	  * @return WebElement	the first WebElement using the given method, or null (if the timeout is reached)
 	  */
 	public static WebElement waitForElement(WebDriver driver, final By by, int timeOutInSeconds) {
+		return waitForElement(driver, by, timeOutInSeconds, pollingPolicy); 
+	}
+	
+	/**
+	  * Wait for the element to be present in the DOM, and displayed on the page, 
+	  * polling as the given policy says. 
+	  * 
+	  * @param WebDriver	The driver object to be used 
+	  * @param By	selector to find the element
+	  * @param int	The time in seconds to wait until returning a failure
+	  * @param PollingPolicy	how long to sleep between polls
+	  *
+	  * @return WebElement	the first WebElement using the given method, or null (if the timeout is reached)
+	  */
+	public static WebElement waitForElement(WebDriver driver, final By by, int timeOutInSeconds, PollingPolicy policy) {
 		WebElement element; 
-		try{	
-			//To use WebDriverWait(), we would have to nullify implicitlyWait(). 
-			//Because implicitlyWait time also set "driver.findElement()" wait time.  
-			//info from: https://groups.google.com/forum/?fromgroups=#!topic/selenium-users/6VO_7IXylgY
-			driver.manage().timeouts().implicitlyWait(0, TimeUnit.SECONDS); //nullify implicitlyWait() 
+		if (waitMode == WaitMode.DOM_OBSERVER) {
+			long start = System.nanoTime(); 
+			Object observed = observeElement(driver, by, JavaScriptTool.VISIBLE, null, timeOutInSeconds); 
+			if (observed != OBSERVER_UNSUPPORTED) {
+				return (WebElement) observed; 
+			}
+			timeOutInSeconds = secondsLeft(start, timeOutInSeconds); //poll for the rest of the time
+		}
+		//To use WebDriverWait(), we would have to nullify implicitlyWait(). 
+		//Because implicitlyWait time also set "driver.findElement()" wait time.  
+		//info from: https://groups.google.com/forum/?fromgroups=#!topic/selenium-users/6VO_7IXylgY
+		try (ImplicitWaitSuspension suspension = suspendImplicitWait(driver)) { //nullify implicitlyWait(), and reset it when done (even if the wait fails)
 			  
-			WebDriverWait wait = new WebDriverWait(driver, timeOutInSeconds); 
+			WebDriverWait wait = new PollingWait(driver, timeOutInSeconds, policy, by.toString()); 
 			element = wait.until(ExpectedConditions.visibilityOfElementLocated(by));
 			
-			driver.manage().timeouts().implicitlyWait(DEFAULT_WAIT_4_PAGE, TimeUnit.SECONDS); //reset implicitlyWait
 			return element; //return the element	
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -94,14 +190,35 @@ public class WaitTool {
 	  * @return WebElement	the first WebElement using the given method, or null (if the timeout is reached)
 	  */
 	public static WebElement waitForElementPresent(WebDriver driver, final By by, int timeOutInSeconds) {
+		return waitForElementPresent(driver, by, timeOutInSeconds, pollingPolicy); 
+	}
+	
+	/**
+	  * Wait for the element to be present in the DOM, regardless of being displayed or not, 
+	  * polling as the given policy says. 
+	  *
+	  * @param WebDriver	The driver object to be used 
+	  * @param By	selector to find the element
+	  * @param int	The time in seconds to wait until returning a failure
+	  * @param PollingPolicy	how long to sleep between polls
+	  * 
+	  * @return WebElement	the first WebElement using the given method, or null (if the timeout is reached)
+	  */
+	public static WebElement waitForElementPresent(WebDriver driver, final By by, int timeOutInSeconds, PollingPolicy policy) {
 		WebElement element; 
-		try{
-			driver.manage().timeouts().implicitlyWait(0, TimeUnit.SECONDS); //nullify implicitlyWait() 
+		if (waitMode == WaitMode.DOM_OBSERVER) {
+			long start = System.nanoTime(); 
+			Object observed = observeElement(driver, by, JavaScriptTool.PRESENT, null, timeOutInSeconds); 
+			if (observed != OBSERVER_UNSUPPORTED) {
+				return (WebElement) observed; 
+			}
+			timeOutInSeconds = secondsLeft(start, timeOutInSeconds); 
+		}
+		try (ImplicitWaitSuspension suspension = suspendImplicitWait(driver)) { //nullify implicitlyWait(), and reset it when done (even if the wait fails)
 			
-			WebDriverWait wait = new WebDriverWait(driver, timeOutInSeconds); 
+			WebDriverWait wait = new PollingWait(driver, timeOutInSeconds, policy, by.toString()); 
 			element = wait.until(ExpectedConditions.presenceOfElementLocated(by));
 			
-			driver.manage().timeouts().implicitlyWait(DEFAULT_WAIT_4_PAGE, TimeUnit.SECONDS); //reset implicitlyWait
 			return element; //return the element
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -121,11 +238,37 @@ public class WaitTool {
 	  * @return List<WebElement> all elements within the current page DOM, or null (if the timeout is reached)
 	  */
 	public static List<WebElement> waitForListElementsPresent(WebDriver driver, final By by, int timeOutInSeconds) {
+		return waitForListElementsPresent(driver, by, timeOutInSeconds, pollingPolicy); 
+	}
+	
+	/**
+	  * Wait for the List<WebElement> to be present in the DOM, regardless of being displayed or not, 
+	  * polling as the given policy says. 
+	  * 
+	  * @param WebDriver	The driver object to be used 
+	  * @param By	selector to find the element
+	  * @param int	The time in seconds to wait until returning a failure
+	  * @param PollingPolicy	how long to sleep between polls
+	  *
+	  * @return List<WebElement> all elements within the current page DOM, or null (if the timeout is reached)
+	  */
+	public static List<WebElement> waitForListElementsPresent(WebDriver driver, final By by, int timeOutInSeconds, 
+			                                                  PollingPolicy policy) {
 		List<WebElement> elements; 
-		try{	
-			driver.manage().timeouts().implicitlyWait(0, TimeUnit.SECONDS); //nullify implicitlyWait() 
+		if (waitMode == WaitMode.DOM_OBSERVER) {
+			long start = System.nanoTime(); 
+			Object observed = observeElement(driver, by, JavaScriptTool.PRESENT, null, timeOutInSeconds); 
+			if (observed == null) {
+				return null; //the timeout is reached
+			}
+			if (observed != OBSERVER_UNSUPPORTED) {
+				return driver.findElements(by); //at least one is present now, so findElements() does not wait
+			}
+			timeOutInSeconds = secondsLeft(start, timeOutInSeconds); 
+		}
+		try (ImplicitWaitSuspension suspension = suspendImplicitWait(driver)) { //nullify implicitlyWait(), and reset it when done (even if the wait fails)
 			  
-			WebDriverWait wait = new WebDriverWait(driver, timeOutInSeconds); 
+			WebDriverWait wait = new PollingWait(driver, timeOutInSeconds, policy, by.toString()); 
 			wait.until((new ExpectedCondition<Boolean>() {
 	            @Override
 	            public Boolean apply(WebDriver driverObject) {
@@ -134,7 +277,6 @@ public class WaitTool {
 	        }));
 			
 			elements = driver.findElements(by); 
-			driver.manage().timeouts().implicitlyWait(DEFAULT_WAIT_4_PAGE, TimeUnit.SECONDS); //reset implicitlyWait
 			return elements; //return the element	
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -142,6 +284,179 @@ public class WaitTool {
 		return null; 
 	}
 
+	/**
+	  * Wait for all the elements to be present in the DOM, and displayed on the page. 
+	  * All locators are checked in one injected script per poll (one round-trip), 
+	  * so the total wait is the longest element's wait, not the sum of each element's wait. 
+	  * 
+	  * e.g. Map<By, WebElement> elements = WaitTool.waitForAll(driver, 5, By.id("name"), By.id("email")); 
+	  *
+	  * @param WebDriver	The driver object to be used 
+	  * @param int	The time in seconds to wait until returning a failure
+	  * @param By...	selectors to find the elements
+	  *
+	  * @return Map<By, WebElement>	the first WebElement of each locator (in the given order), or null (if the timeout is reached)
+	  */
+	public static Map<By, WebElement> waitForAll(WebDriver driver, int timeOutInSeconds, By... bys) {
+		return waitForLocators(driver, timeOutInSeconds, pollingPolicy, true, bys); 
+	}
+
+	/**
+	  * Wait for all the elements to be displayed, polling as the given policy says (see waitForAll()). 
+	  *
+	  * @param WebDriver	The driver object to be used 
+	  * @param int	The time in seconds to wait until returning a failure
+	  * @param PollingPolicy	how long to sleep between polls
+	  * @param By...	selectors to find the elements
+	  *
+	  * @return Map<By, WebElement>	the first WebElement of each locator (in the given order), or null (if the timeout is reached)
+	  */
+	public static Map<By, WebElement> waitForAll(WebDriver driver, int timeOutInSeconds, PollingPolicy policy, By... bys) {
+		return waitForLocators(driver, timeOutInSeconds, policy, true, bys); 
+	}
+
+	/**
+	  * Wait for any of the elements to be present in the DOM, and displayed on the page. 
+	  * All locators are checked in one injected script per poll (one round-trip). 
+	  * e.g. wait for either a success message or an error message. 
+	  *
+	  * @param WebDriver	The driver object to be used 
+	  * @param int	The time in seconds to wait until returning a failure
+	  * @param By...	selectors to find the elements
+	  *
+	  * @return Map<By, WebElement>	the elements which are displayed (at least one), or null (if the timeout is reached)
+	  */
+	public static Map<By, WebElement> waitForAny(WebDriver driver, int timeOutInSeconds, By... bys) {
+		return waitForLocators(driver, timeOutInSeconds, pollingPolicy, false, bys); 
+	}
+
+	/**
+	  * Wait for any of the elements to be displayed, polling as the given policy says (see waitForAny()). 
+	  *
+	  * @param WebDriver	The driver object to be used 
+	  * @param int	The time in seconds to wait until returning a failure
+	  * @param PollingPolicy	how long to sleep between polls
+	  * @param By...	selectors to find the elements
+	  *
+	  * @return Map<By, WebElement>	the elements which are displayed (at least one), or null (if the timeout is reached)
+	  */
+	public static Map<By, WebElement> waitForAny(WebDriver driver, int timeOutInSeconds, PollingPolicy policy, By... bys) {
+		return waitForLocators(driver, timeOutInSeconds, policy, false, bys); 
+	}
+
+	/**
+	  * Wait for the element to be removed from the DOM (or never be there). 
+	  * It checks with findElements(), which returns an empty list without an exception. 
+	  * 
+	  * @param WebDriver	The driver object to be used 
+	  * @param By	selector to find the element
+	  * @param int	The time in seconds to wait until returning a failure
+	  *
+	  * @return boolean	true if the element is absent, or false (if the timeout is reached)
+	  */
+	public static boolean waitForElementAbsent(WebDriver driver, final By by, int timeOutInSeconds) {
+		return waitForElementAbsent(driver, by, timeOutInSeconds, pollingPolicy); 
+	}
+
+	/**
+	  * Wait for the element to be removed from the DOM (or never be there), polling as the given policy says. 
+	  * 
+	  * @param WebDriver	The driver object to be used 
+	  * @param By	selector to find the element
+	  * @param int	The time in seconds to wait until returning a failure
+	  * @param PollingPolicy	how long to sleep between polls
+	  *
+	  * @return boolean	true if the element is absent, or false (if the timeout is reached)
+	  */
+	public static boolean waitForElementAbsent(WebDriver driver, final By by, int timeOutInSeconds, PollingPolicy policy) {
+		if (waitMode == WaitMode.DOM_OBSERVER) {
+			long start = System.nanoTime(); 
+			Object observed = observeElement(driver, by, JavaScriptTool.ABSENT, null, timeOutInSeconds); 
+			if (observed != OBSERVER_UNSUPPORTED) {
+				return observed != null; 
+			}
+			timeOutInSeconds = secondsLeft(start, timeOutInSeconds); 
+		}
+		try (ImplicitWaitSuspension suspension = suspendImplicitWait(driver)) { //nullify implicitlyWait(), and reset it when done (even if the wait fails)
+			return new PollingWait(driver, timeOutInSeconds, policy, by.toString() + " absent")
+			.until(new ExpectedCondition<Boolean>() {
+	            @Override
+	            public Boolean apply(WebDriver driverObject) {
+	            	return driverObject.findElements(by).isEmpty(); 
+	            }
+	        });
+		} catch (Exception e) {
+			e.printStackTrace();
+		} 
+		return false; 
+	}
+
+	/**
+	  * Wait for the element to be hidden, or removed from the DOM. 
+	  * 
+	  * @param WebDriver	The driver object to be used 
+	  * @param By	selector to find the element
+	  * @param int	The time in seconds to wait until returning a failure
+	  *
+	  * @return boolean	true if no element is displayed, or false (if the timeout is reached)
+	  */
+	public static boolean waitForElementInvisible(WebDriver driver, final By by, int timeOutInSeconds) {
+		return waitForElementInvisible(driver, by, timeOutInSeconds, pollingPolicy); 
+	}
+
+	/**
+	  * Wait for the element to be hidden, or removed from the DOM, polling as the given policy says. 
+	  * 
+	  * @param WebDriver	The driver object to be used 
+	  * @param By	selector to find the element
+	  * @param int	The time in seconds to wait until returning a failure
+	  * @param PollingPolicy	how long to sleep between polls
+	  *
+	  * @return boolean	true if the element is invisible, or false (if the timeout is reached)
+	  */
+	public static boolean waitForElementInvisible(WebDriver driver, final By by, int timeOutInSeconds, PollingPolicy policy) {
+		if (waitMode == WaitMode.DOM_OBSERVER) {
+			long start = System.nanoTime(); 
+			Object observed = observeElement(driver, by, JavaScriptTool.INVISIBLE, null, timeOutInSeconds); 
+			if (observed != OBSERVER_UNSUPPORTED) {
+				return observed != null; 
+			}
+			timeOutInSeconds = secondsLeft(start, timeOutInSeconds); 
+		}
+		try (ImplicitWaitSuspension suspension = suspendImplicitWait(driver)) { //nullify implicitlyWait(), and reset it when done (even if the wait fails)
+			return new PollingWait(driver, timeOutInSeconds, policy, by.toString() + " invisible")
+			.until(new ExpectedCondition<Boolean>() {
+	            @Override
+	            public Boolean apply(WebDriver driverObject) {
+	            	return firstDisplayed(driverObject, by) == null; 
+	            }
+	        });
+		} catch (Exception e) {
+			e.printStackTrace();
+		} 
+		return false; 
+	}
+
+	/**
+	  * Wait for the element to be removed from the DOM, e.g. the old document after a click 
+	  * which loads another page (so the next wait does not run on the old page). 
+	  * 
+	  * @param WebDriver	The driver object to be used 
+	  * @param WebElement	an element found before (e.g. the "html" element of the current page)
+	  * @param int	The time in seconds to wait until returning a failure
+	  *
+	  * @return boolean	true if the element is stale, or false (if the timeout is reached)
+	  */
+	public static boolean waitForStaleness(WebDriver driver, WebElement element, int timeOutInSeconds) {
+		try {
+			return new PollingWait(driver, timeOutInSeconds, pollingPolicy, element.toString() + " stale")
+			.until(ExpectedConditions.stalenessOf(element)); 
+		} catch (Exception e) {
+			e.printStackTrace();
+		} 
+		return false; 
+	}
+
 	/**
 	  * Wait for an element to appear on the refreshed web-page.
 	  * And returns the first WebElement using the given method.
@@ -151,6 +466,8 @@ public class WaitTool {
 	  * Some sites I (Mark) have tested have required a page refresh to add additional elements to the DOM.  
 	  * Generally you (Chon) wouldn't need to do this in a typical AJAX scenario.
 	  * 
+	  * It reloads the page at most DEFAULT_MAX_RELOADS times. 
+	  * 
 	  * @param WebDriver	The driver object to use to perform this element search
 	  * @param locator	selector to find the element
 	  * @param int	The time in seconds to wait until returning a failure
@@ -158,30 +475,83 @@ public class WaitTool {
 	  * @return WebElement	the first WebElement using the given method, or null(if the timeout is reached)
 	  * 
 	  * @author Mark Collin 
+	  * @see #waitForElementRefresh(WebDriver, By, int, int) 
 	  */
 	 public static WebElement waitForElementRefresh(WebDriver driver, final By by, 
 			                           int timeOutInSeconds) {
-		WebElement element; 
-		try{	
-			driver.manage().timeouts().implicitlyWait(0, TimeUnit.SECONDS); //nullify implicitlyWait() 
-		        new WebDriverWait(driver, timeOutInSeconds) {
-		        }.until(new ExpectedCondition<Boolean>() {
+		 return waitForElementRefresh(driver, by, timeOutInSeconds, DEFAULT_MAX_RELOADS); 
+	 }
+	 
+	/**
+	  * Wait for an element to appear on the refreshed web-page, without reloading the page for nothing. 
+	  * 
+	  * Each check: 
+	  * 1. looks for the element on the current page (it may come with AJAX), 
+	  * 2. asks the server (in the background, JavaScriptTool.RESOURCE_VERSION) if the page changed: 
+	  *    its ETag, Last-Modified, or content hash, 
+	  * 3. reloads the page only if it changed (or if the server can not tell), 
+	  *    and at most maxReloads times. 
+	  * The checks back off: 500 milliseconds, then 1, 2, 4, and 8 seconds apart, 
+	  * so a 30 seconds wait reloads the page a few times instead of 60. 
+	  * 
+	  * @param WebDriver	The driver object to use to perform this element search
+	  * @param locator	selector to find the element
+	  * @param int	The time in seconds to wait until returning a failure
+	  * @param int	maximum number of page reloads (then it only checks the current page)
+	  * 
+	  * @return WebElement	the first WebElement using the given method, or null(if the timeout is reached)
+	  */
+	 public static WebElement waitForElementRefresh(WebDriver driver, final By by, 
+			                           int timeOutInSeconds, final int maxReloads) {
+		try (ImplicitWaitSuspension suspension = suspendImplicitWait(driver)) { //nullify implicitlyWait(), and reset it when done (even if the wait fails)
+		        return new PollingWait(driver, timeOutInSeconds, REFRESH_BACKOFF, by.toString() + " refresh") 
+		        .until(new ExpectedCondition<WebElement>() {
+		        	private int reloads; 
+		        	private String version; 
+		        	private boolean probed; 
 
 		            @Override
-		            public Boolean apply(WebDriver driverObject) {
+		            public WebElement apply(WebDriver driverObject) {
+		            	WebElement element = firstDisplayed(driverObject, by); 
+		            	if (element != null || reloads >= maxReloads) {
+		            		return element; 
+		            	}
+		            	String current = resourceVersion(driverObject); 
+		            	boolean changed = (current == null) || (probed && !current.equals(version)); 
+		            	if (!probed && current != null) {
+		            		probed = true; //the page was loaded with this version 
+		            	}
+		            	version = current; 
+		            	if (!changed) {
+		            		return null; 
+		            	}
 		                driverObject.navigate().refresh(); //refresh the page ****************
-		                return isElementPresentAndDisplay(driverObject, by);
+		                reloads++; 
+		                return firstDisplayed(driverObject, by);
 		            }
 		        });
-		    element = driver.findElement(by);
-			driver.manage().timeouts().implicitlyWait(DEFAULT_WAIT_4_PAGE, TimeUnit.SECONDS); //reset implicitlyWait
-			return element; //return the element
 		} catch (Exception e) {
 			e.printStackTrace();
 		} 
 		return null; 
 	 }
 	 
+	/**
+	 * Returns the version of the current page on the server (JavaScriptTool.RESOURCE_VERSION), 
+	 * or null if it is unknown. 
+	 */
+	private static String resourceVersion(WebDriver driver) {
+		if (!(driver instanceof JavascriptExecutor)) {
+			return null; 
+		}
+		try (ScriptTimeoutExtension extension = extendScriptTimeout(driver, REFRESH_PROBE_TIMEOUT)) {
+			Object version = ((JavascriptExecutor) driver).executeAsyncScript(JavaScriptTool.RESOURCE_VERSION); 
+			return (version == null) ? null : version.toString(); 
+		} catch (RuntimeException e) {
+			return null; //e.g. JavaScript is disabled, or the probe timed out: reload 
+		}
+	}
+	 
 	/**
 	  * Wait for the Text to be present in the given element, regardless of being displayed or not.
 	  *
@@ -193,11 +563,35 @@ public class WaitTool {
 	  * @return boolean 
 	  */
 	public static boolean waitForTextPresent(WebDriver driver, final By by, final String text, int timeOutInSeconds) {
+		return waitForTextPresent(driver, by, text, timeOutInSeconds, pollingPolicy); 
+	}
+	
+	/**
+	  * Wait for the Text to be present in the given element, regardless of being displayed or not, 
+	  * polling as the given policy says. 
+	  *
+	  * @param WebDriver	The driver object to be used to wait and find the element
+	  * @param locator	selector of the given element, which should contain the text
+	  * @param String	The text we are looking
+	  * @param int	The time in seconds to wait until returning a failure
+	  * @param PollingPolicy	how long to sleep between polls
+	  * 
+	  * @return boolean 
+	  */
+	public static boolean waitForTextPresent(WebDriver driver, final By by, final String text, int timeOutInSeconds, 
+			                                 PollingPolicy policy) {
 		boolean isPresent = false; 
-		try{	
-			driver.manage().timeouts().implicitlyWait(0, TimeUnit.SECONDS); //nullify implicitlyWait() 
-	        new WebDriverWait(driver, timeOutInSeconds) {
-	        }.until(new ExpectedCondition<Boolean>() {
+		if (waitMode == WaitMode.DOM_OBSERVER) {
+			long start = System.nanoTime(); 
+			Object observed = observeElement(driver, by, JavaScriptTool.TEXT, text, timeOutInSeconds); 
+			if (observed != OBSERVER_UNSUPPORTED) {
+				return observed != null; 
+			}
+			timeOutInSeconds = secondsLeft(start, timeOutInSeconds); 
+		}
+		try (ImplicitWaitSuspension suspension = suspendImplicitWait(driver)) { //nullify implicitlyWait(), and reset it when done (even if the wait fails)
+	        new PollingWait(driver, timeOutInSeconds, policy, by.toString() + " text: " + text)
+	        .until(new ExpectedCondition<Boolean>() {
 	
 	            @Override
 	            public Boolean apply(WebDriver driverObject) {
@@ -205,7 +599,6 @@ public class WaitTool {
 	            }
 	        });
 	        isPresent = isTextPresent(driver, by, text);
-			driver.manage().timeouts().implicitlyWait(DEFAULT_WAIT_4_PAGE, TimeUnit.SECONDS); //reset implicitlyWait
 			return isPresent; 
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -213,6 +606,129 @@ public class WaitTool {
 		return false; 
 	}
 	
+	/**
+	  * Wait for the Text to be present in the page, or in the container elements. 
+	  * The text is searched in the browser (JavaScriptTool.COUNT_TEXT, or OBSERVE_TEXT in DOM_OBSERVER mode), 
+	  * so the page source is not sent back on each poll. 
+	  *
+	  * @param WebDriver	The driver object to be used
+	  * @param By	container elements to search, or null for the whole page
+	  * @param String	The text we are looking for
+	  * @param boolean	true to search the displayed text only
+	  * @param int	The time in seconds to wait until returning a failure
+	  * 
+	  * @return boolean	true or false(if the timeout is reached)
+	  */
+	public static boolean waitForText(WebDriver driver, final By container, final String text, final boolean visibleOnly, 
+			                          int timeOutInSeconds) {
+		return waitForText(driver, container, text, visibleOnly, timeOutInSeconds, pollingPolicy); 
+	}
+	
+	/**
+	  * Wait for the Text to be present in the page, or in the container elements, 
+	  * polling as the given policy says (see waitForText()). 
+	  *
+	  * @param WebDriver	The driver object to be used
+	  * @param By	container elements to search, or null for the whole page
+	  * @param String	The text we are looking for
+	  * @param boolean	true to search the displayed text only
+	  * @param int	The time in seconds to wait until returning a failure
+	  * @param PollingPolicy	how long to sleep between polls
+	  * 
+	  * @return boolean	true or false(if the timeout is reached)
+	  */
+	public static boolean waitForText(WebDriver driver, final By container, final String text, final boolean visibleOnly, 
+			                          int timeOutInSeconds, PollingPolicy policy) {
+		final String key = (container == null ? "page" : container.toString()) + " text: " + text; 
+		String[] locator = (container == null) ? new String[] {"", ""} : JavaScriptTool.locatorOf(container); 
+		if (waitMode == WaitMode.DOM_OBSERVER && driver instanceof JavascriptExecutor && locator != null) {
+			long start = System.nanoTime(); 
+			try (ScriptTimeoutExtension extension = extendScriptTimeout(driver, timeOutInSeconds + SCRIPT_TIMEOUT_SLACK)) {
+				Object count = ((JavascriptExecutor) driver).executeAsyncScript(JavaScriptTool.OBSERVE_TEXT, 
+						locator[0], locator[1], text, visibleOnly, timeOutInSeconds * 1000L); 
+				observerWaitEnded(key, timeOutInSeconds, start, count != null); 
+				return count != null; 
+			} catch (TimeoutException e) {
+				observerWaitEnded(key, timeOutInSeconds, start, false); 
+				return false; 
+			} catch (UnsupportedOperationException | WebDriverException e) {
+				timeOutInSeconds = secondsLeft(start, timeOutInSeconds); //poll for the rest of the time
+			}
+		}
+		try (ImplicitWaitSuspension suspension = suspendImplicitWait(driver)) { //nullify implicitlyWait(), and reset it when done (even if the wait fails)
+	        new PollingWait(driver, timeOutInSeconds, policy, key)
+	        .until(new ExpectedCondition<Boolean>() {
+	
+	            @Override
+	            public Boolean apply(WebDriver driverObject) {
+	            	return countText(driverObject, container, text, visibleOnly) > 0; 
+	            }
+	        });
+			return true; 
+		} catch (Exception e) {
+			e.printStackTrace();
+		} 
+		return false; 
+	}
+	
+	/**
+	 * Counts the occurrences of the text in the page, or in the container elements. 
+	 * It searches in the browser (JavaScriptTool.COUNT_TEXT): only the count is sent back, 
+	 * not the page source.  Whitespace is collapsed, as in the rendered page.  It does not wait. 
+	 * Without JavaScript, it searches the elements' text (or the page source) in the driver. 
+	 * 
+	 * @param driver - The driver object to be used 
+	 * @param container - container elements to search, or null for the whole page
+	 * @param text - The text we are looking for
+	 * @param visibleOnly - true to search the displayed text only
+	 * @return the number of occurrences (0 if the text is not present)
+	 */
+	public static int countText(WebDriver driver, By container, String text, boolean visibleOnly) {
+		String[] locator = (container == null) ? new String[] {"", ""} : JavaScriptTool.locatorOf(container); 
+		if (driver instanceof JavascriptExecutor && locator != null) {
+			try {
+				Object count = ((JavascriptExecutor) driver).executeScript(JavaScriptTool.COUNT_TEXT, 
+						locator[0], locator[1], text, visibleOnly); 
+				if (count instanceof Number) {
+					return ((Number) count).intValue(); 
+				}
+			} catch (RuntimeException e) {
+				//the browser can not run the script (e.g. JavaScript disabled), use the driver
+			}
+		}
+		try (ImplicitWaitSuspension suspension = suspendImplicitWait(driver)) {
+			if (container == null) {
+				String all = visibleOnly ? driver.findElement(By.tagName("body")).getText() : driver.getPageSource(); 
+				return count(all, text); 
+			}
+			int count = 0; 
+			for (WebElement element : driver.findElements(container)) {
+				String all = visibleOnly ? element.getText() : element.getAttribute("textContent"); 
+				count += count(all == null ? element.getText() : all, text); 
+			}
+			return count; 
+		}
+	}
+	
+	/** Is the text present in the page (searched in the browser, see countText()).  It does not wait. */
+	public static boolean isTextPresent(WebDriver driver, String text) {
+		return countText(driver, null, text, false) > 0; 
+	}
+	
+	/** Number of occurrences of the text, with collapsed whitespace. */
+	private static int count(String all, String text) {
+		String wanted = text.replaceAll("\\s+", " "); 
+		if (wanted.isEmpty()) {
+			return 0; 
+		}
+		String collapsed = all.replaceAll("\\s+", " "); 
+		int count = 0; 
+		for (int i = collapsed.indexOf(wanted); i >= 0; i = collapsed.indexOf(wanted, i + wanted.length())) {
+			count++; 
+		}
+		return count; 
+	}
+	
 
 
 
@@ -228,11 +744,25 @@ public class WaitTool {
 	 **/
 	public static boolean waitForJavaScriptCondition(WebDriver driver, final String javaScript, 
             								   int timeOutInSeconds) {
+		return waitForJavaScriptCondition(driver, javaScript, timeOutInSeconds, pollingPolicy); 
+	}
+	
+	/** 
+	 * Waits for the Condition of JavaScript, polling as the given policy says.  
+	 *
+	 * @param WebDriver		The driver object to be used to wait and find the element
+	 * @param String	The javaScript condition we are waiting. e.g. "return (xmlhttp.readyState >= 2 && xmlhttp.status == 200)" 
+	 * @param int	The time in seconds to wait until returning a failure
+	 * @param PollingPolicy	how long to sleep between polls
+	 * 
+	 * @return boolean true or false(condition fail, or if the timeout is reached)
+	 **/
+	public static boolean waitForJavaScriptCondition(WebDriver driver, final String javaScript, 
+            								   int timeOutInSeconds, PollingPolicy policy) {
 		boolean jscondition = false; 
-		try{	
-			driver.manage().timeouts().implicitlyWait(0, TimeUnit.SECONDS); //nullify implicitlyWait() 
-	        new WebDriverWait(driver, timeOutInSeconds) {
-	        }.until(new ExpectedCondition<Boolean>() {
+		try (ImplicitWaitSuspension suspension = suspendImplicitWait(driver)) { //nullify implicitlyWait(), and reset it when done (even if the wait fails)
+	        new PollingWait(driver, timeOutInSeconds, policy, javaScript)
+	        .until(new ExpectedCondition<Boolean>() {
 	
 	            @Override
 	            public Boolean apply(WebDriver driverObject) {
@@ -240,7 +770,6 @@ public class WaitTool {
 	            }
 	        });
 	        jscondition =  (Boolean) ((JavascriptExecutor) driver).executeScript(javaScript); 
-			driver.manage().timeouts().implicitlyWait(DEFAULT_WAIT_4_PAGE, TimeUnit.SECONDS); //reset implicitlyWait
 			return jscondition; 
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -257,11 +786,22 @@ public class WaitTool {
 	 * @return boolean true or false(condition fail, or if the timeout is reached)
 	 * */
 	public static boolean waitForJQueryProcessing(WebDriver driver, int timeOutInSeconds){
+		return waitForJQueryProcessing(driver, timeOutInSeconds, pollingPolicy); 
+	}
+	
+	/** Waits for the completion of Ajax jQuery processing, polling as the given policy says.  
+	 *
+	 * @param WebDriver - The driver object to be used to wait and find the element
+	 * @param int - The time in seconds to wait until returning a failure
+	 * @param PollingPolicy - how long to sleep between polls
+	 * 
+	 * @return boolean true or false(condition fail, or if the timeout is reached)
+	 * */
+	public static boolean waitForJQueryProcessing(WebDriver driver, int timeOutInSeconds, PollingPolicy policy){
 		boolean jQcondition = false; 
-		try{	
-			driver.manage().timeouts().implicitlyWait(0, TimeUnit.SECONDS); //nullify implicitlyWait() 
-	        new WebDriverWait(driver, timeOutInSeconds) {
-	        }.until(new ExpectedCondition<Boolean>() {
+		try (ImplicitWaitSuspension suspension = suspendImplicitWait(driver)) { //nullify implicitlyWait(), and reset it when done (even if the wait fails)
+	        new PollingWait(driver, timeOutInSeconds, policy, "jQuery.active")
+	        .until(new ExpectedCondition<Boolean>() {
 	
 	            @Override
 	            public Boolean apply(WebDriver driverObject) {
@@ -269,7 +809,6 @@ public class WaitTool {
 	            }
 	        });
 	        jQcondition = (Boolean) ((JavascriptExecutor) driver).executeScript("return jQuery.active == 0");
-			driver.manage().timeouts().implicitlyWait(DEFAULT_WAIT_4_PAGE, TimeUnit.SECONDS); //reset implicitlyWait
 			return jQcondition; 
 		} catch (Exception e) {
 			e.printStackTrace();
@@ -278,29 +817,169 @@ public class WaitTool {
     }
 	
 
+	/** 
+	 * Waits for the network to be idle: no XMLHttpRequest or fetch request in flight 
+	 * for DEFAULT_NETWORK_QUIET_MILLIS.  It works without jQuery (see waitForNetworkIdle(WebDriver, int, int)). 
+	 *
+	 * @param WebDriver - The driver object to be used 
+	 * @param int - The time in seconds to wait until returning a failure
+	 * 
+	 * @return boolean true or false(if the timeout is reached)
+	 * */
+	public static boolean waitForNetworkIdle(WebDriver driver, int timeOutInSeconds){
+		return waitForNetworkIdle(driver, DEFAULT_NETWORK_QUIET_MILLIS, timeOutInSeconds); 
+	}
+	
+	/** 
+	 * Waits for the network to be idle: no XMLHttpRequest or fetch request in flight for the quiet period.  
+	 * A hook over XMLHttpRequest and fetch counts the requests in flight (JavaScriptTool.NETWORK_HOOK). 
+	 * The hook is installed by the first call on a page, so requests started before are not seen, 
+	 * and the quiet period starts then.  
+	 * 
+	 * The wait runs inside the browser: one executeAsyncScript() call instead of polling the driver 
+	 * (it polls with executeScript() if the driver can not run async scripts).
+	 *
+	 * @param WebDriver - The driver object to be used 
+	 * @param int - The quiet period in milliseconds
+	 * @param int - The time in seconds to wait until returning a failure
+	 * 
+	 * @return boolean true or false(if the timeout is reached)
+	 * */
+	public static boolean waitForNetworkIdle(WebDriver driver, final int quietMillis, int timeOutInSeconds){
+		return waitForNetworkIdle(driver, quietMillis, timeOutInSeconds, pollingPolicy); 
+	}
+	
+	/** 
+	 * Waits for the network to be idle for the quiet period (see waitForNetworkIdle(WebDriver, int, int)), 
+	 * polling as the given policy says if the driver can not run async scripts.  
+	 *
+	 * @param WebDriver - The driver object to be used 
+	 * @param int - The quiet period in milliseconds
+	 * @param int - The time in seconds to wait until returning a failure
+	 * @param PollingPolicy - how long to sleep between polls
+	 * 
+	 * @return boolean true or false(if the timeout is reached)
+	 * */
+	public static boolean waitForNetworkIdle(WebDriver driver, final int quietMillis, int timeOutInSeconds, PollingPolicy policy){
+		if (!(driver instanceof JavascriptExecutor)) {
+			return false; 
+		}
+		long start = System.nanoTime(); 
+		try (ScriptTimeoutExtension extension = extendScriptTimeout(driver, timeOutInSeconds + SCRIPT_TIMEOUT_SLACK)) {
+			Object idle = ((JavascriptExecutor) driver).executeAsyncScript(JavaScriptTool.OBSERVE_NETWORK_IDLE, 
+					quietMillis, timeOutInSeconds * 1000L); 
+			observerWaitEnded("network idle", timeOutInSeconds, start, idle != null); 
+			return idle != null; 
+		} catch (TimeoutException e) {
+			observerWaitEnded("network idle", timeOutInSeconds, start, false); 
+			return false; 
+		} catch (UnsupportedOperationException | WebDriverException e) {
+			timeOutInSeconds = secondsLeft(start, timeOutInSeconds); //poll for the rest of the time
+		}
+		try (ImplicitWaitSuspension suspension = suspendImplicitWait(driver)) { //nullify implicitlyWait(), and reset it when done (even if the wait fails)
+	        return new PollingWait(driver, timeOutInSeconds, policy, "network idle")
+	        .until(new ExpectedCondition<Boolean>() {
+	
+	            @Override
+	            public Boolean apply(WebDriver driverObject) {
+	            	Object idle = ((JavascriptExecutor) driverObject).executeScript(JavaScriptTool.IS_NETWORK_IDLE, quietMillis); 
+	            	return Boolean.TRUE.equals(idle) ? Boolean.TRUE : null;
+	            }
+	        });
+		} catch (Exception e) {
+			e.printStackTrace();
+		} 
+		return false; 
+    }
+	
+
+	/** 
+	 * Waits for the page to be loaded: document.readyState is "complete", the page's readiness script 
+	 * returns true, and the network is idle (see waitForNetworkIdle()), all checked in one in-browser wait.  
+	 *
+	 * @param WebDriver - The driver object to be used 
+	 * @param String - JavaScript function body returning true when the page is ready, 
+	 *                 e.g. "return document.getElementById('menu') != null;" (or null)
+	 * @param int - The time in seconds to wait until returning a failure
+	 * 
+	 * @return long the time the wait took in milliseconds, or -1 (if the timeout is reached)
+	 * */
+	public static long waitForPageLoaded(WebDriver driver, String readinessScript, int timeOutInSeconds){
+		return waitForPageLoaded(driver, readinessScript, timeOutInSeconds, pollingPolicy); 
+	}
+	
+	/** 
+	 * Waits for the page to be loaded (see waitForPageLoaded(WebDriver, String, int)), 
+	 * polling as the given policy says if the driver can not run async scripts.  
+	 *
+	 * @param WebDriver - The driver object to be used 
+	 * @param String - JavaScript function body returning true when the page is ready (or null)
+	 * @param int - The time in seconds to wait until returning a failure
+	 * @param PollingPolicy - how long to sleep between polls
+	 * 
+	 * @return long the time the wait took in milliseconds, or -1 (if the timeout is reached)
+	 * */
+	public static long waitForPageLoaded(WebDriver driver, String readinessScript, int timeOutInSeconds, PollingPolicy policy){
+		if (!(driver instanceof JavascriptExecutor)) {
+			return -1; 
+		}
+		final String readyFunction = JavaScriptTool.pageReadyFunction(readinessScript); 
+		long start = System.nanoTime(); 
+		int timeLeft = timeOutInSeconds; 
+		try (ScriptTimeoutExtension extension = extendScriptTimeout(driver, timeOutInSeconds + SCRIPT_TIMEOUT_SLACK)) {
+			Object loaded = ((JavascriptExecutor) driver).executeAsyncScript(readyFunction + JavaScriptTool.OBSERVE_PAGE_LOADED, 
+					DEFAULT_NETWORK_QUIET_MILLIS, timeOutInSeconds * 1000L); 
+			observerWaitEnded("page loaded", timeOutInSeconds, start, loaded != null); 
+			return (loaded == null) ? -1 : (System.nanoTime() - start) / 1000000; 
+		} catch (TimeoutException e) {
+			observerWaitEnded("page loaded", timeOutInSeconds, start, false); 
+			return -1; 
+		} catch (UnsupportedOperationException | WebDriverException e) {
+			timeLeft = secondsLeft(start, timeOutInSeconds); //poll for the rest of the time (e.g. the page was unloaded)
+		}
+		try (ImplicitWaitSuspension suspension = suspendImplicitWait(driver)) { //nullify implicitlyWait(), and reset it when done (even if the wait fails)
+	        new PollingWait(driver, timeLeft, policy, "page loaded")
+	        .until(new ExpectedCondition<Boolean>() {
+	
+	            @Override
+	            public Boolean apply(WebDriver driverObject) {
+	            	Object loaded = ((JavascriptExecutor) driverObject).executeScript(readyFunction + JavaScriptTool.IS_PAGE_LOADED, 
+	            			DEFAULT_NETWORK_QUIET_MILLIS); 
+	            	return Boolean.TRUE.equals(loaded) ? Boolean.TRUE : null;
+	            }
+	        });
+	        return (System.nanoTime() - start) / 1000000; 
+		} catch (Exception e) {
+			e.printStackTrace();
+		} 
+		return -1; 
+    }
+	
+
 	/**
 	 * Coming to implicit wait, If you have set it once then you would have to explicitly set it to zero to nullify it -
+	 * (no command is sent if it is already 0) 
 	 */
 	public static void nullifyImplicitWait(WebDriver driver) {
-		driver.manage().timeouts().implicitlyWait(0, TimeUnit.SECONDS); //nullify implicitlyWait() 
+		DriverState.setImplicitWait(driver, 0); //nullify implicitlyWait() 
 	} 
 	
 
 	/**
 	 * Set driver implicitlyWait() time. 
+	 * No command is sent if the driver already has this wait time (see DriverState). 
 	 */
 	public static void setImplicitWait(WebDriver driver, int waitTime_InSeconds) {
-		driver.manage().timeouts().implicitlyWait(waitTime_InSeconds, TimeUnit.SECONDS);  
+		DriverState.setImplicitWait(driver, waitTime_InSeconds);  
 	} 
 	
 	/**
-	 * Reset ImplicitWait.  
-	 * To reset ImplicitWait time you would have to explicitly 
-	 * set it to zero to nullify it before setting it with a new time value. 
+	 * Reset ImplicitWait to DEFAULT_WAIT_4_PAGE.  
+	 * A new implicitlyWait() value replaces the old one, 
+	 * so it does not have to be nullified first. 
 	 */
 	public static void resetImplicitWait(WebDriver driver) {
-		driver.manage().timeouts().implicitlyWait(0, TimeUnit.SECONDS); //nullify implicitlyWait() 
-		driver.manage().timeouts().implicitlyWait(DEFAULT_WAIT_4_PAGE, TimeUnit.SECONDS); //reset implicitlyWait
+		DriverState.setImplicitWait(driver, DEFAULT_WAIT_4_PAGE); //reset implicitlyWait
 	} 
 	
 
@@ -309,11 +988,198 @@ public class WaitTool {
 	 * @param int - a new wait time in seconds
 	 */
 	public static void resetImplicitWait(WebDriver driver, int newWaittime_InSeconds) {
-		driver.manage().timeouts().implicitlyWait(0, TimeUnit.SECONDS); //nullify implicitlyWait() 
-		driver.manage().timeouts().implicitlyWait(newWaittime_InSeconds, TimeUnit.SECONDS); //reset implicitlyWait
+		DriverState.setImplicitWait(driver, newWaittime_InSeconds); //reset implicitlyWait
 	} 
+	
+	/**
+	 * Nullify implicitlyWait() until the returned suspension is closed, 
+	 * which resets the previous wait time - even if the wait in between fails.  
+	 * Use it with try-with-resources: 
+	 * <pre>
+	 * try (ImplicitWaitSuspension suspension = WaitTool.suspendImplicitWait(driver)) {
+	 *     new WebDriverWait(driver, 5).until(...); 
+	 * }
+	 * </pre>
+	 * Suspensions can be nested, and used by several threads sharing a driver: 
+	 * the wait time is reset when the last one is closed. 
+	 * No command is sent if the implicit wait is already 0 (e.g. a "zero implicit wait" session). 
+	 * 
+	 * @param driver - The driver object to be used 
+	 * @return ImplicitWaitSuspension to close when the wait is done
+	 */
+	public static ImplicitWaitSuspension suspendImplicitWait(WebDriver driver) {
+		return new ImplicitWaitSuspension(driver, DEFAULT_WAIT_4_PAGE); 
+	}
+	
+	/**
+	 * Extend the driver's script timeout (for executeAsyncScript) to at least timeOutInSeconds, 
+	 * until the returned extension is closed: then the previous script timeout is restored. 
+	 * <pre>
+	 * try (ScriptTimeoutExtension extension = WaitTool.extendScriptTimeout(driver, 12)) {
+	 *     ((JavascriptExecutor) driver).executeAsyncScript(...); 
+	 * }
+	 * </pre>
+	 * No command is sent if the script timeout is already long enough. 
+	 * 
+	 * @param driver - The driver object to be used 
+	 * @param timeOutInSeconds - the minimum script timeout in seconds 
+	 * @return ScriptTimeoutExtension to close when the script is done
+	 */
+	public static ScriptTimeoutExtension extendScriptTimeout(WebDriver driver, int timeOutInSeconds) {
+		return new ScriptTimeoutExtension(driver, timeOutInSeconds); 
+	}
 		    
 
+	/**
+	 * Wait for all (or any) of the locators to be displayed.  
+	 * It uses one script per poll (JavaScriptTool.FIND_EACH), or one async script (OBSERVE_EACH) 
+	 * in DOM_OBSERVER mode.  If a locator can not be used in the browser, it polls findElements() 
+	 * of each locator instead. 
+	 */
+	private static Map<By, WebElement> waitForLocators(WebDriver driver, int timeOutInSeconds, PollingPolicy policy, 
+			                                           final boolean all, final By... bys) {
+		final List<String> kinds = new ArrayList<String>(); 
+		final List<String> values = new ArrayList<String>(); 
+		boolean canUseScript = driver instanceof JavascriptExecutor; 
+		for (By by : bys) {
+			String[] locator = JavaScriptTool.locatorOf(by); 
+			if (locator == null) {
+				canUseScript = false; 
+				break; 
+			}
+			kinds.add(locator[0]); 
+			values.add(locator[1]); 
+		}
+		if (canUseScript && waitMode == WaitMode.DOM_OBSERVER) {
+			long start = System.nanoTime(); 
+			try (ScriptTimeoutExtension extension = extendScriptTimeout(driver, timeOutInSeconds + SCRIPT_TIMEOUT_SLACK)) {
+				Object result = ((JavascriptExecutor) driver).executeAsyncScript(JavaScriptTool.OBSERVE_EACH, 
+						kinds, values, JavaScriptTool.VISIBLE, all, timeOutInSeconds * 1000L); 
+				observerWaitEnded(Arrays.toString(bys), timeOutInSeconds, start, result != null); 
+				return (result == null) ? null : toLocatorMap(bys, (List<?>) result); 
+			} catch (TimeoutException e) {
+				observerWaitEnded(Arrays.toString(bys), timeOutInSeconds, start, false); 
+				return null; 
+			} catch (UnsupportedOperationException | WebDriverException e) {
+				timeOutInSeconds = secondsLeft(start, timeOutInSeconds); //poll for the rest of the time
+			}
+		}
+		final boolean scriptSupported = canUseScript; 
+		try (ImplicitWaitSuspension suspension = suspendImplicitWait(driver)) { //nullify implicitlyWait(), and reset it when done (even if the wait fails)
+			List<?> found = new PollingWait(driver, timeOutInSeconds, policy, Arrays.toString(bys))
+					.until(new ExpectedCondition<List<?>>() {
+				private boolean useScript = scriptSupported; 
+				
+	            @Override
+	            public List<?> apply(WebDriver driverObject) {
+	            	List<?> elements = null; 
+	            	if (useScript) {
+	            		try {
+	            			elements = (List<?>) ((JavascriptExecutor) driverObject).executeScript(JavaScriptTool.FIND_EACH, 
+	            					kinds, values, JavaScriptTool.VISIBLE); 
+	            		} catch (RuntimeException e) { //some drivers (HtmlUnit) throw the script error as it is
+	            			useScript = false; //the browser can not run the script (e.g. no XPath support), use the driver
+	            		}
+	            	}
+	            	if (elements == null) {
+	            		elements = findEachDisplayed(driverObject, bys); 
+	            	}
+	            	int count = 0; 
+	            	for (Object element : elements) {
+	            		if (element != null) count++; 
+	            	}
+	            	return (all ? count == bys.length : count > 0) ? elements : null; 
+	            }
+	        });
+			return toLocatorMap(bys, found); 
+		} catch (Exception e) {
+			e.printStackTrace();
+		} 
+		return null; 
+	}
+	
+	/** Returns the first displayed element of each locator (or null), by the driver.  */ 
+	private static List<WebElement> findEachDisplayed(WebDriver driver, By... bys) {
+		List<WebElement> result = new ArrayList<WebElement>(); 
+		for (By by : bys) {
+			result.add(firstDisplayed(driver, by)); 
+		}
+		return result; 
+	}
+	
+	/** Maps each locator to its found element, skipping the missing ones. */ 
+	private static Map<By, WebElement> toLocatorMap(By[] bys, List<?> elements) {
+		Map<By, WebElement> map = new LinkedHashMap<By, WebElement>(); 
+		for (int i = 0; i < bys.length && i < elements.size(); i++) {
+			if (elements.get(i) != null) {
+				map.put(bys[i], (WebElement) elements.get(i)); 
+			}
+		}
+		return map; 
+	}
+
+
+	/**
+	 * Waits inside the browser for an element with a MutationObserver (JavaScriptTool.OBSERVE_ELEMENT). 
+	 * One executeAsyncScript() call replaces the findElement() polling loop. 
+	 * 
+	 * @param driver - The driver object to be used 
+	 * @param by - selector to find the element
+	 * @param condition - JavaScriptTool.PRESENT, VISIBLE, or TEXT
+	 * @param text - The text we are looking for (TEXT condition only)
+	 * @param timeOutInSeconds - The time in seconds to wait until returning a failure
+	 * @return the WebElement, null (if the timeout is reached), 
+	 *         or OBSERVER_UNSUPPORTED (if the driver or the locator can not be used in the browser)
+	 */
+	private static Object observeElement(WebDriver driver, By by, String condition, String text, int timeOutInSeconds) {
+		String[] locator = JavaScriptTool.locatorOf(by); 
+		if (!(driver instanceof JavascriptExecutor) || locator == null) {
+			return OBSERVER_UNSUPPORTED; 
+		}
+		long start = System.nanoTime(); 
+		//async script has its own timeout, it does not use implicitlyWait 
+		try (ScriptTimeoutExtension extension = extendScriptTimeout(driver, timeOutInSeconds + SCRIPT_TIMEOUT_SLACK)) {
+			Object result = ((JavascriptExecutor) driver).executeAsyncScript(JavaScriptTool.OBSERVE_ELEMENT, 
+					locator[0], locator[1], condition, (text == null ? "" : text), timeOutInSeconds * 1000L); 
+			observerWaitEnded(observedKey(by, condition, text), timeOutInSeconds, start, result != null); 
+			return result; 
+		} catch (TimeoutException e) {
+			observerWaitEnded(observedKey(by, condition, text), timeOutInSeconds, start, false); 
+			return null; 
+		} catch (UnsupportedOperationException e) {
+			return OBSERVER_UNSUPPORTED; //e.g. HtmlUnitDriver without JavaScript
+		} catch (WebDriverException e) {
+			return OBSERVER_UNSUPPORTED; //e.g. the page is unloaded while waiting, so poll instead 
+		}
+	}
+	
+	/** Record an in-browser wait (one poll), which started at startNanos (System.nanoTime()), in CommandMetrics, WaitProfiler and Tracer. */ 
+	private static void observerWaitEnded(String key, int timeOutInSeconds, long startNanos, boolean succeeded) {
+		long end = System.nanoTime(); 
+		Tracer.record(Tracer.WAIT, key, startNanos, end); 
+		long elapsed = (end - startNanos) / 1000000; 
+		CommandMetrics.recordWait(CommandMetrics.WAIT_OBSERVER, elapsed, 1, succeeded); 
+		WaitProfiler.record(key, timeOutInSeconds * 1000L, elapsed, 1, succeeded); 
+	}
+	
+	/** The wait key of an observeElement() condition, as the polling waits name it (e.g. "By.id: x absent"). */ 
+	private static String observedKey(By by, String condition, String text) {
+		if (JavaScriptTool.TEXT.equals(condition)) {
+			return by.toString() + " text: " + text; 
+		}
+		if (JavaScriptTool.ABSENT.equals(condition) || JavaScriptTool.INVISIBLE.equals(condition)) {
+			return by.toString() + " " + condition; 
+		}
+		return by.toString(); 
+	}
+	
+	/** Returns the seconds left (at least 1) of the timeout, which started at startNanos (System.nanoTime()). */ 
+	private static int secondsLeft(long startNanos, int timeOutInSeconds) {
+		long elapsed = (System.nanoTime() - startNanos) / 1000000000L; 
+		return (int) Math.max(1, timeOutInSeconds - elapsed); 
+	}
+	
+
      /**
 	   * Checks if the text is present in the element. 
        * 
@@ -334,52 +1200,90 @@ public class WaitTool {
 
 	/**
 	 * Checks if the elment is in the DOM, regardless of being displayed or not.
+	 * It does not wait: an absent element is reported right away, 
+	 * whatever the implicitlyWait time is, and without a NoSuchElementException. 
+	 * (One script in the browser, or findElements() with implicitlyWait nullified.) 
 	 * 
 	 * @param driver - The driver object to use to perform this element search
 	 * @param by - selector to find the element
 	 * @return boolean
 	 */
-	private static boolean isElementPresent(WebDriver driver, By by) {
-		try {
-			driver.findElement(by);//if it does not find the element throw NoSuchElementException, which calls "catch(Exception)" and returns false; 
-			return true;
-		} catch (NoSuchElementException e) {
-			return false;
+	public static boolean isElementPresent(WebDriver driver, By by) {
+		Boolean matched = isMatchedInBrowser(driver, by, JavaScriptTool.PRESENT); 
+		if (matched != null) {
+			return matched; 
+		}
+		try (ImplicitWaitSuspension suspension = suspendImplicitWait(driver)) {
+			return !driver.findElements(by).isEmpty(); 
 		}
 	}
 	
 
 	/**
 	 * Checks if the List<WebElement> are in the DOM, regardless of being displayed or not.
+	 * (findElements() returns an empty list, it does not throw NoSuchElementException) 
 	 * 
 	 * @param driver - The driver object to use to perform this element search
 	 * @param by - selector to find the element
 	 * @return boolean
 	 */
 	private static boolean areElementsPresent(WebDriver driver, By by) {
-		try {
-			driver.findElements(by); 
-			return true; 
-		} catch (NoSuchElementException e) {
-			return false;
-		}
+		return !driver.findElements(by).isEmpty(); 
 	}
 
 	/**
 	 * Checks if the elment is in the DOM and displayed. 
+	 * It does not wait, like isElementPresent(). 
 	 * 
 	 * @param driver - The driver object to use to perform this element search
 	 * @param by - selector to find the element
 	 * @return boolean
 	 */
-	private static boolean isElementPresentAndDisplay(WebDriver driver, By by) {
-		try {			
-			return driver.findElement(by).isDisplayed();
-		} catch (NoSuchElementException e) {
-			return false;
+	public static boolean isElementPresentAndDisplay(WebDriver driver, By by) {
+		Boolean matched = isMatchedInBrowser(driver, by, JavaScriptTool.VISIBLE); 
+		if (matched != null) {
+			return matched; 
+		}
+		try (ImplicitWaitSuspension suspension = suspendImplicitWait(driver)) {
+			return firstDisplayed(driver, by) != null; 
 		}
 	}
 	
+	/**
+	 * Checks the locator and the condition (JavaScriptTool.PRESENT or VISIBLE) in the browser, in one script. 
+	 * 
+	 * @return true or false, or null if it can not be checked in the browser 
+	 */
+	private static Boolean isMatchedInBrowser(WebDriver driver, By by, String condition) {
+		String[] locator = JavaScriptTool.locatorOf(by); 
+		if (!(driver instanceof JavascriptExecutor) || locator == null) {
+			return null; 
+		}
+		try {
+			return (Boolean) ((JavascriptExecutor) driver).executeScript(JavaScriptTool.IS_MATCHED, 
+					locator[0], locator[1], condition); 
+		} catch (RuntimeException e) {
+			return null; //the browser can not run the script (e.g. JavaScript disabled), use the driver
+		}
+	}
+	
+	/**
+	 * Returns the first displayed element of the locator, or null. 
+	 * Call it with implicitlyWait nullified, so an absent element does not wait. 
+	 */
+	private static WebElement firstDisplayed(WebDriver driver, By by) {
+		for (WebElement element : driver.findElements(by)) {
+			try {
+				if (element.isDisplayed()) {
+					return element; 
+				}
+			} catch (StaleElementReferenceException e) {
+				//removed from the DOM after findElements(), so it is not displayed
+			}
+		}
+		return null; 
+	}
+	
 
 	
  }
@@ -395,4 +1299,5 @@ public class WaitTool {
  *    I tried to reuse a single WebDriverWait() instance, but I found and tested 
  *    that creating 100 WebDriverWait() instances takes less than one millisecond. 
  *    So, it seems not necessary.  
+ *    (It is measured by bench.WaitToolBenchmark.newWebDriverWait, with the waits themselves.) 
  */